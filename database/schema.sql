@@ -13,6 +13,14 @@ CREATE TABLE IF NOT EXISTS documents (
     title         VARCHAR(500),
     raw_content   TEXT,
     tokens        TEXT,
+    doc_length    INT,
+    summary       VARCHAR(1000),
+    word_offsets  BYTEA,
+    content_hash  VARCHAR(64),
+    simhash       BIGINT,
+    duplicate_of  BIGINT,
+    indexed       BOOLEAN,
+    analyzer      VARCHAR(100),
     crawled_at    TIMESTAMP DEFAULT NOW()
 );
 
@@ -20,11 +28,18 @@ CREATE TABLE IF NOT EXISTS documents (
 -- TABLE 2: inverted_index
 -- Maps each word → which documents contain it
 -- ─────────────────────────────────────────
+-- Sequence ids (allocated 50 at a time) let Hibernate batch the inserts.
+-- Upgrading a table created with BIGSERIAL: after creating the sequence run
+--   SELECT setval('inverted_index_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM inverted_index));
+--   ALTER TABLE inverted_index ALTER COLUMN id SET DEFAULT nextval('inverted_index_seq');
+CREATE SEQUENCE IF NOT EXISTS inverted_index_seq INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS inverted_index (
-    id      BIGSERIAL PRIMARY KEY,
-    token   VARCHAR(255) NOT NULL,
-    doc_id  BIGINT NOT NULL REFERENCES documents(id) ON DELETE CASCADE,
-    freq    INT DEFAULT 1
+    id        BIGINT PRIMARY KEY DEFAULT nextval('inverted_index_seq'),
+    token     VARCHAR(255) NOT NULL,
+    doc_id    BIGINT NOT NULL REFERENCES documents(id) ON DELETE CASCADE,
+    freq      INT DEFAULT 1,
+    positions BYTEA
 );
 
 -- ─────────────────────────────────────────
@@ -39,6 +54,16 @@ CREATE TABLE IF NOT EXISTS search_queries (
     last_searched_at TIMESTAMP DEFAULT NOW()
 );
 
+-- ─────────────────────────────────────────
+-- TABLE 4: search_activity
+-- Searches and clicks per day (for the analytics dashboard)
+-- ─────────────────────────────────────────
+CREATE TABLE IF NOT EXISTS search_activity (
+    bucket_date DATE PRIMARY KEY,
+    searches    BIGINT DEFAULT 0,
+    clicks      BIGINT DEFAULT 0
+);
+
 -- ══════════════════════════════════════════════════════════════════════════════
 -- INDEXES (for faster search)
 -- ══════════════════════════════════════════════════════════════════════════════
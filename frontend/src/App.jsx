@@ -12,6 +12,7 @@ export default function App() {
   const [results, setResults] = useState([]);
   const [totalPages, setTotalPages] = useState(0);
   const [totalHits, setTotalHits] = useState(0);
+  const [didYouMean, setDidYouMean] = useState(null);
   const [page, setPage] = useState(0);
   const [loading, setLoading] = useState(false);
   const [searched, setSearched] = useState(false);
@@ -46,11 +47,13 @@ export default function App() {
       setResults(data.results || []);
       setTotalPages(data.totalPages || 0);
       setTotalHits(data.totalHits || 0);
+      setDidYouMean(data.didYouMean || null);
     } catch (err) {
       console.error("Search error:", err);
       setResults([]);
       setTotalPages(0);
       setTotalHits(0);
+      setDidYouMean(null);
     } finally {
       setLoading(false);
     }
@@ -300,7 +303,6 @@ export default function App() {
               <SearchResults
                 results={results}
                 onResultClick={handleResultClick}
-                query={query}
               />
 
               {/* No results */}
@@ -309,6 +311,19 @@ export default function App() {
                   <p className="font-display text-2xl italic mb-3" style={{ color: "var(--text-primary)" }}>
                     Nothing found for "<span style={{ color: "var(--accent)" }}>{query}</span>"
                   </p>
+                  {didYouMean && (
+                    <p className="text-sm mb-2" style={{ color: "var(--text-secondary)" }}>
+                      Did you mean{" "}
+                      <button
+                        onClick={() => handleSearch(didYouMean)}
+                        className="italic transition-opacity hover:opacity-70"
+                        style={{ color: "var(--accent)" }}
+                      >
+                        {didYouMean}
+                      </button>
+                      ?
+                    </p>
+                  )}
                   <ul
                     className="text-sm space-y-1.5 mt-4"
                     style={{ color: "var(--text-secondary)" }}
@@ -1,34 +1,32 @@
-export default function SearchResults({ results, onResultClick, query }) {
+export default function SearchResults({ results, onResultClick }) {
   if (!results || results.length === 0) return null;
 
-  const highlightText = (text, q) => {
-    if (!text || !q) return text;
-    const terms = q.toLowerCase().split(/\s+/).filter((t) => t.length > 2);
-    if (!terms.length) return text;
-    const escaped = terms.map((t) => t.replace(/[.*+?^${}()|[\]\\]/g, "\\$&"));
-    const regex = new RegExp(`(${escaped.join("|")})`, "gi");
-    return text.split(regex).map((part, i) =>
-      terms.some((t) => part.toLowerCase() === t) ? (
-        <mark
-          key={i}
-          style={{
-            background: "var(--accent-subtle)",
-            color: "var(--accent)",
-            padding: "0 2px",
-            borderRadius: "2px",
-            fontWeight: 600,
-          }}
-        >
-          {part}
-        </mark>
-      ) : (
-        part
-      )
-    );
+  const markStyle = {
+    background: "var(--accent-subtle)",
+    color: "var(--accent)",
+    padding: "0 2px",
+    borderRadius: "2px",
+    fontWeight: 600,
   };
 
-  const truncate = (t, max = 280) =>
-    !t ? "" : t.length <= max ? t : t.substring(0, max).trim() + "…";
+  // Highlights are [start, end) offsets computed by the server
+  const renderSnippet = (text, highlights) => {
+    if (!text) return "";
+    if (!highlights?.length) return text;
+    const parts = [];
+    let pos = 0;
+    highlights.forEach(({ start, end }, i) => {
+      if (start > pos) parts.push(text.substring(pos, start));
+      parts.push(
+        <mark key={i} style={markStyle}>
+          {text.substring(start, end)}
+        </mark>
+      );
+      pos = end;
+    });
+    if (pos < text.length) parts.push(text.substring(pos));
+    return parts;
+  };
 
   const getBreadcrumb = (url) => {
     try {
@@ -99,7 +97,7 @@ export default function SearchResults({ results, onResultClick, query }) {
                   {doc.wordCount.toLocaleString()} words ·
                 </span>
               )}
-              {highlightText(truncate(doc.rawContent, 300), query)}
+              {renderSnippet(doc.snippet, doc.highlights)}
             </p>
           </article>
         );
@@ -0,0 +1,143 @@
+package com.searchengine;
+
+import com.searchengine.indexer.PostingsCache;
+import com.searchengine.indexer.PostingsIndex;
+import com.searchengine.indexer.StandardAnalyzer;
+import com.searchengine.indexer.TextProcessor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Wiring and page text shared by the benchmarks, which run without a Spring
+ * context: components are built directly and their injected fields set by
+ * reflection, with the defaults from application.properties.
+ */
+public final class BenchmarkSupport {
+
+    private static final String SAMPLE_PAGE = "/pages/sample.txt";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Set an injected field, which may be declared by a superclass
+     */
+    public static void inject(Object target, String field, Object value) {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field f = type.getDeclaredField(field);
+                f.setAccessible(true);
+                f.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // declared further up
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalArgumentException(target.getClass().getName() + " has no field " + field);
+    }
+
+    /**
+     * The default analysis chain: Unicode folding, Porter stemming, CJK bigrams
+     */
+    public static TextProcessor textProcessor() {
+        StandardAnalyzer analyzer = new StandardAnalyzer();
+        inject(analyzer, "unicode", true);
+        inject(analyzer, "stemming", true);
+        inject(analyzer, "cjkBigrams", true);
+        TextProcessor textProcessor = new TextProcessor();
+        inject(textProcessor, "analyzer", analyzer);
+        return textProcessor;
+    }
+
+    /**
+     * An empty postings index that keeps everything in its in-memory buffer
+     */
+    public static PostingsIndex postingsIndex() {
+        PostingsCache cache = new PostingsCache();
+        inject(cache, "minDocs", Integer.MAX_VALUE);
+        PostingsIndex index = new PostingsIndex();
+        inject(index, "postingsCache", cache);
+        inject(index, "flushDocs", Integer.MAX_VALUE);
+        return index;
+    }
+
+    /**
+     * A repository whose queries all find nothing
+     */
+    public static <T> T emptyRepository(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            Class<?> returns = method.getReturnType();
+            if (List.class.isAssignableFrom(returns)) {
+                return List.of();
+            }
+            if (returns == Optional.class) {
+                return Optional.empty();
+            }
+            if (returns == long.class || returns == int.class) {
+                return 0;
+            }
+            if (returns == boolean.class) {
+                return method.getName().equals("equals") && proxy == args[0];
+            }
+            return returns == String.class ? type.getSimpleName() : null;
+        }));
+    }
+
+    /**
+     * Body texts of the pages under dir (*.txt, as extracted from crawled HTML),
+     * or the bundled sample page when dir is empty
+     */
+    public static List<String> pages(String dir) {
+        if (dir == null || dir.isEmpty()) {
+            try (InputStream in = BenchmarkSupport.class.getResourceAsStream(SAMPLE_PAGE)) {
+                return List.of(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        try (Stream<Path> files = Files.list(Path.of(dir))) {
+            List<String> pages = new ArrayList<>();
+            for (Path file : files.filter(f -> f.toString().endsWith(".txt")).sorted().toList()) {
+                pages.add(Files.readString(file));
+            }
+            return pages;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A page of about the given number of words, made of the lines of the
+     * source pages in a shuffled order
+     */
+    public static String page(List<String> sources, int words, long seed) {
+        List<String> lines = new ArrayList<>();
+        for (String source : sources) {
+            lines.addAll(Arrays.asList(source.split("\n")));
+        }
+        Random random = new Random(seed);
+        StringBuilder page = new StringBuilder();
+        int count = 0;
+        while (count < words) {
+            String line = lines.get(random.nextInt(lines.size()));
+            page.append(line).append('\n');
+            count += line.split(" ").length;
+        }
+        return page.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package com.searchengine.autocomplete;
+
+import com.searchengine.BenchmarkSupport;
+import com.searchengine.analytics.TrendingTracker;
+import com.searchengine.indexer.PostingsIndex;
+import com.searchengine.indexer.TextProcessor;
+import com.searchengine.repository.DocumentRepository;
+import com.searchengine.repository.SearchQueryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Autocomplete throughput under a crawl: inserting threads feed new words
+ * into the delta while lookup threads ask for prefixes served from the base
+ * and the delta together. Each iteration starts from a rebuilt base, as the
+ * scheduled check would leave it.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AutocompleteBenchmark {
+
+    private static final String[] SYLLABLES = {
+        "an", "ber", "co", "dan", "el", "fi", "gor", "ha", "in", "ka", "lo", "mer", "no", "pa", "ri", "sto"
+    };
+
+    // Words in the base at the start of each iteration
+    @Param({"100000"})
+    int vocabulary;
+
+    private AutocompleteService service;
+    private PostingsIndex postingsIndex;
+    private TextProcessor textProcessor;
+    private final AtomicInteger nextWord = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        TrendingTracker trendingTracker = new TrendingTracker();
+        BenchmarkSupport.inject(trendingTracker, "windowMs", 3_600_000L);
+        BenchmarkSupport.inject(trendingTracker, "bucketCount", 12);
+        BenchmarkSupport.inject(trendingTracker, "capacity", 1000);
+        trendingTracker.init();
+
+        postingsIndex = BenchmarkSupport.postingsIndex();
+        textProcessor = BenchmarkSupport.textProcessor();
+        service = new AutocompleteService();
+        BenchmarkSupport.inject(service, "documentRepository", BenchmarkSupport.emptyRepository(DocumentRepository.class));
+        BenchmarkSupport.inject(service, "searchQueryRepository", BenchmarkSupport.emptyRepository(SearchQueryRepository.class));
+        BenchmarkSupport.inject(service, "postingsIndex", postingsIndex);
+        BenchmarkSupport.inject(service, "trendingTracker", trendingTracker);
+        BenchmarkSupport.inject(service, "textProcessor", textProcessor);
+
+        while (nextWord.get() < vocabulary) {
+            insertNewWord();
+        }
+    }
+
+    /**
+     * Fold the words inserted so far into a new base
+     */
+    @Setup(Level.Iteration)
+    public void rebuild() {
+        service.rebuild();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void insert() {
+        insertNewWord();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public List<String> lookup() {
+        String word = word(ThreadLocalRandom.current().nextInt(nextWord.get()));
+        return service.getSuggestions(word.substring(0, Math.min(word.length(), 3)));
+    }
+
+    /**
+     * Index a word in a document of its own and insert it, as the crawler's index stage does
+     */
+    private void insertNewWord() {
+        int n = nextWord.getAndIncrement();
+        String word = word(n);
+        for (String term : textProcessor.terms(word)) {
+            postingsIndex.add(term, n + 1, 1, PostingsIndex.encodePositions(new int[] {0}));
+        }
+        service.insertPage(word);
+    }
+
+    /** A pronounceable word per number, with the shared prefixes real vocabularies have */
+    private static String word(int n) {
+        StringBuilder word = new StringBuilder();
+        do {
+            word.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+        } while (n > 0);
+        return word.toString();
+    }
+}
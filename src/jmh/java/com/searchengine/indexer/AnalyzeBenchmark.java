@@ -0,0 +1,86 @@
+package com.searchengine.indexer;
+
+import com.searchengine.BenchmarkSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text analysis of a batch of pages as the crawler's parse stage does it:
+ * the old regex chain (clean, tokenize, split the token string, analyze)
+ * against the single-pass path (clean, analyze, tokenize the analyzed text).
+ * With the ascii analyzer both produce the same output, which
+ * TextProcessorLegacyChainTest checks; standard adds the default Unicode,
+ * stemming and CJK stages on top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnalyzeBenchmark {
+
+    private static final int SAMPLE_PAGES = 10;
+    private static final int SAMPLE_WORDS = 5_000;
+
+    // ascii: unicode, stemming and cjk-bigrams off, as the old chain; standard: the defaults
+    @Param({"ascii", "standard"})
+    String analyzer;
+
+    // Directory of page texts, each analyzed as is; ten pages built from the bundled sample when empty
+    @Param("")
+    String pagesDir;
+
+    private TextProcessor textProcessor;
+    private List<String> pages;
+
+    @Setup
+    public void setUp() {
+        textProcessor = BenchmarkSupport.textProcessor();
+        if (analyzer.equals("ascii")) {
+            StandardAnalyzer ascii = new StandardAnalyzer();
+            BenchmarkSupport.inject(ascii, "unicode", false);
+            BenchmarkSupport.inject(ascii, "stemming", false);
+            BenchmarkSupport.inject(ascii, "cjkBigrams", false);
+            BenchmarkSupport.inject(textProcessor, "analyzer", ascii);
+        }
+
+        List<String> sources = BenchmarkSupport.pages(pagesDir);
+        if (pagesDir.isEmpty()) {
+            pages = new ArrayList<>(SAMPLE_PAGES);
+            for (int seed = 1; seed <= SAMPLE_PAGES; seed++) {
+                pages.add(BenchmarkSupport.page(sources, SAMPLE_WORDS, seed));
+            }
+        } else {
+            pages = sources;
+        }
+    }
+
+    @Benchmark
+    public void legacyChain(Blackhole blackhole) {
+        for (String raw : pages) {
+            String cleaned = LegacyTextChain.clean(raw);
+            String tokens = LegacyTextChain.tokenize(cleaned);
+            blackhole.consume(LegacyTextChain.toList(tokens));
+            blackhole.consume(LegacyTextChain.analyze(cleaned));
+        }
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole blackhole) {
+        for (String raw : pages) {
+            String cleaned = textProcessor.clean(raw);
+            AnalyzedText analyzed = textProcessor.analyze(cleaned);
+            blackhole.consume(textProcessor.tokenize(analyzed));
+            blackhole.consume(analyzed);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.searchengine.search;
+
+import com.searchengine.BenchmarkSupport;
+import com.searchengine.indexer.AnalyzedText;
+import com.searchengine.indexer.PostingsIndex;
+import com.searchengine.indexer.TextProcessor;
+import com.searchengine.indexer.WordOffsets;
+import com.searchengine.repository.DocumentRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snippets for a page of ten results: {@link SnippetGenerator}, which picks
+ * the window from term positions and reads one slice per result in a single
+ * query, against a naive scan that reads each stored text and searches it
+ * for the query terms. Texts live in an in-memory H2 table shaped like
+ * documents, so both sides pay for their database reads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnippetBenchmark {
+
+    private static final int RESULTS = 10;
+    private static final String QUERY = "postings ranking";
+
+    // Words per stored page; the naive scan grows with it, the generator should not
+    @Param({"2000", "20000"})
+    int words;
+
+    // Directory of page texts to build pages from; the bundled sample when empty
+    @Param("")
+    String pagesDir;
+
+    private SnippetGenerator generator;
+    private JdbcTemplate jdbcTemplate;
+    private List<DocumentRepository.ResultRow> rows;
+    private List<String> terms;
+
+    @Setup
+    public void setUp() {
+        TextProcessor textProcessor = BenchmarkSupport.textProcessor();
+        PostingsIndex postingsIndex = BenchmarkSupport.postingsIndex();
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:snippets" + words + ";DB_CLOSE_DELAY=-1"));
+        jdbcTemplate.execute("CREATE TABLE documents (id BIGINT PRIMARY KEY, raw_content CLOB)");
+
+        List<String> sources = BenchmarkSupport.pages(pagesDir);
+        rows = new ArrayList<>(RESULTS);
+        for (int id = 1; id <= RESULTS; id++) {
+            String cleaned = textProcessor.clean(BenchmarkSupport.page(sources, words, id));
+            AnalyzedText analyzed = textProcessor.analyze(cleaned);
+            int docId = id;
+            analyzed.getPositions().forEach((term, positions) ->
+                postingsIndex.add(term, docId, positions.length, PostingsIndex.encodePositions(positions)));
+            jdbcTemplate.update("INSERT INTO documents (id, raw_content) VALUES (?, ?)", (long) id, cleaned);
+            rows.add(new Row(id, textProcessor.summarize(cleaned), WordOffsets.build(cleaned), analyzed.getLength()));
+        }
+
+        generator = new SnippetGenerator();
+        BenchmarkSupport.inject(generator, "textProcessor", textProcessor);
+        BenchmarkSupport.inject(generator, "postingsIndex", postingsIndex);
+        BenchmarkSupport.inject(generator, "jdbcTemplate", jdbcTemplate);
+        terms = textProcessor.terms(textProcessor.clean(QUERY));
+    }
+
+    @Benchmark
+    public List<SearchResult> snippetGenerator() {
+        return generator.toResults(rows, terms);
+    }
+
+    @Benchmark
+    public List<SearchResult> naiveScan() {
+        List<SearchResult> results = new ArrayList<>(rows.size());
+        for (DocumentRepository.ResultRow row : rows) {
+            String text = jdbcTemplate.queryForObject("SELECT raw_content FROM documents WHERE id = ?", String.class, row.getId());
+            List<SearchResult.Highlight> highlights = new ArrayList<>();
+            String snippet = generator.summarySnippet(text, terms, highlights);
+            results.add(new SearchResult(row.getId(), row.getUrl(), row.getTitle(), row.getCrawledAt(),
+                row.getDocLength(), snippet, highlights));
+        }
+        return results;
+    }
+
+    private static final class Row implements DocumentRepository.ResultRow {
+
+        private static final LocalDateTime CRAWLED_AT = LocalDateTime.of(2024, 3, 18, 9, 0);
+
+        private final long id;
+        private final String summary;
+        private final byte[] wordOffsets;
+        private final int docLength;
+
+        Row(long id, String summary, byte[] wordOffsets, int docLength) {
+            this.id = id;
+            this.summary = summary;
+            this.wordOffsets = wordOffsets;
+            this.docLength = docLength;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getUrl() {
+            return "https://example.com/notes/" + id;
+        }
+
+        public String getTitle() {
+            return "Search Engineering Notes " + id;
+        }
+
+        public LocalDateTime getCrawledAt() {
+            return CRAWLED_AT;
+        }
+
+        public Integer getDocLength() {
+            return docLength;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+
+        public byte[] getWordOffsets() {
+            return wordOffsets;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.searchengine.analytics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer for search and click counts.
+ *
+ * Events only bump {@link LongAdder}s in a ConcurrentHashMap keyed by query,
+ * so the search path does no database work and concurrent events on the same
+ * query never lose counts. A scheduled flush writes the growth since the last
+ * flush as one batch of upserts that add to the stored counts in SQL.
+ * The same events are also counted per day into search_activity, which
+ * backs the dashboard timeline.
+ */
+@Component
+public class AnalyticsBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsBuffer.class);
+    private static final int MAX_QUERY_LENGTH = 255;
+    // Flushes a key may stay idle before its counters are dropped
+    private static final int IDLE_FLUSHES_BEFORE_EVICT = 12;
+
+    private static final String POSTGRES_UPSERT =
+        "INSERT INTO search_queries (query, count, clicks, last_searched_at) VALUES (?, ?, ?, ?) " +
+        "ON CONFLICT (query) DO UPDATE SET " +
+        "count = search_queries.count + EXCLUDED.count, " +
+        "clicks = search_queries.clicks + EXCLUDED.clicks, " +
+        "last_searched_at = GREATEST(search_queries.last_searched_at, EXCLUDED.last_searched_at)";
+
+    private static final String MERGE_UPSERT =
+        "MERGE INTO search_queries t USING (SELECT CAST(? AS VARCHAR(255)) AS query, " +
+        "CAST(? AS BIGINT) AS count, CAST(? AS BIGINT) AS clicks, " +
+        "CAST(? AS TIMESTAMP) AS last_searched_at) s " +
+        "ON t.query = s.query " +
+        "WHEN MATCHED THEN UPDATE SET t.count = t.count + s.count, t.clicks = t.clicks + s.clicks, " +
+        "t.last_searched_at = GREATEST(t.last_searched_at, s.last_searched_at) " +
+        "WHEN NOT MATCHED THEN INSERT (query, count, clicks, last_searched_at) " +
+        "VALUES (s.query, s.count, s.clicks, s.last_searched_at)";
+
+    private static final String POSTGRES_DAILY_UPSERT =
+        "INSERT INTO search_activity (bucket_date, searches, clicks) VALUES (?, ?, ?) " +
+        "ON CONFLICT (bucket_date) DO UPDATE SET " +
+        "searches = search_activity.searches + EXCLUDED.searches, " +
+        "clicks = search_activity.clicks + EXCLUDED.clicks";
+
+    private static final String MERGE_DAILY_UPSERT =
+        "MERGE INTO search_activity t USING (SELECT CAST(? AS DATE) AS bucket_date, " +
+        "CAST(? AS BIGINT) AS searches, CAST(? AS BIGINT) AS clicks) s " +
+        "ON t.bucket_date = s.bucket_date " +
+        "WHEN MATCHED THEN UPDATE SET t.searches = t.searches + s.searches, t.clicks = t.clicks + s.clicks " +
+        "WHEN NOT MATCHED THEN INSERT (bucket_date, searches, clicks) VALUES (s.bucket_date, s.searches, s.clicks)";
+
+    private final Ledger<String> queries = new Ledger<>();
+    // Same events bucketed by day, for the dashboard timeline
+    private final Ledger<LocalDate> days = new Ledger<>();
+    private final Object flushLock = new Object();
+    private String upsertSql = POSTGRES_UPSERT;
+    private String dailyUpsertSql = POSTGRES_DAILY_UPSERT;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Pick the upsert dialect: ON CONFLICT for PostgreSQL, standard MERGE otherwise (H2)
+     */
+    @PostConstruct
+    public void detectDialect() {
+        try {
+            String product = jdbcTemplate.execute((Connection c) -> c.getMetaData().getDatabaseProductName());
+            boolean postgres = "PostgreSQL".equalsIgnoreCase(product);
+            upsertSql = postgres ? POSTGRES_UPSERT : MERGE_UPSERT;
+            dailyUpsertSql = postgres ? POSTGRES_DAILY_UPSERT : MERGE_DAILY_UPSERT;
+        } catch (Exception e) {
+            log.warn("Could not detect database for analytics upserts: {}", e.getMessage());
+        }
+    }
+
+    public void recordSearch(String query) {
+        Counters c = queries.countersFor(truncate(query));
+        c.searches.increment();
+        c.lastSearchedAt = LocalDateTime.now();
+        days.countersFor(LocalDate.now()).searches.increment();
+    }
+
+    public void recordClick(String query) {
+        queries.countersFor(truncate(query)).clicks.increment();
+        days.countersFor(LocalDate.now()).clicks.increment();
+    }
+
+    private static String truncate(String query) {
+        return query.length() > MAX_QUERY_LENGTH ? query.substring(0, MAX_QUERY_LENGTH) : query;
+    }
+
+    /**
+     * Write the counts gathered since the last flush as batches of upserts
+     */
+    @Scheduled(fixedDelayString = "${analytics.flush-interval-ms:5000}")
+    public void flush() {
+        synchronized (flushLock) {
+            queries.flush(upsertSql, (query, searches, clicks, c) -> {
+                LocalDateTime last = c.lastSearchedAt;
+                return new Object[] {query, searches, clicks, last != null ? Timestamp.valueOf(last) : null};
+            });
+            days.flush(dailyUpsertSql, (day, searches, clicks, c) ->
+                new Object[] {Date.valueOf(day), searches, clicks});
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+        flush();
+    }
+
+    /** Turns a key's growth since the last flush into upsert parameters */
+    private interface RowMapper<K> {
+        Object[] row(K key, long searches, long clicks, Counters c);
+    }
+
+    /**
+     * Counters for one kind of key, with the flushed marks and idle eviction
+     * that make repeated flushes add each event exactly once
+     */
+    private final class Ledger<K> {
+
+        private final Map<K, Counters> counters = new ConcurrentHashMap<>();
+        // Evicted counters get one more flush so in-flight increments are not lost
+        private List<Map.Entry<K, Counters>> retiring = new ArrayList<>();
+
+        Counters countersFor(K key) {
+            while (true) {
+                Counters c = counters.computeIfAbsent(key, k -> new Counters());
+                if (!c.retired) {
+                    return c;
+                }
+                counters.remove(key, c);
+            }
+        }
+
+        /** Called under flushLock */
+        void flush(String sql, RowMapper<K> mapper) {
+            List<Object[]> rows = new ArrayList<>();
+            List<Runnable> commits = new ArrayList<>();
+
+            // Final read of counters evicted last time, now that stragglers have landed
+            for (Map.Entry<K, Counters> e : retiring) {
+                collect(e.getKey(), e.getValue(), mapper, rows, commits);
+            }
+            List<Map.Entry<K, Counters>> nextRetiring = new ArrayList<>();
+
+            Iterator<Map.Entry<K, Counters>> it = counters.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<K, Counters> e = it.next();
+                Counters c = e.getValue();
+                if (collect(e.getKey(), c, mapper, rows, commits)) {
+                    c.idleFlushes = 0;
+                } else if (++c.idleFlushes >= IDLE_FLUSHES_BEFORE_EVICT) {
+                    c.retired = true;
+                    counters.remove(e.getKey(), c);
+                    nextRetiring.add(Map.entry(e.getKey(), c));
+                }
+            }
+
+            if (!rows.isEmpty()) {
+                try {
+                    jdbcTemplate.batchUpdate(sql, rows);
+                } catch (Exception e) {
+                    // Leave the marks where they were so the next flush retries these counts
+                    log.warn("Analytics flush of {} rows failed: {}", rows.size(), e.getMessage());
+                    nextRetiring.addAll(retiring);
+                    retiring = nextRetiring;
+                    return;
+                }
+                commits.forEach(Runnable::run);
+            }
+            retiring = nextRetiring;
+        }
+
+        /**
+         * Add the row for a key's growth since its last flush; false if it had none
+         */
+        private boolean collect(K key, Counters c, RowMapper<K> mapper, List<Object[]> rows, List<Runnable> commits) {
+            long searches = c.searches.sum();
+            long clicks = c.clicks.sum();
+            long newSearches = searches - c.flushedSearches;
+            long newClicks = clicks - c.flushedClicks;
+            if (newSearches == 0 && newClicks == 0) {
+                return false;
+            }
+            rows.add(mapper.row(key, newSearches, newClicks, c));
+            commits.add(() -> {
+                c.flushedSearches = searches;
+                c.flushedClicks = clicks;
+            });
+            return true;
+        }
+    }
+
+    /**
+     * Running totals for one key. The adders only grow; the flushed marks
+     * remember how much of them is already in the database.
+     */
+    private static final class Counters {
+        final LongAdder searches = new LongAdder();
+        final LongAdder clicks = new LongAdder();
+        volatile LocalDateTime lastSearchedAt;
+        volatile boolean retired;
+        long flushedSearches;
+        long flushedClicks;
+        int idleFlushes;
+    }
+}
@@ -5,8 +5,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -25,4 +27,14 @@ public class AnalyticsController {
     public ResponseEntity<Map<String, Object>> getAnalytics() {
         return ResponseEntity.ok(analyticsService.getAnalytics());
     }
+
+    /**
+     * GET /api/analytics/trending?limit=10
+     * Returns the most searched queries of the last hour with estimated counts
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<List<TrendingTracker.Trend>> getTrending(
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(analyticsService.getTrending(Math.max(1, Math.min(limit, 100))));
+    }
 }
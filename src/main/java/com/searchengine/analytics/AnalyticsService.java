@@ -1,20 +1,24 @@
 package com.searchengine.analytics;
 
+import com.searchengine.model.SearchActivity;
 import com.searchengine.model.SearchQuery;
 import com.searchengine.repository.DocumentRepository;
 import com.searchengine.repository.InvertedIndexRepository;
+import com.searchengine.repository.SearchActivityRepository;
 import com.searchengine.repository.SearchQueryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class AnalyticsService {
-    
+
+    private static final int TIMELINE_DAYS = 30;
+
     @Autowired
     private SearchQueryRepository queryRepo;
 
@@ -24,20 +28,38 @@ public class AnalyticsService {
     @Autowired
     private InvertedIndexRepository indexRepo;
 
+    @Autowired
+    private SearchActivityRepository activityRepo;
+
+    @Autowired
+    private AnalyticsBuffer analyticsBuffer;
+
+    @Autowired
+    private TrendingTracker trendingTracker;
+
+    @Value("${analytics.dashboard-ttl-ms:10000}")
+    private long dashboardTtlMs;
+
+    private volatile CachedAnalytics cached;
+
     /**
-     * Log a search query (increment count)
+     * Log a search query (increment count). Buffered in memory and written
+     * to the database in batches by {@link AnalyticsBuffer}, and counted
+     * towards trending queries.
      */
     public void logQuery(String query) {
         if (query == null || query.trim().isEmpty()) {
             return;
         }
-        
-        SearchQuery q = queryRepo.findByQuery(query)
-            .orElse(new SearchQuery(null, query, 0L, 0L, LocalDateTime.now()));
-        
-        q.setCount(q.getCount() + 1);
-        q.setLastSearchedAt(LocalDateTime.now());
-        queryRepo.save(q);
+        analyticsBuffer.recordSearch(query);
+        trendingTracker.record(query);
+    }
+
+    /**
+     * Most searched queries in the recent window
+     */
+    public List<TrendingTracker.Trend> getTrending(int limit) {
+        return trendingTracker.top(limit);
     }
 
     /**
@@ -47,21 +69,35 @@ public class AnalyticsService {
         if (query == null || query.trim().isEmpty()) {
             return;
         }
-        
-        queryRepo.findByQuery(query).ifPresent(q -> {
-            q.setClicks(q.getClicks() + 1);
-            queryRepo.save(q);
-        });
+        analyticsBuffer.recordClick(query);
     }
 
     /**
-     * Get comprehensive analytics data for the dashboard
+     * Get comprehensive analytics data for the dashboard. The assembled
+     * response is reused for analytics.dashboard-ttl-ms, so frequent
+     * dashboard refreshes do not each repeat the aggregate queries.
      */
     public Map<String, Object> getAnalytics() {
+        CachedAnalytics c = cached;
+        if (c != null && System.currentTimeMillis() - c.builtAt() < dashboardTtlMs) {
+            return c.analytics();
+        }
+        synchronized (this) {
+            c = cached;
+            if (c == null || System.currentTimeMillis() - c.builtAt() >= dashboardTtlMs) {
+                c = new CachedAnalytics(Collections.unmodifiableMap(buildAnalytics()), System.currentTimeMillis());
+                cached = c;
+            }
+            return c.analytics();
+        }
+    }
+
+    private Map<String, Object> buildAnalytics() {
         Map<String, Object> analytics = new HashMap<>();
 
         // Top lists (existing)
-        analytics.put("topQueries", queryRepo.findTop10ByOrderByCountDesc());
+        List<SearchQuery> top10 = queryRepo.findTop10ByOrderByCountDesc();
+        analytics.put("topQueries", top10);
         analytics.put("topClicked", queryRepo.findTop10ByOrderByClicksDesc());
 
         // Aggregate stats
@@ -80,30 +116,25 @@ public class AnalyticsService {
             ? Math.round((double) totalClicks / totalSearches * 1000.0) / 10.0 
             : 0.0);
 
-        // Search activity by day (last 30 days) — for the activity timeline chart
-        List<SearchQuery> allQueries = queryRepo.findAllByOrderByLastSearchedAtDesc();
+        // Search activity by day (last 30 days) — one rollup row per day with activity
         LocalDate today = LocalDate.now();
-        Map<String, Long> activityMap = new LinkedHashMap<>();
-        for (int i = 29; i >= 0; i--) {
-            activityMap.put(today.minusDays(i).toString(), 0L);
-        }
-        for (SearchQuery sq : allQueries) {
-            if (sq.getLastSearchedAt() != null) {
-                String day = sq.getLastSearchedAt().toLocalDate().toString();
-                activityMap.computeIfPresent(day, (k, v) -> v + sq.getCount());
-            }
+        LocalDate from = today.minusDays(TIMELINE_DAYS - 1);
+        Map<LocalDate, SearchActivity> byDay = new HashMap<>();
+        for (SearchActivity day : activityRepo.findByBucketDateGreaterThanEqualOrderByBucketDate(from)) {
+            byDay.put(day.getBucketDate(), day);
         }
         List<Map<String, Object>> activityTimeline = new ArrayList<>();
-        activityMap.forEach((date, count) -> {
+        for (LocalDate date = from; !date.isAfter(today); date = date.plusDays(1)) {
+            SearchActivity day = byDay.get(date);
             Map<String, Object> point = new LinkedHashMap<>();
-            point.put("date", date);
-            point.put("searches", count);
+            point.put("date", date.toString());
+            point.put("searches", day != null ? day.getSearches() : 0L);
+            point.put("clicks", day != null ? day.getClicks() : 0L);
             activityTimeline.add(point);
-        });
+        }
         analytics.put("activityTimeline", activityTimeline);
 
         // Searches vs Clicks comparison for top queries (bar chart data)
-        List<SearchQuery> top10 = queryRepo.findTop10ByOrderByCountDesc();
         List<Map<String, Object>> comparison = top10.stream().map(q -> {
             Map<String, Object> row = new LinkedHashMap<>();
             row.put("query", q.getQuery().length() > 15 
@@ -117,4 +148,6 @@ public class AnalyticsService {
 
         return analytics;
     }
+
+    private record CachedAnalytics(Map<String, Object> analytics, long builtAt) {}
 }
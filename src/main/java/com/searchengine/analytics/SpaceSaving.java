@@ -0,0 +1,113 @@
+package com.searchengine.analytics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitters sketch over a fixed number of counters.
+ *
+ * Counters live in an array-backed min-heap indexed by a map from key to
+ * slot. A tracked key bumps its counter; an untracked key takes over the
+ * smallest counter and inherits its count as the possible overestimate, so
+ * any key seen more than n / capacity times out of n is always tracked.
+ * Not thread-safe.
+ */
+final class SpaceSaving {
+
+    private final int capacity;
+    private final String[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<String, Integer> slots;
+    private int size;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.slots = new HashMap<>(capacity * 4 / 3 + 1);
+    }
+
+    void offer(String key) {
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            counts[slot]++;
+            siftDown(slot);
+            return;
+        }
+        if (size < capacity) {
+            int i = size++;
+            set(i, key, 1, 0);
+            siftUp(i);
+            return;
+        }
+        // Evict the smallest counter; the newcomer may have been counted there
+        slots.remove(keys[0]);
+        long min = counts[0];
+        set(0, key, min + 1, min);
+        siftDown(0);
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0, size, null);
+        slots.clear();
+        size = 0;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.visit(keys[i], counts[i], errors[i]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    interface Visitor {
+        void visit(String key, long count, long error);
+    }
+
+    private void set(int i, String key, long count, long error) {
+        keys[i] = key;
+        counts[i] = count;
+        errors[i] = error;
+        slots.put(key, i);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[parent] <= counts[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && counts[left + 1] < counts[left] ? left + 1 : left;
+            if (counts[i] <= counts[smallest]) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String key = keys[a];
+        long count = counts[a];
+        long error = errors[a];
+        set(a, keys[b], counts[b], errors[b]);
+        set(b, key, count, error);
+    }
+}
@@ -0,0 +1,114 @@
+package com.searchengine.analytics;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Most searched queries over a sliding time window.
+ *
+ * The window is a ring of time buckets, each a {@link SpaceSaving} sketch
+ * with a fixed number of counters; a bucket is cleared when the ring wraps
+ * around to it. Memory stays at buckets x capacity entries however many
+ * distinct queries arrive, and counts are estimates that may overshoot by
+ * the reported error.
+ */
+@Component
+public class TrendingTracker {
+
+    private static final int MAX_QUERY_LENGTH = 255;
+
+    @Value("${analytics.trending.window-ms:3600000}")
+    private long windowMs;
+
+    @Value("${analytics.trending.buckets:12}")
+    private int bucketCount;
+
+    @Value("${analytics.trending.capacity:1000}")
+    private int capacity;
+
+    private Bucket[] buckets;
+    private long bucketMs;
+    private final LongAdder recorded = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        bucketMs = Math.max(1, windowMs / bucketCount);
+        buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket(new SpaceSaving(capacity));
+        }
+    }
+
+    public void record(String query) {
+        String key = normalize(query);
+        if (key.isEmpty()) {
+            return;
+        }
+        long epoch = System.currentTimeMillis() / bucketMs;
+        Bucket bucket = buckets[(int) (epoch % bucketCount)];
+        synchronized (bucket) {
+            if (bucket.epoch != epoch) {
+                bucket.sketch.clear();
+                bucket.epoch = epoch;
+            }
+            bucket.sketch.offer(key);
+        }
+        recorded.increment();
+    }
+
+    /**
+     * The k most searched queries in the window, highest estimated count first
+     */
+    public List<Trend> top(int k) {
+        long oldest = System.currentTimeMillis() / bucketMs - bucketCount + 1;
+        Map<String, long[]> merged = new HashMap<>();
+        for (Bucket bucket : buckets) {
+            synchronized (bucket) {
+                if (bucket.epoch < oldest) {
+                    continue;
+                }
+                bucket.sketch.forEach((key, count, error) -> {
+                    long[] totals = merged.computeIfAbsent(key, q -> new long[2]);
+                    totals[0] += count;
+                    totals[1] += error;
+                });
+            }
+        }
+        List<Trend> trends = new ArrayList<>(merged.size());
+        merged.forEach((query, totals) -> trends.add(new Trend(query, totals[0], totals[1])));
+        trends.sort(Comparator.comparingLong(Trend::count).reversed().thenComparing(Trend::query));
+        return trends.size() > k ? List.copyOf(trends.subList(0, k)) : trends;
+    }
+
+    /**
+     * Searches recorded since startup; lets consumers tell whether the window moved
+     */
+    public long recorded() {
+        return recorded.sum();
+    }
+
+    static String normalize(String query) {
+        String key = query.trim().toLowerCase().replaceAll("\\s+", " ");
+        return key.length() > MAX_QUERY_LENGTH ? key.substring(0, MAX_QUERY_LENGTH) : key;
+    }
+
+    /** A trending query; count may overshoot the true count by up to error */
+    public record Trend(String query, long count, long error) {}
+
+    private static final class Bucket {
+        final SpaceSaving sketch;
+        long epoch = Long.MIN_VALUE;
+
+        Bucket(SpaceSaving sketch) {
+            this.sketch = sketch;
+        }
+    }
+}
@@ -1,23 +1,86 @@
 package com.searchengine.autocomplete;
 
+import com.searchengine.analytics.TrendingTracker;
+import com.searchengine.indexer.PostingsIndex;
+import com.searchengine.indexer.TextProcessor;
 import com.searchengine.repository.DocumentRepository;
 import com.searchengine.repository.SearchQueryRepository;
-import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Weighted prefix suggestions.
+ * Suggestions are served from an immutable {@link SuggestionTrie} base plus a
+ * small concurrent delta of words inserted since the base was built. Reads
+ * take no locks: they see one published base and a ConcurrentSkipListMap,
+ * while any number of crawler threads insert into the delta. A new base is
+ * built in the background from past search queries, trending queries, the
+ * index vocabulary, document titles and the delta, then swapped in with a single volatile write.
+ * Index terms are stems, so the vocabulary is suggested through the most
+ * frequent word indexed under each term, kept in {@link SurfaceForms}.
+ */
 @Service
 public class AutocompleteService {
 
     private static final Logger log = LoggerFactory.getLogger(AutocompleteService.class);
-    
-    private final TrieNode root = new TrieNode();
-    private int wordCount = 0;
+    private static final int MAX_SUGGESTIONS = 10;
+    // Typo tolerance: shorter prefixes match too much to be useful
+    private static final int FUZZY_MIN_PREFIX = 4;
+    private static final int TWO_EDIT_MIN_PREFIX = 8;
+    private static final int TWO_EDIT_MIN_WORD = 6;
+    private static final int LOAD_PAGE_SIZE = 5000;
+    // A past search counts for more than one more document containing the term
+    private static final long QUERY_WEIGHT = 10;
+    private static final long TITLE_WEIGHT = 1;
+    // A search in the trending window counts on top of its lifetime weight
+    private static final long TRENDING_WEIGHT = 5 * QUERY_WEIGHT;
+    private static final int TRENDING_ENTRIES = 200;
+
+    private volatile SuggestionTrie trie = SuggestionTrie.EMPTY;
+
+    // Words inserted since the last build that the base does not know yet
+    private final ConcurrentSkipListMap<String, Long> delta = new ConcurrentSkipListMap<>();
+    private final AtomicInteger deltaSize = new AtomicInteger();
+    private final SurfaceForms surfaceForms = new SurfaceForms();
+    private final Object rebuildLock = new Object();
+    private volatile long lastBuildAt;
+    private volatile long trendingAtLastBuild;
+    private volatile boolean ready;
+
+    @Value("${autocomplete.rebuild-interval-ms:60000}")
+    private long rebuildIntervalMs;
+
+    @Value("${autocomplete.delta-max-entries:20000}")
+    private int deltaMaxEntries;
+
+    @Value("${autocomplete.trending-refresh-ms:300000}")
+    private long trendingRefreshMs;
+
+    @Value("${autocomplete.snapshot-file:}")
+    private String snapshotFile;
 
     @Autowired
     private DocumentRepository documentRepository;
@@ -25,120 +88,351 @@ public class AutocompleteService {
     @Autowired
     private SearchQueryRepository searchQueryRepository;
 
+    @Autowired
+    private PostingsIndex postingsIndex;
+
+    @Autowired
+    private TrendingTracker trendingTracker;
+
+    @Autowired
+    private TextProcessor textProcessor;
+
     /**
-     * Load existing tokens from the database into the Trie on startup.
+     * Warm up in the background once the application is ready, so startup
+     * does not wait on the database. A saved snapshot, if any, is served
+     * first and teaches the words behind the index terms; a fresh build from
+     * the database then replaces it.
      * This ensures autocomplete works after server restarts with PostgreSQL.
      */
-    @PostConstruct
+    @EventListener(ApplicationReadyEvent.class)
     public void loadFromDatabase() {
-        log.info("Loading autocomplete data from database...");
+        Thread.ofVirtual().name("autocomplete-warmup").start(() -> {
+            Path snapshot = snapshotPath();
+            if (snapshot != null && Files.exists(snapshot)) {
+                try {
+                    trie = SuggestionTrie.readFrom(snapshot);
+                    trie.forEach(this::learnWord);
+                    ready = true;
+                    log.info("Autocomplete snapshot loaded with {} entries", trie.size());
+                } catch (IOException e) {
+                    log.warn("Could not load autocomplete snapshot: {}", e.getMessage());
+                }
+            }
+            log.info("Loading autocomplete data from database...");
+            rebuild();
+            ready = true;
+            saveSnapshot();
+        });
+    }
+
+    /**
+     * False until the first suggestion trie (snapshot or full build) is live
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Fold the delta into a new base once it is old enough or large enough
+     * to slow down lookups, and pick up new trending weights now and then
+     */
+    @Scheduled(fixedDelayString = "${autocomplete.rebuild-check-ms:5000}")
+    public void rebuildIfChanged() {
+        if (!ready) {
+            return;
+        }
+        long age = System.currentTimeMillis() - lastBuildAt;
+        boolean deltaDue = !delta.isEmpty() && (deltaSize.get() >= deltaMaxEntries || age >= rebuildIntervalMs);
+        boolean trendingDue = trendingTracker.recorded() != trendingAtLastBuild && age >= trendingRefreshMs;
+        if (deltaDue || trendingDue) {
+            rebuild();
+        }
+    }
 
-        // Load all past search queries (highest priority)
+    /**
+     * Build a new trie and publish it atomically
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            // The three sources load in parallel into their own builders
+            CompletableFuture<SuggestionTrie.Builder> queries = CompletableFuture.supplyAsync(this::loadQueries);
+            CompletableFuture<SuggestionTrie.Builder> titles = CompletableFuture.supplyAsync(this::loadTitles);
+            SuggestionTrie.Builder builder = loadVocabulary();
+            builder.addAll(queries.join()).addAll(titles.join());
+
+            // Queries searched a lot lately rank above equally popular old ones
+            trendingAtLastBuild = trendingTracker.recorded();
+            for (TrendingTracker.Trend trend : trendingTracker.top(TRENDING_ENTRIES)) {
+                builder.add(trend.query(), TRENDING_WEIGHT * trend.count());
+            }
+
+            // Words inserted since the last build. Crawled words reach the
+            // postings index before they are inserted, so the vocabulary above
+            // carries them into later builds
+            Map<String, Long> folded = new HashMap<>(delta);
+            folded.forEach(builder::add);
+
+            trie = builder.build();
+            lastBuildAt = System.currentTimeMillis();
+
+            // Only after publishing, so a folded word is never missing from both;
+            // a word inserted again meanwhile keeps its newer delta entry
+            folded.forEach((word, weight) -> {
+                if (delta.remove(word, weight)) {
+                    deltaSize.decrementAndGet();
+                }
+            });
+            log.info("Autocomplete trie built with {} entries ({} nodes) in {} ms",
+                trie.size(), trie.nodeCount(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /** Past search queries (highest priority) */
+    private SuggestionTrie.Builder loadQueries() {
+        SuggestionTrie.Builder builder = new SuggestionTrie.Builder();
         try {
-            searchQueryRepository.findAll().forEach(sq -> insert(sq.getQuery()));
-            log.info("Loaded search queries into autocomplete Trie");
+            long afterId = 0;
+            List<SearchQueryRepository.QueryCountRow> rows;
+            do {
+                rows = searchQueryRepository.findQueryCountsAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+                for (SearchQueryRepository.QueryCountRow row : rows) {
+                    long count = row.getCount() != null ? row.getCount() : 0;
+                    builder.add(normalize(row.getQuery()), QUERY_WEIGHT * Math.max(1, count));
+                    afterId = row.getId();
+                }
+            } while (rows.size() == LOAD_PAGE_SIZE);
         } catch (Exception e) {
             log.warn("Could not load search queries: {}", e.getMessage());
         }
+        return builder;
+    }
+
+    /**
+     * Index vocabulary, weighted by document frequency. Each term is added as
+     * the word most often indexed under it; a term no word is known for yet
+     * waits until a page containing it is indexed again.
+     */
+    private SuggestionTrie.Builder loadVocabulary() {
+        SuggestionTrie.Builder builder = new SuggestionTrie.Builder();
+        postingsIndex.forEachTerm((token, docFreq) -> {
+            String word = surfaceForms.of(token);
+            if (word != null && word.length() >= 3) { // Skip very short words
+                builder.add(word, docFreq);
+            }
+        });
+        return builder;
+    }
+
+    /**
+     * Count a saved suggestion under the index term it analyzes to
+     */
+    private void learnWord(String entry, long weight) {
+        if (entry.indexOf(' ') < 0) {
+            List<String> terms = textProcessor.terms(entry);
+            if (terms.size() == 1) {
+                surfaceForms.add(terms.get(0), entry, weight);
+            }
+        }
+    }
 
-        // Load tokens from all indexed documents
+    /** Document titles */
+    private SuggestionTrie.Builder loadTitles() {
+        SuggestionTrie.Builder builder = new SuggestionTrie.Builder();
         try {
-            documentRepository.findAll().forEach(doc -> {
-                if (doc.getTokens() != null && !doc.getTokens().isEmpty()) {
-                    for (String token : doc.getTokens().split("\\s+")) {
-                        if (token.length() >= 3) { // Skip very short tokens
-                            insert(token);
-                        }
-                    }
+            long afterId = 0;
+            List<DocumentRepository.TitleRow> rows;
+            do {
+                rows = documentRepository.findTitlesAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+                for (DocumentRepository.TitleRow row : rows) {
+                    builder.add(normalize(row.getTitle()), TITLE_WEIGHT);
+                    afterId = row.getId();
                 }
-                // Also index document titles
-                if (doc.getTitle() != null && !doc.getTitle().isEmpty()) {
-                    insert(doc.getTitle().toLowerCase().trim());
-                }
-            });
+            } while (rows.size() == LOAD_PAGE_SIZE);
         } catch (Exception e) {
-            log.warn("Could not load document tokens: {}", e.getMessage());
+            log.warn("Could not load document titles: {}", e.getMessage());
         }
+        return builder;
+    }
 
-        log.info("Autocomplete Trie loaded with {} words", wordCount);
+    /**
+     * Save the current trie so the next start can serve it while warming up
+     */
+    @PreDestroy
+    public void saveSnapshot() {
+        Path snapshot = snapshotPath();
+        if (snapshot == null || !ready) {
+            return;
+        }
+        try {
+            Files.createDirectories(snapshot.toAbsolutePath().getParent());
+            trie.writeTo(snapshot);
+        } catch (IOException e) {
+            log.warn("Could not save autocomplete snapshot: {}", e.getMessage());
+        }
+    }
+
+    private Path snapshotPath() {
+        return snapshotFile == null || snapshotFile.isBlank() ? null : Path.of(snapshotFile);
     }
 
     /**
-     * Insert a word into the Trie
+     * Insert the words of an indexed page, given as cleaned text. Each word is
+     * counted under the term it was indexed as, and every term of the page is
+     * inserted as its most frequent word, so suggestions never show a stem.
      */
-    public void insert(String word) {
-        if (word == null || word.isEmpty()) {
+    public void insertPage(String cleaned) {
+        if (cleaned == null || cleaned.isEmpty()) {
             return;
         }
-        
-        TrieNode node = root;
-        for (char c : word.toLowerCase().toCharArray()) {
-            node.children.putIfAbsent(c, new TrieNode());
-            node = node.children.get(c);
+        Map<String, WordCount> words = new HashMap<>();
+        textProcessor.forEachToken(cleaned, (term, start, end, position) -> {
+            // A CJK bigram spans two one-char words; its term is the word
+            String word = cleaned.indexOf(' ', start) < end ? term.toString() : cleaned.substring(start, end);
+            words.computeIfAbsent(word, w -> new WordCount(term.toString())).count++;
+        });
+        Set<String> terms = new HashSet<>();
+        words.forEach((word, count) -> {
+            surfaceForms.add(count.term, word, count.count);
+            terms.add(count.term);
+        });
+        for (String term : terms) {
+            insert(surfaceForms.of(term));
         }
-        if (!node.isEndOfWord) {
-            node.isEndOfWord = true;
-            wordCount++;
+    }
+
+    private static final class WordCount {
+        final String term;
+        long count;
+
+        WordCount(String term) {
+            this.term = term;
+        }
+    }
+
+    /**
+     * Insert a word; it is suggestible immediately and folded into the base
+     * at the next background rebuild. Safe to call from any number of threads.
+     */
+    public void insert(String word) {
+        String normalized = normalize(word);
+        if (normalized == null || normalized.isEmpty() || trie.contains(normalized)) {
+            return;
+        }
+        if (delta.putIfAbsent(normalized, 1L) == null) {
+            deltaSize.incrementAndGet();
+        } else {
+            delta.merge(normalized, 1L, Long::sum);
         }
     }
 
     /**
-     * Get autocomplete suggestions for a given prefix
+     * Get the highest-weighted autocomplete suggestions for a given prefix.
+     * When fewer than ten entries start with the prefix itself, the rest are
+     * filled with entries whose start is one edit away, or two for long prefixes.
      */
     public List<String> getSuggestions(String prefix) {
         if (prefix == null || prefix.isEmpty()) {
             return List.of();
         }
-        
         prefix = prefix.toLowerCase();
-        TrieNode node = root;
-        
-        // Navigate to the node representing the prefix
-        for (char c : prefix.toCharArray()) {
-            if (!node.children.containsKey(c)) {
-                return List.of();
-            }
-            node = node.children.get(c);
+        // Delta before base: a folded word leaves the delta only after a base
+        // holding it is published, so reading in this order never misses it
+        Map<String, Long> recent = new HashMap<>(delta.subMap(prefix, prefix + Character.MAX_VALUE));
+        SuggestionTrie base = trie;
+        List<String> exact = exactSuggestions(prefix, base, recent);
+        if (exact.size() >= MAX_SUGGESTIONS || prefix.length() < FUZZY_MIN_PREFIX) {
+            return exact;
         }
-        
-        // Collect all words starting with the prefix
-        List<String> results = new ArrayList<>();
-        dfs(node, new StringBuilder(prefix), results);
-        return results.subList(0, Math.min(10, results.size()));
+
+        LinkedHashSet<String> merged = new LinkedHashSet<>(exact);
+        addFuzzy(merged, base.fuzzyTopK(prefix, 1, MAX_SUGGESTIONS));
+        if (merged.size() < MAX_SUGGESTIONS && prefix.length() >= TWO_EDIT_MIN_PREFIX) {
+            addFuzzy(merged, base.fuzzyTopK(prefix, 2, MAX_SUGGESTIONS));
+        }
+        return List.copyOf(merged);
     }
 
     /**
-     * Depth-first search to collect all words from a given node
+     * Closest known word to a cleaned query word whose terms are not in the
+     * index, or null if the word is known, is a stop word or nothing is
+     * close enough. Words are compared as typed, not as stems.
      */
-    private void dfs(TrieNode node, StringBuilder curr, List<String> res) {
-        if (res.size() >= 10) {
-            return;
+    public String correct(String word) {
+        if (word == null || word.length() < FUZZY_MIN_PREFIX) {
+            return null;
         }
-        if (node.isEndOfWord) {
-            res.add(curr.toString());
+        List<String> terms = textProcessor.terms(word);
+        if (terms.isEmpty() || isIndexed(terms)) {
+            return null;
         }
-        for (var entry : node.children.entrySet()) {
-            curr.append(entry.getKey());
-            dfs(entry.getValue(), curr, res);
-            curr.deleteCharAt(curr.length() - 1);
+        int maxEdits = word.length() >= TWO_EDIT_MIN_WORD ? 2 : 1;
+        return trie.closest(word, maxEdits, entry -> entry.indexOf(' ') < 0 && isIndexed(textProcessor.terms(entry)));
+    }
+
+    private boolean isIndexed(List<String> terms) {
+        for (String term : terms) {
+            if (postingsIndex.docFreq(term) > 0) {
+                return true;
+            }
         }
+        return false;
     }
-    
+
+    private static void addFuzzy(Set<String> merged, List<String> fuzzy) {
+        for (String entry : fuzzy) {
+            if (merged.size() >= MAX_SUGGESTIONS) {
+                return;
+            }
+            merged.add(entry);
+        }
+    }
+
+    /** Suggestions that start with the prefix, from the base and the delta words starting with it */
+    private List<String> exactSuggestions(String prefix, SuggestionTrie base, Map<String, Long> recent) {
+        List<String> top = base.topK(prefix, MAX_SUGGESTIONS);
+
+        if (recent.isEmpty()) {
+            return top;
+        }
+
+        // Keep the best k of base and delta in a min-heap; a delta word may
+        // also be in a base published after it was inserted
+        Map<String, Long> scores = new HashMap<>();
+        for (String word : top) {
+            scores.put(word, base.weightOf(word));
+        }
+        recent.forEach((word, weight) -> scores.merge(word, Math.max(0, base.weightOf(word)) + weight, Math::max));
+
+        Comparator<Map.Entry<String, Long>> better = Map.Entry.<String, Long>comparingByValue()
+            .thenComparing(Map.Entry.<String, Long>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<String, Long>> best = new PriorityQueue<>(better);
+        for (Map.Entry<String, Long> e : scores.entrySet()) {
+            best.add(e);
+            if (best.size() > MAX_SUGGESTIONS) {
+                best.poll();
+            }
+        }
+        String[] results = new String[best.size()];
+        for (int i = results.length - 1; i >= 0; i--) {
+            results[i] = best.poll().getKey();
+        }
+        return List.of(results);
+    }
+
     /**
-     * Check if the Trie contains a word
+     * Check if autocomplete knows a word
      */
     public boolean contains(String word) {
         if (word == null || word.isEmpty()) {
             return false;
         }
-        
-        TrieNode node = root;
-        for (char c : word.toLowerCase().toCharArray()) {
-            if (!node.children.containsKey(c)) {
-                return false;
-            }
-            node = node.children.get(c);
-        }
-        return node.isEndOfWord;
+        String normalized = word.toLowerCase();
+        // Delta first, for the same reason as in getSuggestions
+        return delta.containsKey(normalized) || trie.contains(normalized);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? null : text.toLowerCase().trim();
     }
 }
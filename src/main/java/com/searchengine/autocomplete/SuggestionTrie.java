@@ -0,0 +1,394 @@
+package com.searchengine.autocomplete;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Immutable, array-backed trie of weighted suggestions.
+ *
+ * Nodes are numbered in breadth-first order and described by parallel
+ * primitive arrays; the children of a node are contiguous and sorted by
+ * character, so a step is a binary search and no per-node objects or boxed
+ * chars exist. Each node carries its own weight (or -1 if no entry ends there)
+ * and the maximum weight anywhere in its subtree, which lets {@link #topK}
+ * walk best-first and stop after k results instead of visiting the subtree.
+ */
+public final class SuggestionTrie {
+
+    public static final SuggestionTrie EMPTY = new Builder().build();
+
+    // "SUG2": entries are words; "SUG1" snapshots held index stems and are not loaded
+    private static final int MAGIC = 0x53554732;
+
+    private final char[] label;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final long[] weight;
+    private final long[] maxWeight;
+    private final int entryCount;
+
+    private SuggestionTrie(char[] label, int[] parent, int[] firstChild, int[] childCount,
+                           long[] weight, long[] maxWeight, int entryCount) {
+        this.label = label;
+        this.parent = parent;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.weight = weight;
+        this.maxWeight = maxWeight;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * The k highest-weighted entries starting with prefix, best first.
+     * Costs O(prefix + k log k) heap work per result rather than a subtree scan.
+     */
+    public List<String> topK(String prefix, int k) {
+        int start = find(prefix);
+        if (start < 0 || k <= 0) {
+            return List.of();
+        }
+        return topK(start, k);
+    }
+
+    /**
+     * The k best entries that start within maxEdits Levenshtein edits of
+     * prefix, closest first and then by weight. The trie is walked once with
+     * one edit-distance row per depth, and a branch is cut as soon as every
+     * cell of its row exceeds maxEdits, so only a thin band of the trie
+     * around the prefix is visited.
+     */
+    public List<String> fuzzyTopK(String prefix, int maxEdits, int k) {
+        List<int[]> hits = fuzzyWalk(prefix, maxEdits, true);
+        hits.sort((x, y) -> x[1] != y[1] ? Integer.compare(x[1], y[1]) : Long.compare(maxWeight[y[0]], maxWeight[x[0]]));
+        LinkedHashSet<String> results = new LinkedHashSet<>();
+        for (int[] hit : hits) {
+            for (String entry : topK(hit[0], k)) {
+                if (results.size() >= k) {
+                    return new ArrayList<>(results);
+                }
+                results.add(entry);
+            }
+        }
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * The entry within maxEdits edits of word that is closest, then heaviest,
+     * among those accepted by the filter; null if there is none
+     */
+    public String closest(String word, int maxEdits, Predicate<String> accept) {
+        List<int[]> hits = fuzzyWalk(word, maxEdits, false);
+        hits.sort((x, y) -> x[1] != y[1] ? Integer.compare(x[1], y[1]) : Long.compare(weight[y[0]], weight[x[0]]));
+        for (int[] hit : hits) {
+            String entry = entryAt(hit[0]);
+            if (accept.test(entry)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {node, distance} for every node whose path is within maxEdits of target:
+     * as a prefix when prefixMode, otherwise as a whole entry
+     */
+    private List<int[]> fuzzyWalk(String target, int maxEdits, boolean prefixMode) {
+        int m = target.length();
+        // A row's minimum is at least depth - m, so no match lies deeper than m + maxEdits
+        int[][] rows = new int[m + maxEdits + 2][m + 1];
+        for (int j = 0; j <= m; j++) {
+            rows[0][j] = j;
+        }
+        List<int[]> hits = new ArrayList<>();
+        if (prefixMode && m <= maxEdits) {
+            hits.add(new int[] {0, m});
+        }
+        fuzzyWalk(0, 1, target, maxEdits, prefixMode, rows, hits);
+        return hits;
+    }
+
+    private void fuzzyWalk(int node, int depth, String target, int maxEdits, boolean prefixMode,
+                           int[][] rows, List<int[]> hits) {
+        if (depth >= rows.length) {
+            return;
+        }
+        int m = target.length();
+        int[] prev = rows[depth - 1];
+        int[] row = rows[depth];
+        int from = firstChild[node];
+        for (int child = from; child < from + childCount[node]; child++) {
+            char c = label[child];
+            row[0] = depth;
+            int min = row[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = target.charAt(j - 1) == c ? 0 : 1;
+                row[j] = Math.min(Math.min(prev[j] + 1, row[j - 1] + 1), prev[j - 1] + cost);
+                min = Math.min(min, row[j]);
+            }
+            if (min > maxEdits) {
+                continue;
+            }
+            if (row[m] <= maxEdits && (prefixMode || weight[child] >= 0)) {
+                hits.add(new int[] {child, row[m]});
+            }
+            fuzzyWalk(child, depth + 1, target, maxEdits, prefixMode, rows, hits);
+        }
+    }
+
+    private List<String> topK(int start, int k) {
+        List<String> results = new ArrayList<>(k);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>();
+        frontier.add(new Candidate(maxWeight[start], start, false));
+        while (!frontier.isEmpty() && results.size() < k) {
+            Candidate c = frontier.poll();
+            if (c.entry) {
+                results.add(entryAt(c.node));
+                continue;
+            }
+            if (weight[c.node] >= 0) {
+                frontier.add(new Candidate(weight[c.node], c.node, true));
+            }
+            int from = firstChild[c.node];
+            for (int child = from; child < from + childCount[c.node]; child++) {
+                frontier.add(new Candidate(maxWeight[child], child, false));
+            }
+        }
+        return results;
+    }
+
+    public boolean contains(String word) {
+        int node = find(word);
+        return node >= 0 && weight[node] >= 0;
+    }
+
+    /**
+     * Weight of an entry, or -1 if it is not in the trie
+     */
+    public long weightOf(String word) {
+        int node = find(word);
+        return node >= 0 ? weight[node] : -1;
+    }
+
+    /**
+     * Visit every entry with its weight, in no particular order
+     */
+    public void forEach(BiConsumer<String, Long> visitor) {
+        for (int node = 1; node < weight.length; node++) {
+            if (weight[node] >= 0) {
+                visitor.accept(entryAt(node), weight[node]);
+            }
+        }
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    public int nodeCount() {
+        return label.length;
+    }
+
+    /**
+     * Save the trie so that a restart can serve suggestions before rebuilding
+     */
+    public void writeTo(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(label.length);
+            out.writeInt(entryCount);
+            for (int i = 0; i < label.length; i++) {
+                out.writeChar(label[i]);
+                out.writeInt(parent[i]);
+                out.writeInt(firstChild[i]);
+                out.writeInt(childCount[i]);
+                out.writeLong(weight[i]);
+                out.writeLong(maxWeight[i]);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static SuggestionTrie readFrom(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a suggestion snapshot: " + file);
+            }
+            int n = in.readInt();
+            int entryCount = in.readInt();
+            char[] label = new char[n];
+            int[] parent = new int[n];
+            int[] firstChild = new int[n];
+            int[] childCount = new int[n];
+            long[] weight = new long[n];
+            long[] maxWeight = new long[n];
+            for (int i = 0; i < n; i++) {
+                label[i] = in.readChar();
+                parent[i] = in.readInt();
+                firstChild[i] = in.readInt();
+                childCount[i] = in.readInt();
+                weight[i] = in.readLong();
+                maxWeight[i] = in.readLong();
+            }
+            return new SuggestionTrie(label, parent, firstChild, childCount, weight, maxWeight, entryCount);
+        }
+    }
+
+    /**
+     * Node reached by following prefix from the root, or -1
+     */
+    int find(String prefix) {
+        int node = 0;
+        for (int i = 0; i < prefix.length() && node >= 0; i++) {
+            node = child(node, prefix.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * Child of node labelled c, or -1
+     */
+    int child(int node, char c) {
+        int lo = firstChild[node];
+        int hi = lo + childCount[node] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (label[mid] < c) {
+                lo = mid + 1;
+            } else if (label[mid] > c) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Rebuild the entry ending at node by walking up to the root */
+    String entryAt(int node) {
+        StringBuilder sb = new StringBuilder();
+        for (int n = node; n > 0; n = parent[n]) {
+            sb.append(label[n]);
+        }
+        return sb.reverse().toString();
+    }
+
+    private record Candidate(long score, int node, boolean entry) implements Comparable<Candidate> {
+        @Override
+        public int compareTo(Candidate o) {
+            if (score != o.score) {
+                return Long.compare(o.score, score);
+            }
+            // A finished entry beats an unexplored subtree of the same weight
+            if (entry != o.entry) {
+                return entry ? -1 : 1;
+            }
+            return Integer.compare(node, o.node);
+        }
+    }
+
+    /**
+     * Collects weighted entries and lays them out as a SuggestionTrie.
+     * Adding the same entry twice sums its weights.
+     */
+    public static final class Builder {
+
+        private final Map<String, Long> weights = new HashMap<>();
+
+        public Builder add(String entry, long weight) {
+            if (entry != null && !entry.isEmpty()) {
+                weights.merge(entry, Math.max(0, weight), Long::sum);
+            }
+            return this;
+        }
+
+        /**
+         * Merge in the entries of another builder, e.g. one filled by a parallel loader
+         */
+        public Builder addAll(Builder other) {
+            other.weights.forEach(this::add);
+            return this;
+        }
+
+        public int size() {
+            return weights.size();
+        }
+
+        public SuggestionTrie build() {
+            String[] entries = weights.keySet().toArray(new String[0]);
+            Arrays.parallelSort(entries);
+            int n = entries.length;
+
+            int capacity = 1;
+            for (String e : entries) {
+                capacity += e.length();
+            }
+            char[] label = new char[capacity];
+            int[] parent = new int[capacity];
+            int[] firstChild = new int[capacity];
+            int[] childCount = new int[capacity];
+            long[] weight = new long[capacity];
+            // Range of sorted entries under each node, and its depth
+            int[] lo = new int[capacity];
+            int[] hi = new int[capacity];
+            int[] depth = new int[capacity];
+
+            Arrays.fill(weight, -1);
+            hi[0] = n;
+            int count = 1;
+            for (int node = 0; node < count; node++) {
+                int from = lo[node];
+                int to = hi[node];
+                int d = depth[node];
+                // Sorted order puts the entry equal to this node's prefix first
+                if (from < to && entries[from].length() == d) {
+                    weight[node] = weights.get(entries[from]);
+                    from++;
+                }
+                firstChild[node] = count;
+                while (from < to) {
+                    char c = entries[from].charAt(d);
+                    int end = from + 1;
+                    while (end < to && entries[end].charAt(d) == c) {
+                        end++;
+                    }
+                    label[count] = c;
+                    parent[count] = node;
+                    lo[count] = from;
+                    hi[count] = end;
+                    depth[count] = d + 1;
+                    count++;
+                    from = end;
+                }
+                childCount[node] = count - firstChild[node];
+            }
+
+            // Children always follow their parent, so one backward pass fills subtree maxima
+            long[] maxWeight = Arrays.copyOf(weight, count);
+            for (int node = count - 1; node > 0; node--) {
+                if (maxWeight[node] > maxWeight[parent[node]]) {
+                    maxWeight[parent[node]] = maxWeight[node];
+                }
+            }
+            return new SuggestionTrie(Arrays.copyOf(label, count), Arrays.copyOf(parent, count),
+                Arrays.copyOf(firstChild, count), Arrays.copyOf(childCount, count),
+                Arrays.copyOf(weight, count), maxWeight, n);
+        }
+    }
+}
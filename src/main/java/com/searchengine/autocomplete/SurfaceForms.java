@@ -0,0 +1,72 @@
+package com.searchengine.autocomplete;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The most frequent word behind each index term.
+ *
+ * Index terms are stems ("gener" for "generalizations"), which make poor
+ * suggestions, so every indexed word is counted under its term and
+ * autocomplete shows the best counted word instead. Only a few words are
+ * kept per term: when all slots are taken, a new word takes over the
+ * smallest counter and inherits its count, as in Space-Saving, so a word
+ * that dominates its term always ends up on top. Thread-safe.
+ */
+final class SurfaceForms {
+
+    private static final int WORDS_PER_TERM = 3;
+
+    private final ConcurrentHashMap<String, Words> terms = new ConcurrentHashMap<>();
+
+    void add(String term, String word, long count) {
+        terms.computeIfAbsent(term, t -> new Words()).add(word, count);
+    }
+
+    /**
+     * The most frequent word seen for term, or null if none was seen
+     */
+    String of(String term) {
+        Words words = terms.get(term);
+        return words == null ? null : words.top();
+    }
+
+    int size() {
+        return terms.size();
+    }
+
+    private static final class Words {
+
+        private final String[] words = new String[WORDS_PER_TERM];
+        private final long[] counts = new long[WORDS_PER_TERM];
+
+        synchronized void add(String word, long count) {
+            int min = 0;
+            for (int i = 0; i < words.length; i++) {
+                if (words[i] == null) {
+                    words[i] = word;
+                    counts[i] = count;
+                    return;
+                }
+                if (words[i].equals(word)) {
+                    counts[i] += count;
+                    return;
+                }
+                if (counts[i] < counts[min]) {
+                    min = i;
+                }
+            }
+            words[min] = word;
+            counts[min] += count;
+        }
+
+        synchronized String top() {
+            int best = 0;
+            for (int i = 1; i < words.length && words[i] != null; i++) {
+                if (counts[i] > counts[best]) {
+                    best = i;
+                }
+            }
+            return words[best];
+        }
+    }
+}
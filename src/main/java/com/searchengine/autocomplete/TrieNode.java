@@ -1,9 +0,0 @@
-package com.searchengine.autocomplete;
-
-import java.util.HashMap;
-import java.util.Map;
-
-public class TrieNode {
-    public Map<Character, TrieNode> children = new HashMap<>();
-    public boolean isEndOfWord = false;
-}
@@ -1,18 +1,23 @@
 package com.searchengine.config;
 
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Profile;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 
 import java.time.Duration;
 
+/**
+ * Redis settings for the shared (L2) search cache, active whenever
+ * spring.cache.type=redis; the in-process L1 lives in SearchCache.
+ */
 @Configuration
 @EnableCaching
-@Profile("redis")
+@ConditionalOnProperty(name = "spring.cache.type", havingValue = "redis")
 public class RedisConfig {
     
     @Bean
@@ -22,7 +27,17 @@ public class RedisConfig {
             .disableCachingNullValues()
             .serializeValuesWith(
                 RedisSerializationContext.SerializationPair
-                    .fromSerializer(new GenericJackson2JsonRedisSerializer())
+                    .fromSerializer(valueSerializer())
             );
     }
+
+    /**
+     * JSON with the class of every value recorded, so cached search responses
+     * come back as the same types; the JSR-310 module handles the LocalDateTime
+     * of each result, which the serializer's own ObjectMapper cannot write
+     */
+    static GenericJackson2JsonRedisSerializer valueSerializer() {
+        return new GenericJackson2JsonRedisSerializer()
+            .configure(mapper -> mapper.registerModule(new JavaTimeModule()));
+    }
 }
@@ -0,0 +1,187 @@
+package com.searchengine.crawler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * URL frontier for one crawl, shared by many fetch workers.
+ *
+ * Discovered URLs are checked against a Bloom filter and appended to the
+ * crawl's on-disk {@link FrontierLog}; only a bounded window of them is read
+ * back into per-host queues at a time, so the heap never holds the whole
+ * frontier. A host is handed out by {@link #take} only when its politeness
+ * delay since the last fetch start has passed and it has fewer than
+ * perHostLimit fetches in flight, so a slow or rate-limited host never holds up
+ * the others.
+ *
+ * A Bloom false positive drops a URL that was never queued; at the configured
+ * rate that is the usual trade for keeping seen-URL state off the heap.
+ */
+class CrawlFrontier {
+
+    private final FrontierLog log;
+    private final BloomFilter seen;
+    private final long delayMs;
+    private final int perHostLimit;
+    private final int window;
+
+    private final Map<String, HostQueue> hosts = new ConcurrentHashMap<>();
+    private final DelayQueue<HostQueue> ready = new DelayQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    // Log positions read into memory but not yet finished; the smallest is the resume point
+    private final NavigableSet<Long> outstanding = new ConcurrentSkipListSet<>();
+
+    CrawlFrontier(FrontierLog log, BloomFilter seen, long delayMs, int perHostLimit, int window) {
+        this.log = log;
+        this.seen = seen;
+        this.delayMs = delayMs;
+        this.perHostLimit = perHostLimit;
+        this.window = Math.max(1, window);
+    }
+
+    /**
+     * Queue a URL unless it has been seen before in this crawl
+     */
+    boolean offer(String url) {
+        if (hostOf(url) == null || !seen.put(url)) {
+            return false;
+        }
+        try {
+            return log.append(url);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to crawl frontier", e);
+        }
+    }
+
+    /**
+     * Wait up to timeoutMs for a URL whose host may be fetched now, or return null.
+     * Only one thread may call this, since it also pages URLs in from disk.
+     */
+    FrontierLog.Entry take(long timeoutMs) throws InterruptedException {
+        refill();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            HostQueue hq = ready.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (hq == null) {
+                return null;
+            }
+            synchronized (hq) {
+                hq.scheduled = false;
+                FrontierLog.Entry entry = hq.urls.poll();
+                if (entry == null) {
+                    continue;
+                }
+                queued.decrementAndGet();
+                hq.active++;
+                hq.nextFetchAt = System.currentTimeMillis() + delayMs;
+                scheduleIfEligible(hq);
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Release the host slot taken for a URL once its fetch has finished
+     */
+    void done(FrontierLog.Entry entry) {
+        outstanding.remove(entry.position());
+        HostQueue hq = hosts.get(hostOf(entry.url()));
+        if (hq == null) {
+            return;
+        }
+        synchronized (hq) {
+            hq.active--;
+            scheduleIfEligible(hq);
+        }
+    }
+
+    /**
+     * True when no URL is waiting in memory or on disk
+     */
+    boolean isEmpty() {
+        return queued.get() == 0 && log.unreadBytes() == 0;
+    }
+
+    /**
+     * Log position before which every URL has been fetched; a resumed crawl
+     * restarts here. Called from the same thread as {@link #take}.
+     */
+    long watermark() {
+        Long first = outstanding.isEmpty() ? null : outstanding.first();
+        return first != null ? first : log.readPosition();
+    }
+
+    private void refill() {
+        try {
+            FrontierLog.Entry entry;
+            while (queued.get() < window && (entry = log.next()) != null) {
+                String host = hostOf(entry.url());
+                if (host == null) {
+                    continue;
+                }
+                outstanding.add(entry.position());
+                HostQueue hq = hosts.computeIfAbsent(host, HostQueue::new);
+                synchronized (hq) {
+                    hq.urls.add(entry);
+                    queued.incrementAndGet();
+                    scheduleIfEligible(hq);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read crawl frontier", e);
+        }
+    }
+
+    private void scheduleIfEligible(HostQueue hq) {
+        if (!hq.scheduled && !hq.urls.isEmpty() && hq.active < perHostLimit) {
+            hq.scheduled = true;
+            ready.add(hq);
+        }
+    }
+
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? null : host.toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Pending URLs of one host; in the ready queue at most once, and never
+     * re-timed while it is in there.
+     */
+    private static final class HostQueue implements Delayed {
+        final String host;
+        final Queue<FrontierLog.Entry> urls = new ArrayDeque<>();
+        long nextFetchAt;
+        int active;
+        boolean scheduled;
+
+        HostQueue(String host) {
+            this.host = host;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(nextFetchAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(nextFetchAt, ((HostQueue) other).nextFetchAt);
+        }
+    }
+}
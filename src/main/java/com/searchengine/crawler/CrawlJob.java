@@ -0,0 +1,184 @@
+package com.searchengine.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * On-disk state of one crawl: its settings, frontier log, seen-URL filter and
+ * last checkpoint, all kept in one directory under crawler.frontier.dir.
+ * A job whose directory still exists at startup did not finish and is resumed
+ * from its checkpoint; the directory is deleted when the crawl completes.
+ */
+final class CrawlJob implements Closeable {
+
+    enum Type { WEB, WIKIPEDIA, RECRAWL }
+
+    private static final String JOB_FILE = "job.properties";
+    private static final String CHECKPOINT_FILE = "checkpoint.properties";
+    private static final String SEEN_FILE = "seen.bloom";
+
+    private final Path dir;
+    private final Type type;
+    private final String label;
+    private final String domain;
+    private final int maxPages;
+    private final FrontierLog log;
+    private final BloomFilter seen;
+    private int dispatched;
+
+    private CrawlJob(Path dir, Properties job, FrontierLog log, BloomFilter seen, int dispatched) {
+        this.dir = dir;
+        this.type = Type.valueOf(job.getProperty("type"));
+        this.label = job.getProperty("label", "");
+        this.domain = job.getProperty("domain", "");
+        this.maxPages = Integer.parseInt(job.getProperty("maxPages"));
+        this.log = log;
+        this.seen = seen;
+        this.dispatched = dispatched;
+    }
+
+    /**
+     * Start a new job directory under root
+     */
+    static CrawlJob create(Path root, Type type, String label, String domain, int maxPages,
+                           long expectedUrls, double falsePositiveRate) throws IOException {
+        Path dir = root.resolve("crawl-" + System.currentTimeMillis() + "-" + Long.toHexString(System.nanoTime()));
+        Files.createDirectories(dir);
+        Properties job = new Properties();
+        job.setProperty("type", type.name());
+        job.setProperty("label", label == null ? "" : label);
+        job.setProperty("domain", domain == null ? "" : domain);
+        job.setProperty("maxPages", Integer.toString(maxPages));
+        job.setProperty("expectedUrls", Long.toString(expectedUrls));
+        job.setProperty("falsePositiveRate", Double.toString(falsePositiveRate));
+        writeAtomically(dir.resolve(JOB_FILE), job);
+        return new CrawlJob(dir, job, new FrontierLog(dir, 0),
+            new BloomFilter(expectedUrls, falsePositiveRate), 0);
+    }
+
+    /**
+     * Reopen an unfinished job from its last checkpoint
+     */
+    static CrawlJob resume(Path dir) throws IOException {
+        Properties job = read(dir.resolve(JOB_FILE));
+        Properties checkpoint = Files.exists(dir.resolve(CHECKPOINT_FILE))
+            ? read(dir.resolve(CHECKPOINT_FILE)) : new Properties();
+        long watermark = Long.parseLong(checkpoint.getProperty("watermark", "0"));
+        int dispatched = Integer.parseInt(checkpoint.getProperty("dispatched", "0"));
+        BloomFilter seen = Files.exists(dir.resolve(SEEN_FILE))
+            ? BloomFilter.readFrom(dir.resolve(SEEN_FILE))
+            : new BloomFilter(Long.parseLong(job.getProperty("expectedUrls")),
+                Double.parseDouble(job.getProperty("falsePositiveRate")));
+        return new CrawlJob(dir, job, new FrontierLog(dir, watermark), seen, dispatched);
+    }
+
+    /**
+     * Directories of jobs left unfinished by a previous run
+     */
+    static List<Path> unfinished(Path root) throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return dirs;
+        }
+        try (Stream<Path> children = Files.list(root)) {
+            children.filter(d -> Files.exists(d.resolve(JOB_FILE))).sorted().forEach(dirs::add);
+        }
+        return dirs;
+    }
+
+    CrawlFrontier frontier(long delayMs, int perHostLimit, int window) {
+        return new CrawlFrontier(log, seen, delayMs, perHostLimit, window);
+    }
+
+    /**
+     * Persist the frontier position, page count and seen filter.
+     * The filter is written before the checkpoint, so it always covers
+     * every URL the checkpoint could replay.
+     */
+    void checkpoint(CrawlFrontier frontier, int dispatched) throws IOException {
+        this.dispatched = dispatched;
+        long watermark = frontier.watermark();
+        log.checkpoint(watermark);
+
+        Path tmp = dir.resolve(SEEN_FILE + ".tmp");
+        seen.writeTo(tmp);
+        Files.move(tmp, dir.resolve(SEEN_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("watermark", Long.toString(watermark));
+        checkpoint.setProperty("dispatched", Integer.toString(dispatched));
+        writeAtomically(dir.resolve(CHECKPOINT_FILE), checkpoint);
+    }
+
+    /**
+     * Delete the job's files once the crawl has finished
+     */
+    void complete() throws IOException {
+        close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        log.close();
+    }
+
+    String id() {
+        return dir.getFileName().toString();
+    }
+
+    Type type() {
+        return type;
+    }
+
+    String label() {
+        return label;
+    }
+
+    String domain() {
+        return domain;
+    }
+
+    int maxPages() {
+        return maxPages;
+    }
+
+    int dispatched() {
+        return dispatched;
+    }
+
+    private static Properties read(Path file) throws IOException {
+        Properties props = new Properties();
+        try (Reader in = Files.newBufferedReader(file)) {
+            props.load(in);
+        }
+        return props;
+    }
+
+    private static void writeAtomically(Path file, Properties props) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp)) {
+            props.store(out, null);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
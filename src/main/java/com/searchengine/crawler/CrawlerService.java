@@ -1,23 +1,41 @@
 package com.searchengine.crawler;
 
 import com.searchengine.autocomplete.AutocompleteService;
+import com.searchengine.indexer.AnalyzedText;
+import com.searchengine.indexer.CorpusStats;
 import com.searchengine.indexer.IndexerService;
 import com.searchengine.indexer.TextProcessor;
+import com.searchengine.indexer.WordOffsets;
 import com.searchengine.model.Document;
 import com.searchengine.repository.DocumentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.jsoup.nodes.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 @Service
 public class CrawlerService {
+
+    private static final Logger log = LoggerFactory.getLogger(CrawlerService.class);
+    private static final int URL_PAGE_SIZE = 5000;
+    private static final double STORED_URL_FPP = 0.01;
+    private static final int REANALYZE_PAGE_SIZE = 200;
     
     @Autowired
     private DocumentRepository docRepo;
@@ -30,6 +48,12 @@ public class CrawlerService {
     
     @Autowired
     private AutocompleteService autocompleteService;
+
+    @Autowired
+    private CorpusStats corpusStats;
+
+    @Autowired
+    private NearDuplicateIndex nearDuplicates;
     
     @Autowired(required = false)
     private S3Client s3Client;
@@ -40,28 +64,266 @@ public class CrawlerService {
     @Value("${aws.s3.enabled:false}")
     private boolean s3Enabled;
 
+    @Value("${crawler.pipeline.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${crawler.pipeline.parse-threads:4}")
+    private int parseThreads;
+
+    @Value("${crawler.pipeline.persist-threads:4}")
+    private int persistThreads;
+
+    @Value("${crawler.pipeline.index-threads:2}")
+    private int indexThreads;
+
+    @Value("${crawler.pipeline.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs;
+
+    @Value("${crawler.stored-urls.expected:1000000}")
+    private long expectedStoredUrls;
+
+    // A stored page is fetched again once its copy is older than this
+    @Value("${crawler.recrawl.max-age-hours:168}")
+    private long recrawlMaxAgeHours;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Every stored URL is in here, so a miss skips the existsByUrl round trip;
+    // null until loaded, in which case every URL is checked in the DB
+    private volatile BloomFilter storedUrls;
+
+    // Rows stored before URLs were canonicalized, moved to their canonical URL once ready
+    private volatile List<DocumentRepository.UrlRow> legacyUrls = List.of();
+
+    private PipelineStage<FetchedPage> parseStage;
+    private PipelineStage<ParsedPage> persistStage;
+    private PipelineStage<StoredPage> indexStage;
+
+    // stored is the copy already in the database when this is a re-crawl, otherwise null
+    private record FetchedPage(String url, org.jsoup.nodes.Document jsoupDoc,
+                               DocumentRepository.CrawlStateRow stored) {}
+
+    // reanalyze marks a stored page run through changed analysis settings rather than fetched again
+    private record ParsedPage(String url, String title, String cleaned, String tokens, AnalyzedText analyzed,
+                              long fingerprint, DocumentRepository.CrawlStateRow stored, boolean reanalyze) {}
+
+    private record StoredPage(Document doc, AnalyzedText analyzed) {}
+
     /**
-     * Process a crawled page: extract content, tokenize, index, and store
+     * Wire the ingest stages: parse (CPU) -> persist (DB, S3) -> index (postings, Trie).
+     * Fetching happens on the crawler threads, which feed the parse stage.
      */
-    public void processPage(String url, org.jsoup.nodes.Document jsoupDoc) {
-        if (docRepo.existsByUrl(url)) {
+    @PostConstruct
+    public void startPipeline() {
+        loadStoredUrls();
+        indexStage = new PipelineStage<>("index", queueCapacity, indexThreads, this::indexPage, meterRegistry);
+        persistStage = new PipelineStage<>("persist", queueCapacity, persistThreads, this::persistPage, meterRegistry);
+        parseStage = new PipelineStage<>("parse", queueCapacity, parseThreads, this::parsePage, meterRegistry);
+    }
+
+    private void loadStoredUrls() {
+        long afterId = 0;
+        int loaded = 0;
+        try {
+            BloomFilter filter = new BloomFilter(Math.max(expectedStoredUrls, docRepo.count() * 2), STORED_URL_FPP);
+            List<DocumentRepository.UrlRow> legacy = new ArrayList<>();
+            List<DocumentRepository.UrlRow> rows;
+            do {
+                rows = docRepo.findUrlsAfter(afterId, PageRequest.of(0, URL_PAGE_SIZE));
+                for (DocumentRepository.UrlRow row : rows) {
+                    String canonical = UrlCanonicalizer.canonicalize(row.getUrl());
+                    if (!canonical.equals(row.getUrl())) {
+                        legacy.add(row);
+                    }
+                    filter.put(canonical);
+                    afterId = row.getId();
+                }
+                loaded += rows.size();
+            } while (rows.size() == URL_PAGE_SIZE);
+            storedUrls = filter;
+            legacyUrls = legacy;
+        } catch (Exception e) {
+            log.warn("Could not load stored URLs: {}", e.getMessage());
+        }
+        log.info("Stored-URL filter loaded with {} URLs", loaded);
+    }
+
+    /**
+     * Move documents stored before URLs were canonicalized to their canonical
+     * URL, in the background. Until then a re-crawl does not find them and a
+     * stale batch keeps returning them; a legacy row whose canonical URL has
+     * been stored meanwhile is a second copy of that page and is deleted.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void canonicalizeStoredUrls() {
+        List<DocumentRepository.UrlRow> rows = legacyUrls;
+        legacyUrls = List.of();
+        if (rows.isEmpty()) {
             return;
         }
+        Thread.ofVirtual().name("canonicalize-urls").start(() -> {
+            int renamed = 0;
+            int removed = 0;
+            for (DocumentRepository.UrlRow row : rows) {
+                String canonical = UrlCanonicalizer.canonicalize(row.getUrl());
+                try {
+                    if (docRepo.existsByUrl(canonical)) {
+                        indexerService.delete(row.getId());
+                        removed++;
+                    } else {
+                        docRepo.updateUrl(row.getId(), canonical);
+                        renamed++;
+                    }
+                } catch (Exception e) {
+                    log.warn("Could not canonicalize stored URL {}: {}", row.getUrl(), e.getMessage());
+                }
+            }
+            log.info("Moved {} stored documents to their canonical URL, deleted {} stored twice", renamed, removed);
+        });
+    }
+
+    /**
+     * Drain the stages upstream first so every queued page reaches the index
+     */
+    @PreDestroy
+    public void stopPipeline() {
+        parseStage.shutdown(shutdownTimeoutMs);
+        persistStage.shutdown(shutdownTimeoutMs);
+        indexStage.shutdown(shutdownTimeoutMs);
+    }
+
+    /**
+     * Process a crawled page: extract content, tokenize, index, and store.
+     * The page is handed to the ingest pipeline; this blocks only while the
+     * parse queue is full. A page stored within crawler.recrawl.max-age-hours
+     * is skipped; an older one goes through as a re-crawl of the stored copy.
+     * URLs are compared in canonical form, so tracking variants are not stored twice.
+     */
+    public void processPage(String url, org.jsoup.nodes.Document jsoupDoc) throws InterruptedException {
+        url = UrlCanonicalizer.canonicalize(url);
+        BloomFilter filter = storedUrls;
+        DocumentRepository.CrawlStateRow stored = null;
+        if (filter == null || filter.mightContain(url)) {
+            Optional<DocumentRepository.CrawlStateRow> row = docRepo.findCrawlStateByUrl(url);
+            if (row.isPresent() && !isStale(row.get())) {
+                return;
+            }
+            stored = row.orElse(null);
+        }
+        parseStage.put(new FetchedPage(url, jsoupDoc, stored));
+    }
+
+    private boolean isStale(DocumentRepository.CrawlStateRow stored) {
+        LocalDateTime crawledAt = stored.getCrawledAt();
+        return crawledAt == null || crawledAt.isBefore(LocalDateTime.now().minusHours(recrawlMaxAgeHours));
+    }
+
+    /**
+     * Stored URLs due for a re-crawl, least recently crawled first
+     */
+    public List<String> findStaleUrls(int limit) {
+        LocalDateTime before = LocalDateTime.now().minusHours(recrawlMaxAgeHours);
+        return docRepo.findStaleUrls(before, PageRequest.of(0, limit)).stream()
+            .map(DocumentRepository.UrlRow::getUrl)
+            .toList();
+    }
+
+    /**
+     * Delete the stored copy of a page that no longer exists; false if none was stored
+     */
+    public boolean removePage(String url) {
+        Optional<DocumentRepository.CrawlStateRow> stored = docRepo.findCrawlStateByUrl(UrlCanonicalizer.canonicalize(url));
+        if (stored.isEmpty() || !indexerService.delete(stored.get().getId())) {
+            return false;
+        }
+        log.info("Removed page that no longer exists: {}", url);
+        return true;
+    }
 
+    private void parsePage(FetchedPage page) throws InterruptedException {
+        org.jsoup.nodes.Document jsoupDoc = page.jsoupDoc();
         String title = jsoupDoc.title();
         Element body = jsoupDoc.body();
         String bodyText = body != null ? body.text() : "";
         String cleaned = textProcessor.clean(bodyText);
-        String tokens = textProcessor.tokenize(cleaned);
+        AnalyzedText analyzed = textProcessor.analyze(cleaned);
+        String tokens = textProcessor.tokenize(analyzed);
+
+        persistStage.put(new ParsedPage(page.url(), title, cleaned, tokens, analyzed, SimHash.of(analyzed),
+            page.stored(), false));
+    }
 
-        // 1. Save document to database
+    /**
+     * Re-index documents whose terms came from other analysis settings, such
+     * as after stemming was switched on. Their stored text goes through the
+     * current analyzer and replaces them like a changed re-crawl would; runs
+     * in the background, and search keeps serving the old terms until then.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reanalyzeStored() {
+        String analyzerId = textProcessor.analyzerId();
+        Thread.ofVirtual().name("reanalyze").start(() -> {
+            int queued = 0;
+            try {
+                long afterId = 0;
+                List<DocumentRepository.StoredContentRow> rows;
+                do {
+                    rows = docRepo.findDocsToReanalyzeAfter(afterId, analyzerId, PageRequest.of(0, REANALYZE_PAGE_SIZE));
+                    for (DocumentRepository.StoredContentRow row : rows) {
+                        String cleaned = textProcessor.clean(row.getRawContent());
+                        AnalyzedText analyzed = textProcessor.analyze(cleaned);
+                        persistStage.put(new ParsedPage(row.getUrl(), row.getTitle(), cleaned,
+                            textProcessor.tokenize(analyzed), analyzed, SimHash.of(analyzed), row, true));
+                        afterId = row.getId();
+                    }
+                    queued += rows.size();
+                } while (rows.size() == REANALYZE_PAGE_SIZE);
+            } catch (Exception e) {
+                log.warn("Could not re-analyze stored documents: {}", e.getMessage());
+            }
+            if (queued > 0) {
+                log.info("Re-analyzed {} documents with {}", queued, analyzerId);
+            }
+        });
+    }
+
+    private void persistPage(ParsedPage page) throws InterruptedException {
+        String contentHash = textProcessor.contentHash(page.cleaned());
+
+        // 0. On re-crawl, keep an unchanged copy; a changed one is replaced by a new document,
+        // and so is a duplicate whose canonical document has gone or one analyzed again
+        DocumentRepository.CrawlStateRow stored = page.stored();
+        if (stored != null) {
+            boolean orphaned = stored.getDuplicateOf() != null
+                && !corpusStats.contains(Math.toIntExact(stored.getDuplicateOf()));
+            if (contentHash.equals(stored.getContentHash()) && !orphaned && !page.reanalyze()) {
+                docRepo.updateCrawledAt(stored.getId(), LocalDateTime.now());
+                return;
+            }
+        }
+        long replaced = stored != null ? stored.getId() : -1;
+
+        // 1. Save document to database; a near duplicate is only linked to its canonical document
         Document doc = new Document();
-        doc.setUrl(url);
-        doc.setTitle(title);
-        doc.setRawContent(cleaned);
-        doc.setTokens(tokens);
-        doc.setCrawledAt(LocalDateTime.now());
-        docRepo.save(doc);
+        doc.setUrl(page.url());
+        doc.setTitle(page.title());
+        doc.setContentHash(contentHash);
+        doc.setSimhash(page.fingerprint());
+        doc.setAnalyzer(textProcessor.analyzerId());
+        // Re-analysis does not fetch the page, so the copy is as old as before
+        doc.setCrawledAt(page.reanalyze() ? stored.getCrawledAt() : LocalDateTime.now());
+        // The copy being replaced is still live, but is no original of its successor
+        long canonicalId = nearDuplicates.findOrAdd(page.fingerprint(), replaced,
+            () -> saveCanonical(page, doc, replaced));
+        if (canonicalId >= 0) {
+            doc.setDuplicateOf(canonicalId);
+            save(doc, replaced);
+            rememberUrl(doc.getUrl());
+            log.info("Near duplicate of document {}, not indexed: {}", canonicalId, doc.getUrl());
+            return;
+        }
+        rememberUrl(doc.getUrl());
 
         // 2. Upload raw content to S3 (if enabled)
         if (s3Enabled && s3Client != null) {
@@ -71,22 +333,59 @@ public class CrawlerService {
                         .bucket(bucket)
                         .key("pages/" + doc.getId())
                         .build(),
-                    RequestBody.fromString(cleaned)
+                    RequestBody.fromString(page.cleaned())
                 );
             } catch (Exception e) {
-                System.err.println("Failed to upload to S3: " + e.getMessage());
+                log.warn("Failed to upload page {} to S3: {}", doc.getId(), e.getMessage());
             }
         }
 
-        // 3. Build inverted index
-        indexerService.index(doc);
+        indexStage.put(new StoredPage(doc, page.analyzed()));
+    }
+
+    /**
+     * Store a page as a canonical document and make it live, returning its id
+     */
+    private long saveCanonical(ParsedPage page, Document doc, long replaced) {
+        doc.setRawContent(page.cleaned());
+        doc.setTokens(page.tokens());
+        doc.setDocLength(page.analyzed().getLength());
+        doc.setSummary(textProcessor.summarize(page.cleaned()));
+        doc.setWordOffsets(WordOffsets.build(page.cleaned()));
+        // Set by the bulk writer once the document's index rows are committed
+        doc.setIndexed(false);
+        save(doc, replaced);
+        corpusStats.add(Math.toIntExact(doc.getId()), doc.getDocLength());
+        return doc.getId();
+    }
 
-        // 4. Load tokens into Trie for autocomplete
-        if (tokens != null && !tokens.isEmpty()) {
-            Arrays.stream(tokens.split("\\s+"))
-                  .forEach(autocompleteService::insert);
+    /**
+     * Store a new document, in the same transaction as removing the copy it replaces, if any
+     */
+    private void save(Document doc, long replaced) {
+        if (replaced >= 0) {
+            indexerService.replace(replaced, doc);
+        } else {
+            docRepo.save(doc);
+        }
+    }
+
+    private void rememberUrl(String url) {
+        BloomFilter filter = storedUrls;
+        if (filter != null) {
+            filter.put(url);
         }
+    }
+
+    private void indexPage(StoredPage page) {
+        Document doc = page.doc();
+
+        // 3. Build inverted index
+        indexerService.index(doc, page.analyzed());
+
+        // 4. Load words into Trie for autocomplete
+        autocompleteService.insertPage(doc.getRawContent());
         
-        System.out.println("Processed page: " + url + " (ID: " + doc.getId() + ")");
+        log.debug("Processed page: {} (ID: {})", doc.getUrl(), doc.getId());
     }
 }
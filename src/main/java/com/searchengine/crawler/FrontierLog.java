@@ -0,0 +1,160 @@
+package com.searchengine.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only log of frontier URLs on disk, split into fixed-size
+ * memory-mapped segments.
+ *
+ * A record is a 4-byte length followed by the URL's UTF-8 bytes; its position
+ * in the log (segment * SEGMENT_BYTES + offset) is its sequence number. The
+ * length is written after the payload, so a torn write reads as the end of the
+ * log. Records never straddle segments: a zero length before the write
+ * position means "continue in the next segment". Segments below the crawl's
+ * checkpoint are deleted, so disk use follows the unfetched part of the
+ * frontier and the heap holds none of it.
+ */
+final class FrontierLog implements Closeable {
+
+    static final int SEGMENT_BYTES = 16 << 20;
+    static final int MAX_URL_BYTES = 4096;
+
+    private final Path dir;
+    private final TreeMap<Integer, MappedByteBuffer> segments = new TreeMap<>();
+    private long writePos;
+    private long readPos;
+
+    record Entry(long position, String url) {}
+
+    /**
+     * Open the log in dir, reading from readFrom (the last checkpoint)
+     */
+    FrontierLog(Path dir, long readFrom) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        this.readPos = readFrom;
+        this.writePos = recoverEnd(readFrom);
+    }
+
+    /**
+     * Append a URL; returns false if it is too long to be worth crawling
+     */
+    synchronized boolean append(String url) throws IOException {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0 || bytes.length > MAX_URL_BYTES) {
+            return false;
+        }
+        int offset = offsetOf(writePos);
+        if (offset + Integer.BYTES + bytes.length > SEGMENT_BYTES) {
+            writePos = (long) (segmentOf(writePos) + 1) * SEGMENT_BYTES;
+            offset = 0;
+        }
+        MappedByteBuffer buf = segment(segmentOf(writePos));
+        buf.put(offset + Integer.BYTES, bytes);
+        buf.putInt(offset, bytes.length);
+        writePos += Integer.BYTES + bytes.length;
+        return true;
+    }
+
+    /**
+     * Next unread record, or null if the reader has caught up with the writer
+     */
+    synchronized Entry next() throws IOException {
+        while (readPos < writePos) {
+            MappedByteBuffer buf = segment(segmentOf(readPos));
+            int offset = offsetOf(readPos);
+            int length = offset + Integer.BYTES <= SEGMENT_BYTES ? buf.getInt(offset) : 0;
+            if (length == 0) {
+                readPos = (long) (segmentOf(readPos) + 1) * SEGMENT_BYTES;
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            buf.get(offset + Integer.BYTES, bytes);
+            Entry entry = new Entry(readPos, new String(bytes, StandardCharsets.UTF_8));
+            readPos += Integer.BYTES + length;
+            return entry;
+        }
+        return null;
+    }
+
+    synchronized long readPosition() {
+        return readPos;
+    }
+
+    synchronized long unreadBytes() {
+        return writePos - readPos;
+    }
+
+    /**
+     * Flush written records to disk and drop segments wholly below the watermark
+     */
+    synchronized void checkpoint(long watermark) throws IOException {
+        segments.values().forEach(MappedByteBuffer::force);
+        int keepFrom = segmentOf(watermark);
+        Iterator<Map.Entry<Integer, MappedByteBuffer>> it = segments.headMap(keepFrom).entrySet().iterator();
+        while (it.hasNext()) {
+            Files.deleteIfExists(segmentPath(it.next().getKey()));
+            it.remove();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        segments.values().forEach(MappedByteBuffer::force);
+        segments.clear();
+    }
+
+    /** Scan forward from a known record boundary to the end of the written log */
+    private long recoverEnd(long from) throws IOException {
+        long pos = from;
+        while (Files.exists(segmentPath(segmentOf(pos)))) {
+            MappedByteBuffer buf = segment(segmentOf(pos));
+            int offset = offsetOf(pos);
+            int length = offset + Integer.BYTES <= SEGMENT_BYTES ? buf.getInt(offset) : 0;
+            if (length > 0) {
+                pos += Integer.BYTES + length;
+                continue;
+            }
+            long nextSegment = (long) (segmentOf(pos) + 1) * SEGMENT_BYTES;
+            if (!Files.exists(segmentPath(segmentOf(nextSegment)))) {
+                break;
+            }
+            pos = nextSegment;
+        }
+        return pos;
+    }
+
+    private MappedByteBuffer segment(int index) throws IOException {
+        MappedByteBuffer buf = segments.get(index);
+        if (buf == null) {
+            try (FileChannel channel = FileChannel.open(segmentPath(index),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+            }
+            segments.put(index, buf);
+        }
+        return buf;
+    }
+
+    private Path segmentPath(int index) {
+        return dir.resolve(String.format("segment-%08d.log", index));
+    }
+
+    private static int segmentOf(long pos) {
+        return (int) (pos / SEGMENT_BYTES);
+    }
+
+    private static int offsetOf(long pos) {
+        return (int) (pos % SEGMENT_BYTES);
+    }
+}
@@ -0,0 +1,144 @@
+package com.searchengine.crawler;
+
+import com.searchengine.indexer.CorpusStats;
+import com.searchengine.repository.DocumentRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * SimHash fingerprints of every indexed document in a banded LSH table, so
+ * a new page is matched against the corpus in a few hash lookups.
+ *
+ * The 64 bits are cut into crawler.dedup.max-hamming + 1 bands. Two
+ * fingerprints at most max-hamming bits apart must agree on at least one
+ * whole band, so looking up each band of a page finds every near duplicate;
+ * the candidates are then checked by exact Hamming distance. Documents that
+ * have since been deleted or superseded are skipped through
+ * {@link CorpusStats}, which only holds live ones.
+ */
+@Component
+public class NearDuplicateIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(NearDuplicateIndex.class);
+    private static final int LOAD_PAGE_SIZE = 5000;
+
+    @Value("${crawler.dedup.max-hamming:3}")
+    private int maxHamming;
+
+    @Autowired
+    private DocumentRepository docRepo;
+
+    @Autowired
+    private CorpusStats corpusStats;
+
+    private int[] bandShifts;
+    private long[] bandMasks;
+    // Per band: band value -> doc ids, with the count in element 0
+    private Map<Long, int[]>[] tables;
+    private long[] fingerprints = new long[1024];
+    private int size;
+
+    /**
+     * Load the fingerprints of stored canonical documents on startup
+     */
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void loadFromDatabase() {
+        int bands = Math.max(1, Math.min(Long.SIZE, maxHamming + 1));
+        bandShifts = new int[bands];
+        bandMasks = new long[bands];
+        tables = new Map[bands];
+        for (int b = 0, shift = 0; b < bands; b++) {
+            int width = Long.SIZE / bands + (b < Long.SIZE % bands ? 1 : 0);
+            bandShifts[b] = shift;
+            bandMasks[b] = width == Long.SIZE ? -1L : (1L << width) - 1;
+            tables[b] = new HashMap<>();
+            shift += width;
+        }
+
+        try {
+            long afterId = 0;
+            List<DocumentRepository.FingerprintRow> rows;
+            do {
+                rows = docRepo.findFingerprintsAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+                for (DocumentRepository.FingerprintRow row : rows) {
+                    add(row.getId(), row.getSimhash());
+                    afterId = row.getId();
+                }
+            } while (rows.size() == LOAD_PAGE_SIZE);
+        } catch (Exception e) {
+            log.warn("Could not load document fingerprints: {}", e.getMessage());
+        }
+        log.info("Near-duplicate index loaded: {} fingerprints in {} bands", size, bands);
+    }
+
+    /**
+     * A live document other than excludedId within max-hamming bits of the
+     * fingerprint, or -1 if there is none
+     */
+    public synchronized long find(long fingerprint, long excludedId) {
+        for (int b = 0; b < tables.length; b++) {
+            int[] ids = tables[b].get(fingerprint >>> bandShifts[b] & bandMasks[b]);
+            if (ids == null) {
+                continue;
+            }
+            for (int i = 1; i <= ids[0]; i++) {
+                int docId = ids[i];
+                if (docId != excludedId && SimHash.distance(fingerprints[docId], fingerprint) <= maxHamming
+                    && corpusStats.contains(docId)) {
+                    return docId;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The live document other than excludedId that the fingerprint is a near
+     * duplicate of, or -1 after storing the page as a canonical document and
+     * recording its fingerprint. Lookup and store run under one lock, so two
+     * copies of a page persisted at once cannot both become canonical; store
+     * must leave the new document live in {@link CorpusStats} and return its id.
+     */
+    public synchronized long findOrAdd(long fingerprint, long excludedId, LongSupplier store) {
+        long canonicalId = find(fingerprint, excludedId);
+        if (canonicalId >= 0) {
+            return canonicalId;
+        }
+        add(store.getAsLong(), fingerprint);
+        return -1;
+    }
+
+    /**
+     * Record the fingerprint of a newly indexed document
+     */
+    public synchronized void add(long docId, long fingerprint) {
+        int id = Math.toIntExact(docId);
+        if (id >= fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, Math.max(id + 1, fingerprints.length * 2));
+        }
+        fingerprints[id] = fingerprint;
+        for (int b = 0; b < tables.length; b++) {
+            int[] ids = tables[b].get(fingerprint >>> bandShifts[b] & bandMasks[b]);
+            if (ids == null) {
+                ids = new int[2];
+            } else if (ids[0] + 1 == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[++ids[0]] = id;
+            tables[b].put(fingerprint >>> bandShifts[b] & bandMasks[b], ids);
+        }
+        size++;
+    }
+}
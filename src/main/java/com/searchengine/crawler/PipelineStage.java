@@ -0,0 +1,120 @@
+package com.searchengine.crawler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One stage of the ingest pipeline: a bounded hand-off queue drained by its
+ * own worker threads. {@link #put} blocks while the queue is full, so a slow
+ * stage pushes back on the one before it instead of buffering without limit.
+ */
+final class PipelineStage<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(PipelineStage.class);
+    private static final long POLL_MS = 200;
+
+    @FunctionalInterface
+    interface Handler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final Handler<T> handler;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final Counter processed;
+    private final Counter failed;
+    private final Timer duration;
+
+    PipelineStage(String name, int capacity, int threads, Handler<T> handler, MeterRegistry registry) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.handler = handler;
+        this.processed = Counter.builder("crawler.pipeline.processed").tag("stage", name).register(registry);
+        this.failed = Counter.builder("crawler.pipeline.failed").tag("stage", name).register(registry);
+        this.duration = Timer.builder("crawler.pipeline.stage.duration").tag("stage", name).register(registry);
+        Gauge.builder("crawler.pipeline.queue.depth", queue, BlockingQueue::size)
+            .tag("stage", name)
+            .register(registry);
+
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            Thread worker = Thread.ofPlatform()
+                .name("ingest-" + name + "-" + i)
+                .daemon(true)
+                .unstarted(this::work);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Hand an item to this stage, waiting while its queue is full
+     */
+    void put(T item) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("Pipeline stage " + name + " is shut down");
+        }
+        queue.put(item);
+    }
+
+    int depth() {
+        return queue.size();
+    }
+
+    /**
+     * Stop accepting work and wait up to timeoutMs for queued items to drain
+     */
+    void shutdown(long timeoutMs) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        try {
+            for (Thread worker : workers) {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Pipeline stage {} stopped with {} items still queued", name, queue.size());
+        }
+        workers.forEach(Thread::interrupt);
+    }
+
+    private void work() {
+        while (running || !queue.isEmpty()) {
+            T item;
+            try {
+                item = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (item == null) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                handler.handle(item);
+                processed.increment();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                failed.increment();
+                log.warn("Pipeline stage {} failed: {}", name, e.getMessage());
+            } finally {
+                duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.searchengine.crawler;
+
+import com.searchengine.indexer.AnalyzedText;
+
+import java.util.Map;
+
+/**
+ * 64-bit SimHash of a page's indexed terms, weighted by term frequency. Each
+ * term votes on every bit with its hash, so pages that share most of their
+ * terms end up a few bits apart and near duplicates can be found by Hamming
+ * distance instead of exact equality. Identical text gives identical fingerprints.
+ */
+final class SimHash {
+
+    private SimHash() {
+    }
+
+    static long of(AnalyzedText analyzed) {
+        int[] votes = new int[Long.SIZE];
+        for (Map.Entry<String, int[]> term : analyzed.getPositions().entrySet()) {
+            long h = hash(term.getKey());
+            int weight = term.getValue().length;
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                votes[bit] += (h >>> bit & 1) != 0 ? weight : -weight;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (votes[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /** 64-bit FNV-1a over the chars, finished with a murmur3 mix so every bit is well spread */
+    private static long hash(String term) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < term.length(); i++) {
+            h ^= term.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,74 @@
+package com.searchengine.crawler;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reduces the many spellings of one page's URL to a single form, so that
+ * exact-URL deduplication catches tracking and session variants: scheme and
+ * host are lower-cased, default ports, fragments, path session ids and
+ * tracking or print parameters are dropped, and the remaining query
+ * parameters are sorted. Anything that does not parse is left as it is.
+ */
+final class UrlCanonicalizer {
+
+    private static final Set<String> IGNORED_PARAMS = Set.of(
+        "fbclid", "gclid", "dclid", "msclkid", "mc_cid", "mc_eid", "igshid", "yclid",
+        "ref_src", "sessionid", "jsessionid", "phpsessid", "sid", "print", "printable"
+    );
+
+    private UrlCanonicalizer() {
+    }
+
+    static String canonicalize(String url) {
+        URI uri;
+        try {
+            uri = new URI(url.trim()).normalize();
+        } catch (URISyntaxException e) {
+            return url;
+        }
+        if (uri.getScheme() == null || uri.getRawAuthority() == null) {
+            return url;
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder out = new StringBuilder(url.length()).append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            out.append(uri.getRawUserInfo()).append('@');
+        }
+        String host = uri.getHost();
+        out.append(host != null ? host.toLowerCase(Locale.ROOT) : uri.getRawAuthority().toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (host != null && port != -1
+                && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            out.append(':').append(port);
+        }
+
+        String path = uri.getRawPath();
+        int session = path == null ? -1 : path.toLowerCase(Locale.ROOT).indexOf(";jsessionid=");
+        if (session >= 0) {
+            path = path.substring(0, session);
+        }
+        out.append(path == null || path.isEmpty() ? "/" : path);
+
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            List<String> params = new ArrayList<>();
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                String name = (eq < 0 ? param : param.substring(0, eq)).toLowerCase(Locale.ROOT);
+                if (!param.isEmpty() && !name.startsWith("utm_") && !IGNORED_PARAMS.contains(name)) {
+                    params.add(param);
+                }
+            }
+            if (!params.isEmpty()) {
+                params.sort(null);
+                out.append('?').append(String.join("&", params));
+            }
+        }
+        return out.toString();
+    }
+}
@@ -1,26 +1,73 @@
 package com.searchengine.crawler;
 
 import com.searchengine.wikipedia.WikipediaService;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class WebCrawler {
 
     private static final Logger log = LoggerFactory.getLogger(WebCrawler.class);
-    private static final int MAX_PAGES = 100;
-    private static final int CRAWL_DELAY = 1000; // milliseconds
-    private static final int TIMEOUT = 5000; // milliseconds
+    private static final long POLL_MS = 200;
+
+    @Value("${crawler.max-pages:100}")
+    private int maxPages;
+
+    @Value("${crawler.delay-ms:1000}")
+    private long crawlDelayMs;
+
+    @Value("${crawler.timeout-ms:5000}")
+    private int timeoutMs;
+
+    @Value("${crawler.user-agent:SearchEngineBot/1.0}")
+    private String userAgent;
+
+    @Value("${crawler.max-concurrency:16}")
+    private int maxConcurrency;
+
+    @Value("${crawler.per-host-concurrency:2}")
+    private int perHostConcurrency;
+
+    @Value("${crawler.frontier.dir:data/frontier}")
+    private String frontierDir;
+
+    @Value("${crawler.frontier.expected-urls:1000000}")
+    private long expectedUrls;
+
+    @Value("${crawler.frontier.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    @Value("${crawler.frontier.memory-window:10000}")
+    private int memoryWindow;
+
+    @Value("${crawler.frontier.checkpoint-every:100}")
+    private int checkpointEvery;
+
+    @Value("${crawler.recrawl.enabled:true}")
+    private boolean recrawlEnabled;
+
+    @Value("${crawler.recrawl.batch-size:100}")
+    private int recrawlBatchSize;
 
     @Autowired
     private CrawlerService crawlerService;
@@ -28,92 +75,232 @@ public class WebCrawler {
     @Autowired
     private WikipediaService wikipediaService;
 
+    private final AtomicBoolean recrawling = new AtomicBoolean();
+
+    /**
+     * Resume crawls that were still running when the application last stopped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedCrawls() {
+        try {
+            for (Path dir : CrawlJob.unfinished(Path.of(frontierDir))) {
+                CrawlJob job = CrawlJob.resume(dir);
+                log.info("Resuming crawl {} ({} of {} pages done)", job.id(), job.dispatched(), job.maxPages());
+                CrawlFrontier frontier = job.frontier(crawlDelayMs, perHostConcurrency, memoryWindow);
+                new Thread(() -> execute(job, frontier, Map.of())).start();
+            }
+        } catch (IOException e) {
+            log.warn("Could not resume unfinished crawls: {}", e.getMessage());
+        }
+    }
+
     /**
      * Start crawling from a seed URL within a specific domain
      */
     public void startCrawl(String seedUrl, String domain) {
-        Set<String> visited = new HashSet<>();
-        Queue<String> queue = new LinkedList<>();
-        queue.add(seedUrl);
-
         log.info("Starting crawl from: {} (domain: {})", seedUrl, domain);
+        try {
+            CrawlJob job = newJob(CrawlJob.Type.WEB, seedUrl, domain, maxPages);
+            CrawlFrontier frontier = job.frontier(crawlDelayMs, perHostConcurrency, memoryWindow);
+            frontier.offer(seedUrl);
+            execute(job, frontier, Map.of());
+        } catch (IOException e) {
+            log.warn("Could not start crawl from {}: {}", seedUrl, e.getMessage());
+        }
+    }
 
-        while (!queue.isEmpty() && visited.size() < MAX_PAGES) {
-            String url = queue.poll();
+    /**
+     * Crawl Wikipedia articles for a given topic.
+     * Uses Wikipedia Search API to find relevant articles, then crawls
+     * and indexes each one through the same pipeline as web crawling.
+     */
+    public void crawlWikipedia(String query, int limit) {
+        log.info("Starting Wikipedia crawl for '{}' (limit: {})", query, limit);
 
-            // Skip if already visited or not in the target domain
-            if (visited.contains(url)) {
-                continue;
-            }
-            if (domain != null && !domain.isEmpty() && !url.contains(domain)) {
-                continue;
+        List<Map<String, Object>> articles = wikipediaService.search(query, limit);
+        try {
+            CrawlJob job = newJob(CrawlJob.Type.WIKIPEDIA, query, null, articles.size());
+            CrawlFrontier frontier = job.frontier(crawlDelayMs, perHostConcurrency, memoryWindow);
+            Map<String, Object> titles = new HashMap<>();
+            for (Map<String, Object> article : articles) {
+                String url = (String) article.get("url");
+                if (url != null && frontier.offer(url)) {
+                    titles.put(url, article.get("title"));
+                }
             }
+            execute(job, frontier, titles);
+        } catch (IOException e) {
+            log.warn("Could not start Wikipedia crawl for '{}': {}", query, e.getMessage());
+        }
+    }
 
-            visited.add(url);
-
+    /**
+     * Fetch again the stored pages older than crawler.recrawl.max-age-hours,
+     * a batch at a time on a thread of its own so the scheduler is never held
+     * up. Unchanged pages only get a new crawl time; changed ones are re-indexed
+     * and pages that are gone are deleted.
+     */
+    @Scheduled(fixedDelayString = "${crawler.recrawl.interval-ms:3600000}")
+    public void recrawlStale() {
+        if (!recrawlEnabled || !recrawling.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofPlatform().name("recrawl").start(() -> {
             try {
-                org.jsoup.nodes.Document jsoupDoc = Jsoup.connect(url)
-                    .userAgent("SearchEngineBot/1.0 (+https://example.com/bot)")
-                    .timeout(TIMEOUT)
-                    .followRedirects(true)
-                    .get();
-
-                // Process the page
-                crawlerService.processPage(url, jsoupDoc);
-
-                // Extract and queue new links
-                jsoupDoc.select("a[href]").stream()
-                    .map(a -> a.absUrl("href"))
-                    .filter(link -> !link.isEmpty())
-                    .filter(link -> !visited.contains(link))
-                    .filter(link -> link.startsWith("https://") || link.startsWith("http://"))
-                    .filter(link -> !link.contains("#")) // Skip anchors
-                    .filter(link -> domain == null || domain.isEmpty() || link.contains(domain))
-                    .forEach(queue::add);
-
-                // Polite delay between requests
-                Thread.sleep(CRAWL_DELAY);
-
+                List<String> urls = crawlerService.findStaleUrls(recrawlBatchSize);
+                if (urls.isEmpty()) {
+                    return;
+                }
+                log.info("Re-crawling {} stale pages", urls.size());
+                CrawlJob job = newJob(CrawlJob.Type.RECRAWL, "stale pages", null, urls.size());
+                CrawlFrontier frontier = job.frontier(crawlDelayMs, perHostConcurrency, memoryWindow);
+                urls.forEach(frontier::offer);
+                execute(job, frontier, Map.of());
             } catch (Exception e) {
-                log.warn("Crawl failed for: {} - {}", url, e.getMessage());
+                log.warn("Could not re-crawl stale pages: {}", e.getMessage());
+            } finally {
+                recrawling.set(false);
             }
-        }
+        });
+    }
 
-        log.info("Crawl completed. Total pages visited: {}", visited.size());
+    private CrawlJob newJob(CrawlJob.Type type, String label, String domain, int pages) throws IOException {
+        return CrawlJob.create(Path.of(frontierDir), type, label, domain, pages, expectedUrls, falsePositiveRate);
     }
 
     /**
-     * Crawl Wikipedia articles for a given topic.
-     * Uses Wikipedia Search API to find relevant articles, then crawls
-     * and indexes each one through the same pipeline as web crawling.
+     * Run a new or resumed job to completion, then delete its on-disk state
      */
-    public void crawlWikipedia(String query, int limit) {
-        log.info("Starting Wikipedia crawl for '{}' (limit: {})", query, limit);
+    private void execute(CrawlJob job, CrawlFrontier frontier, Map<String, Object> titles) {
+        String domain = job.domain();
 
-        List<Map<String, Object>> articles = wikipediaService.search(query, limit);
-        int indexed = 0;
+        if (job.type() == CrawlJob.Type.WIKIPEDIA) {
+            AtomicInteger indexed = new AtomicInteger();
+            run(job, frontier, url -> {
+                crawlerService.processPage(url, fetch(url));
+                log.info("Queued Wikipedia article for indexing: {} ({})", titles.getOrDefault(url, url), indexed.incrementAndGet());
+            }, (url, e) -> log.warn("Failed to crawl Wikipedia article: {} - {}", url, e.getMessage()));
 
-        for (Map<String, Object> article : articles) {
-            String url = (String) article.get("url");
-            if (url == null) continue;
+            log.info("Wikipedia crawl completed. Fetched {} of {} articles for '{}'", indexed.get(), job.maxPages(), job.label());
+            return;
+        }
 
-            try {
-                org.jsoup.nodes.Document jsoupDoc = Jsoup.connect(url)
-                    .userAgent("SearchEngineBot/1.0 (+https://example.com/bot)")
-                    .timeout(TIMEOUT)
-                    .followRedirects(true)
-                    .get();
+        if (job.type() == CrawlJob.Type.RECRAWL) {
+            // Links are not followed: a re-crawl only revisits what is stored
+            int fetched = run(job, frontier, url -> crawlerService.processPage(url, fetch(url)), (url, e) -> {
+                if (e instanceof HttpStatusException status && (status.getStatusCode() == 404 || status.getStatusCode() == 410)) {
+                    crawlerService.removePage(url);
+                } else {
+                    log.warn("Re-crawl failed for: {} - {}", url, e.getMessage());
+                }
+            });
+            log.info("Re-crawl completed. Pages visited: {}", fetched);
+            return;
+        }
 
-                crawlerService.processPage(url, jsoupDoc);
-                indexed++;
-                log.info("Indexed Wikipedia article: {} ({}/{})", article.get("title"), indexed, articles.size());
+        int fetched = run(job, frontier, url -> {
+            org.jsoup.nodes.Document jsoupDoc = fetch(url);
 
-                Thread.sleep(CRAWL_DELAY);
-            } catch (Exception e) {
-                log.warn("Failed to crawl Wikipedia article: {} - {}", url, e.getMessage());
+            // Process the page
+            crawlerService.processPage(url, jsoupDoc);
+
+            // Extract and queue new links
+            jsoupDoc.select("a[href]").stream()
+                .map(a -> a.absUrl("href"))
+                .filter(link -> !link.isEmpty())
+                .filter(link -> link.startsWith("https://") || link.startsWith("http://"))
+                .filter(link -> !link.contains("#")) // Skip anchors
+                .map(UrlCanonicalizer::canonicalize)
+                .filter(link -> inDomain(link, domain))
+                .forEach(frontier::offer);
+        }, (url, e) -> log.warn("Crawl failed for: {} - {}", url, e.getMessage()));
+
+        log.info("Crawl completed. Total pages visited: {}", fetched);
+    }
+
+    /**
+     * Drain the frontier on virtual threads until it is empty and idle or the
+     * job's page budget is spent. At most maxConcurrency fetches run at once;
+     * per-host limits and delays are enforced by the frontier. The job is
+     * checkpointed every checkpointEvery pages and deleted once it finishes.
+     * Returns the number of URLs dispatched, including those before a resume.
+     */
+    private int run(CrawlJob job, CrawlFrontier frontier, PageTask task, FailureHandler onFailure) {
+        Semaphore permits = new Semaphore(Math.max(1, maxConcurrency));
+        AtomicInteger inFlight = new AtomicInteger();
+        int dispatched = job.dispatched();
+        boolean finished = false;
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (dispatched < job.maxPages()) {
+                permits.acquire();
+                FrontierLog.Entry entry = frontier.take(POLL_MS);
+                if (entry == null) {
+                    permits.release();
+                    // Workers queue new links before they finish, so an idle
+                    // crawl with nothing queued can never grow again
+                    if (inFlight.get() == 0 && frontier.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                dispatched++;
+                inFlight.incrementAndGet();
+                workers.submit(() -> {
+                    try {
+                        task.process(entry.url());
+                    } catch (Exception e) {
+                        onFailure.failed(entry.url(), e);
+                    } finally {
+                        frontier.done(entry);
+                        inFlight.decrementAndGet();
+                        permits.release();
+                    }
+                });
+                if (dispatched % Math.max(1, checkpointEvery) == 0) {
+                    job.checkpoint(frontier, dispatched);
+                }
             }
+            finished = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Crawl {} interrupted after {} pages", job.id(), dispatched);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Crawl {} stopped, frontier unavailable: {}", job.id(), e.getMessage());
         }
 
-        log.info("Wikipedia crawl completed. Indexed {} of {} articles for '{}'", indexed, articles.size(), query);
+        try {
+            if (finished) {
+                job.complete();
+            } else {
+                job.checkpoint(frontier, dispatched);
+                job.close();
+            }
+        } catch (IOException e) {
+            log.warn("Could not save crawl {} state: {}", job.id(), e.getMessage());
+        }
+        return dispatched;
+    }
+
+    private org.jsoup.nodes.Document fetch(String url) throws IOException {
+        return Jsoup.connect(url)
+            .userAgent(userAgent)
+            .timeout(timeoutMs)
+            .followRedirects(true)
+            .get();
+    }
+
+    private static boolean inDomain(String url, String domain) {
+        return domain == null || domain.isEmpty() || url.contains(domain);
+    }
+
+    @FunctionalInterface
+    private interface PageTask {
+        void process(String url) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface FailureHandler {
+        void failed(String url, Exception e);
     }
 }
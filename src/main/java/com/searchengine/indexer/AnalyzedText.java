@@ -0,0 +1,34 @@
+package com.searchengine.indexer;
+
+import java.util.Map;
+
+/**
+ * Result of analyzing a document's text: every indexed term with the word
+ * positions it occurs at, plus the total number of indexed tokens.
+ * Positions count every word of the cleaned text (including dropped stop
+ * words) so that phrase gaps line up between documents and queries.
+ */
+public class AnalyzedText {
+
+    private final Map<String, int[]> positions;
+    private final int length;
+
+    public AnalyzedText(Map<String, int[]> positions, int length) {
+        this.positions = positions;
+        this.length = length;
+    }
+
+    /**
+     * Term → ascending word positions; the array length is the term frequency
+     */
+    public Map<String, int[]> getPositions() {
+        return positions;
+    }
+
+    /**
+     * Number of indexed tokens including repeats (BM25 document length)
+     */
+    public int getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,40 @@
+package com.searchengine.indexer;
+
+/**
+ * Turns text into index terms. One instance analyzes documents at ingest and
+ * queries at search time, so both sides always agree on the terms.
+ *
+ * Analysis has two steps: clean produces the single-spaced text that is
+ * stored and that word positions and offsets refer to, and forEachToken
+ * streams the terms of cleaned text without building intermediate strings.
+ */
+public interface Analyzer {
+
+    /**
+     * Receives the terms of a text in order
+     */
+    @FunctionalInterface
+    interface TokenSink {
+        /**
+         * A term occurring at text[start, end), after position other words.
+         * term is a reused buffer, valid only during the call.
+         */
+        void token(CharSequence term, int start, int end, int position);
+    }
+
+    /**
+     * Normalize raw text into single-spaced words
+     */
+    String clean(String raw);
+
+    /**
+     * Hand every indexable term of cleaned text to the sink. Words that yield
+     * no term still count in the positions of the words after them.
+     */
+    void forEachToken(String cleaned, TokenSink sink);
+
+    /**
+     * Identifies the analysis settings; documents analyzed under another id are analyzed again
+     */
+    String id();
+}
@@ -0,0 +1,98 @@
+package com.searchengine.indexer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Fixed-width bit packing of non-negative ints into long words.
+ * Used by {@link PostingsList} to store frame-of-reference encoded blocks,
+ * and by {@link Segment} to read the same blocks from a mapped file.
+ */
+final class BitPacking {
+
+    private BitPacking() {
+    }
+
+    /**
+     * Number of bits needed to store the largest of the given values
+     */
+    static int bitsRequired(int[] values, int count) {
+        int or = 0;
+        for (int i = 0; i < count; i++) {
+            or |= values[i];
+        }
+        return 32 - Integer.numberOfLeadingZeros(or);
+    }
+
+    /**
+     * Number of longs needed to hold {@code count} values of {@code bits} width
+     */
+    static int longsRequired(int count, int bits) {
+        return (int) (((long) count * bits + 63) >>> 6);
+    }
+
+    /**
+     * Pack {@code count} values into {@code dst} starting at word {@code offset}
+     */
+    static void pack(int[] src, int count, int bits, long[] dst, int offset) {
+        if (bits == 0) {
+            return;
+        }
+        long bitPos = 0;
+        for (int i = 0; i < count; i++) {
+            long v = src[i] & 0xFFFFFFFFL;
+            int word = offset + (int) (bitPos >>> 6);
+            int shift = (int) (bitPos & 63);
+            dst[word] |= v << shift;
+            if (shift + bits > 64) {
+                dst[word + 1] |= v >>> (64 - shift);
+            }
+            bitPos += bits;
+        }
+    }
+
+    /**
+     * Unpack {@code count} values from {@code src} starting at word {@code offset}
+     */
+    static void unpack(long[] src, int offset, int bits, int count, int[] dst) {
+        if (bits == 0) {
+            Arrays.fill(dst, 0, count, 0);
+            return;
+        }
+        long mask = (1L << bits) - 1;
+        long bitPos = 0;
+        for (int i = 0; i < count; i++) {
+            int word = offset + (int) (bitPos >>> 6);
+            int shift = (int) (bitPos & 63);
+            long v = src[word] >>> shift;
+            if (shift + bits > 64) {
+                v |= src[word + 1] << (64 - shift);
+            }
+            dst[i] = (int) (v & mask);
+            bitPos += bits;
+        }
+    }
+
+    /**
+     * Unpack {@code count} values from the longs starting at byte {@code offset}
+     * of {@code src}, reading the buffer in place
+     */
+    static void unpack(ByteBuffer src, int offset, int bits, int count, int[] dst) {
+        if (bits == 0) {
+            Arrays.fill(dst, 0, count, 0);
+            return;
+        }
+        long mask = (1L << bits) - 1;
+        long bitPos = 0;
+        for (int i = 0; i < count; i++) {
+            int word = offset + (int) (bitPos >>> 6) * Long.BYTES;
+            int shift = (int) (bitPos & 63);
+            long v = src.getLong(word) >>> shift;
+            if (shift + bits > 64) {
+                v |= src.getLong(word + Long.BYTES) << (64 - shift);
+            }
+            dst[i] = (int) (v & mask);
+            bitPos += bits;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.searchengine.indexer;
+
+import com.searchengine.model.InvertedIndex;
+import com.searchengine.repository.DocumentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Buffers inverted index rows across many documents and writes them in one
+ * transaction per flush, using JDBC batching. With sequence ids (allocated 50
+ * at a time) Hibernate can group the inserts, and the PostgreSQL driver's
+ * reWriteBatchedInserts turns each batch into a multi-row INSERT.
+ *
+ * A flush happens when the buffer reaches indexer.bulk.flush-size rows and
+ * every indexer.bulk.flush-interval-ms. The same transaction marks the
+ * documents whose rows it writes as indexed; rows still buffered at a crash
+ * are lost, and their documents, still unmarked, are indexed again on startup
+ * by {@link IndexerService#reindexUnflushed}.
+ * Each flush is an index commit and bumps the {@link IndexGeneration}.
+ *
+ * A failed flush puts its rows back in front of the buffer, and flushes wait
+ * out a backoff that doubles per consecutive failure up to
+ * indexer.bulk.max-backoff-ms. Rows of documents deleted in the meantime are
+ * dropped rather than retried: a deletion racing a flush is the usual cause
+ * of a failure (the foreign key to documents), and would otherwise fail the
+ * batch for every other document in it.
+ */
+@Component
+public class BulkIndexWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkIndexWriter.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${indexer.bulk.flush-size:2000}")
+    private int flushSize;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int jdbcBatchSize;
+
+    @Value("${indexer.bulk.flush-interval-ms:2000}")
+    private long retryDelayMs;
+
+    @Value("${indexer.bulk.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    private final TransactionTemplate transactionTemplate;
+    private final IndexGeneration indexGeneration;
+    private final PostingsIndex postingsIndex;
+    private final DocumentRepository docRepo;
+    private final Counter rowsWritten;
+    private final Counter flushes;
+    private final Timer flushTimer;
+    private final Counter flushFailures;
+    private final Counter rowsDropped;
+
+    private List<InvertedIndex> buffer = new ArrayList<>();
+    // Consecutive failed flushes, and when the next attempt may run (System.nanoTime)
+    private int failures;
+    private long retryAt;
+
+    @Autowired
+    public BulkIndexWriter(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                           IndexGeneration indexGeneration, PostingsIndex postingsIndex, DocumentRepository docRepo) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.indexGeneration = indexGeneration;
+        this.postingsIndex = postingsIndex;
+        this.docRepo = docRepo;
+        this.rowsWritten = meterRegistry.counter("indexer.bulk.rows.written");
+        this.flushes = meterRegistry.counter("indexer.bulk.flushes");
+        this.flushTimer = meterRegistry.timer("indexer.bulk.flush.duration");
+        this.flushFailures = meterRegistry.counter("indexer.bulk.flush.failures");
+        this.rowsDropped = meterRegistry.counter("indexer.bulk.rows.dropped");
+        meterRegistry.gauge("indexer.bulk.buffer.size", this, BulkIndexWriter::bufferedRows);
+    }
+
+    /**
+     * Queue rows for writing; flushes on the calling thread once the buffer is
+     * full, unless a failed flush is backing off
+     */
+    public void add(Collection<InvertedIndex> rows) {
+        boolean full;
+        synchronized (this) {
+            for (InvertedIndex row : rows) {
+                if (isLive(row)) {
+                    buffer.add(row);
+                }
+            }
+            full = buffer.size() >= flushSize && !backingOff();
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Drop the buffered rows of a document that is being deleted
+     */
+    public synchronized void discard(long docId) {
+        buffer.removeIf(row -> row.getDocument().getId() == docId);
+    }
+
+    /**
+     * Write everything buffered so far, unless a failed flush is backing off
+     */
+    @Scheduled(fixedDelayString = "${indexer.bulk.flush-interval-ms:2000}")
+    public void flush() {
+        flush(false);
+    }
+
+    private void flush(boolean force) {
+        List<InvertedIndex> rows;
+        synchronized (this) {
+            if (buffer.isEmpty() || (!force && backingOff())) {
+                return;
+            }
+            rows = buffer;
+            buffer = new ArrayList<>();
+        }
+        // Documents deleted while their rows waited, or while a failed batch backed off
+        int before = rows.size();
+        rows.removeIf(row -> !isLive(row));
+        rowsDropped.increment(before - rows.size());
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < rows.size(); i++) {
+                    entityManager.persist(rows.get(i));
+                    if ((i + 1) % jdbcBatchSize == 0) {
+                        entityManager.flush();
+                        entityManager.clear();
+                    }
+                }
+                // A document's rows are added together, so this flush holds all of them
+                Set<Long> docIds = rows.stream().map(row -> row.getDocument().getId()).collect(Collectors.toSet());
+                docRepo.markIndexed(docIds);
+            }));
+            rowsWritten.increment(rows.size());
+            flushes.increment();
+            synchronized (this) {
+                failures = 0;
+            }
+            log.debug("Flushed {} inverted index rows", rows.size());
+        } catch (Exception e) {
+            flushFailures.increment();
+            requeue(rows, e);
+        } finally {
+            // The in-memory postings already hold these documents either way
+            indexGeneration.bump();
+        }
+    }
+
+    /**
+     * Put the rows of a failed flush back in front of the buffer, minus those
+     * of deleted documents, and back off before the next attempt
+     */
+    private void requeue(List<InvertedIndex> rows, Exception cause) {
+        List<InvertedIndex> retry = new ArrayList<>(rows.size());
+        for (InvertedIndex row : rows) {
+            if (isLive(row)) {
+                // The rolled back insert may have assigned an id
+                row.setId(null);
+                retry.add(row);
+            }
+        }
+        int dropped = rows.size() - retry.size();
+        rowsDropped.increment(dropped);
+        long backoffMs;
+        synchronized (this) {
+            retry.addAll(buffer);
+            buffer = retry;
+            failures++;
+            backoffMs = Math.min(maxBackoffMs, retryDelayMs << Math.min(failures - 1, 20));
+            retryAt = System.nanoTime() + backoffMs * 1_000_000;
+        }
+        log.warn("Failed to flush {} inverted index rows, retrying {} in {} ms ({} of deleted documents dropped): {}",
+            rows.size(), rows.size() - dropped, backoffMs, dropped, cause.getMessage());
+    }
+
+    private boolean backingOff() {
+        return failures > 0 && System.nanoTime() - retryAt < 0;
+    }
+
+    private boolean isLive(InvertedIndex row) {
+        return postingsIndex.isLive(Math.toIntExact(row.getDocument().getId()));
+    }
+
+    /**
+     * Number of rows waiting to be written
+     */
+    public synchronized int bufferedRows() {
+        return buffer.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        flush(true);
+    }
+}
@@ -0,0 +1,148 @@
+package com.searchengine.indexer;
+
+import com.searchengine.repository.DocumentRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Document-length and corpus-level statistics for BM25.
+ * Per-document lengths live in a primitive array indexed by doc id; the
+ * document count and total length are running aggregates, so BM25 reads
+ * N, avgDocLen and dl in O(1) instead of scanning the documents table.
+ */
+@Component
+public class CorpusStats {
+
+    private static final Logger log = LoggerFactory.getLogger(CorpusStats.class);
+    private static final int LOAD_PAGE_SIZE = 5000;
+
+    // Stored as length + 1 so that 0 means "no such document"
+    private volatile int[] docLengths = new int[1024];
+    private final AtomicLong docCount = new AtomicLong();
+    private final AtomicLong totalLength = new AtomicLong();
+
+    @Autowired
+    private DocumentRepository docRepo;
+
+    /**
+     * Load stored document lengths on startup, filling in any documents
+     * that were saved before the doc_length column existed.
+     */
+    @PostConstruct
+    public void loadFromDatabase() {
+        try {
+            backfillMissingLengths();
+
+            long afterId = 0;
+            List<DocumentRepository.DocLengthRow> rows;
+            do {
+                rows = docRepo.findDocLengthsAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+                for (DocumentRepository.DocLengthRow row : rows) {
+                    add(Math.toIntExact(row.getId()), row.getDocLength() != null ? row.getDocLength() : 0);
+                    afterId = row.getId();
+                }
+            } while (rows.size() == LOAD_PAGE_SIZE);
+        } catch (Exception e) {
+            log.warn("Could not load corpus statistics: {}", e.getMessage());
+        }
+        log.info("Corpus statistics loaded: {} documents, avg length {}",
+            docCount.get(), String.format("%.1f", avgDocLength()));
+    }
+
+    private void backfillMissingLengths() {
+        List<DocumentRepository.DocTokensRow> legacy = docRepo.findDocsWithoutLength();
+        for (DocumentRepository.DocTokensRow row : legacy) {
+            String tokens = row.getTokens();
+            int length = (tokens == null || tokens.isEmpty()) ? 0 : tokens.split("\\s+").length;
+            docRepo.updateDocLength(row.getId(), length);
+        }
+        if (!legacy.isEmpty()) {
+            log.info("Backfilled doc_length for {} documents", legacy.size());
+        }
+    }
+
+    /**
+     * Record a newly stored document
+     */
+    public synchronized void add(int docId, int length) {
+        int[] lengths = docLengths;
+        if (docId >= lengths.length) {
+            lengths = Arrays.copyOf(lengths, Math.max(docId + 1, lengths.length * 2));
+        }
+        int previous = lengths[docId];
+        lengths[docId] = length + 1;
+        docLengths = lengths;
+
+        if (previous == 0) {
+            docCount.incrementAndGet();
+            totalLength.addAndGet(length);
+        } else {
+            totalLength.addAndGet(length - (previous - 1));
+        }
+    }
+
+    /**
+     * Forget a deleted or superseded document, taking it out of N and the total length
+     */
+    public synchronized void remove(int docId) {
+        int[] lengths = docLengths;
+        if (docId >= lengths.length || lengths[docId] == 0) {
+            return;
+        }
+        docCount.decrementAndGet();
+        totalLength.addAndGet(-(lengths[docId] - 1));
+        lengths[docId] = 0;
+    }
+
+    /**
+     * True if the document is in the corpus
+     */
+    public boolean contains(int docId) {
+        int[] lengths = docLengths;
+        return docId < lengths.length && lengths[docId] != 0;
+    }
+
+    /**
+     * Length of a document in tokens, 0 if unknown
+     */
+    public int docLength(int docId) {
+        int[] lengths = docLengths;
+        return docId < lengths.length ? Math.max(0, lengths[docId] - 1) : 0;
+    }
+
+    /**
+     * Visit the id of every document with at least one token, in ascending order
+     */
+    public void forEachDocument(IntConsumer action) {
+        int[] lengths = docLengths;
+        for (int docId = 0; docId < lengths.length; docId++) {
+            if (lengths[docId] > 1) {
+                action.accept(docId);
+            }
+        }
+    }
+
+    /**
+     * Number of documents in the corpus (N)
+     */
+    public long docCount() {
+        return docCount.get();
+    }
+
+    /**
+     * Average document length, never below 1
+     */
+    public double avgDocLength() {
+        long n = docCount.get();
+        return n == 0 ? 1.0 : Math.max(1.0, (double) totalLength.get() / n);
+    }
+}
@@ -0,0 +1,28 @@
+package com.searchengine.indexer;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version number of the searchable index, bumped on every index commit.
+ * Caches put it into their keys, so one increment retires every entry built
+ * against older postings without scanning or deleting anything. Starts from
+ * the boot time so entries left in a shared cache by a previous run never match.
+ */
+@Component
+public class IndexGeneration {
+
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+
+    public long current() {
+        return generation.get();
+    }
+
+    /**
+     * Mark the index as changed
+     */
+    public long bump() {
+        return generation.incrementAndGet();
+    }
+}
@@ -2,42 +2,174 @@ package com.searchengine.indexer;
 
 import com.searchengine.model.Document;
 import com.searchengine.model.InvertedIndex;
+import com.searchengine.repository.DocumentRepository;
 import com.searchengine.repository.InvertedIndexRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.List;
 
 @Service
 public class IndexerService {
-    
+
+    private static final Logger log = LoggerFactory.getLogger(IndexerService.class);
+    private static final int REINDEX_PAGE_SIZE = 500;
+
+    @Autowired
+    private BulkIndexWriter bulkWriter;
+
+    @Autowired
+    private PostingsIndex postingsIndex;
+
+    @Autowired
+    private TextProcessor textProcessor;
+
+    @Autowired
+    private CorpusStats corpusStats;
+
+    @Autowired
+    private IndexGeneration indexGeneration;
+
+    @Autowired
+    private DocumentRepository docRepo;
+
     @Autowired
     private InvertedIndexRepository indexRepo;
 
     /**
-     * Build the inverted index for a document
-     * Each token is mapped to the document with its frequency
+     * Build the inverted index for a document from its stored (cleaned) content
      */
     public void index(Document doc) {
-        if (doc.getTokens() == null || doc.getTokens().isEmpty()) {
+        index(doc, textProcessor.analyze(doc.getRawContent()));
+    }
+
+    /**
+     * Build the inverted index for a document
+     * Each token is mapped to the document with its frequency and word positions
+     */
+    public void index(Document doc, AnalyzedText analyzed) {
+        index(doc, analyzed, true);
+    }
+
+    private void index(Document doc, AnalyzedText analyzed, boolean addPostings) {
+        if (analyzed.getPositions().isEmpty()) {
+            // No rows will ever be flushed for it
+            docRepo.markIndexed(List.of(doc.getId()));
             return;
         }
         
-        String[] tokens = doc.getTokens().split("\\s+");
+        int docId = Math.toIntExact(doc.getId());
+        List<InvertedIndex> entries = new ArrayList<>(analyzed.getPositions().size());
 
-        // Count frequency of each token
-        Map<String, Long> freqMap = Arrays.stream(tokens)
-            .collect(Collectors.groupingBy(t -> t, Collectors.counting()));
+        // Build each token → doc mapping
+        analyzed.getPositions().forEach((token, positions) -> {
+            byte[] encoded = PostingsIndex.encodePositions(positions);
 
-        // Persist each token → doc mapping
-        freqMap.forEach((token, freq) -> {
             InvertedIndex entry = new InvertedIndex();
             entry.setToken(token);
             entry.setDocument(doc);
-            entry.setFreq(freq.intValue());
-            indexRepo.save(entry);
+            entry.setFreq(positions.length);
+            entry.setPositions(encoded);
+            entries.add(entry);
+
+            // Make the document searchable in the in-memory postings
+            if (addPostings) {
+                postingsIndex.add(token, docId, positions.length, encoded);
+            }
         });
+
+        // Persisted in batches together with other documents' rows
+        bulkWriter.add(entries);
+    }
+
+    /**
+     * Index again the documents whose inverted index rows were still buffered
+     * at a crash: they are stored and counted but were never marked indexed,
+     * so a re-crawl would keep them as unchanged. A committed segment may
+     * already hold their postings, in which case only the rows are written.
+     * Runs before the crawler starts, so no new document is mistaken for one.
+     */
+    @PostConstruct
+    public void reindexUnflushed() {
+        int reindexed = 0;
+        try {
+            long afterId = 0;
+            List<Document> docs;
+            do {
+                docs = docRepo.findUnindexedAfter(afterId, PageRequest.of(0, REINDEX_PAGE_SIZE));
+                for (Document doc : docs) {
+                    boolean held = postingsIndex.holds(Math.toIntExact(doc.getId()));
+                    index(doc, textProcessor.analyze(doc.getRawContent()), !held);
+                    afterId = doc.getId();
+                }
+                reindexed += docs.size();
+            } while (docs.size() == REINDEX_PAGE_SIZE);
+            bulkWriter.flush();
+        } catch (Exception e) {
+            log.warn("Could not re-index documents left unindexed: {}", e.getMessage());
+        }
+        if (reindexed > 0) {
+            log.info("Re-indexed {} documents whose index rows were lost", reindexed);
+        }
+    }
+
+    /**
+     * Delete a document and its postings. Queries stop matching it at once
+     * through the postings index tombstone, and N, avgdl and document
+     * frequencies drop it straight away; its postings leave the segments on
+     * the next merge or compaction.
+     * Returns false if there was no such document.
+     */
+    @Transactional
+    public boolean delete(long docId) {
+        if (!docRepo.existsById(docId)) {
+            return false;
+        }
+        String tokens = remove(docId);
+        forget(docId, tokens);
+        return true;
+    }
+
+    /**
+     * Store a changed copy of a page in place of the stored document, in one
+     * transaction: if saving the new copy fails, the old one stays stored and
+     * indexed. The old document leaves the postings as in {@link #delete}.
+     */
+    @Transactional
+    public void replace(long oldId, Document doc) {
+        String tokens = remove(oldId);
+        // The copies share a URL, so the old row must be gone before the insert
+        docRepo.flush();
+        docRepo.save(doc);
+        forget(oldId, tokens);
+    }
+
+    /**
+     * Delete a document's rows, returning its distinct terms
+     */
+    private String remove(long docId) {
+        String tokens = docRepo.findTokensById(docId);
+        // Rows still queued for this document must not be inserted after it is gone
+        bulkWriter.discard(docId);
+        indexRepo.deleteByDocId(docId);
+        docRepo.deleteById(docId);
+        return tokens;
+    }
+
+    /**
+     * Take a removed document out of the postings and corpus statistics
+     */
+    private void forget(long docId, String tokens) {
+        int id = Math.toIntExact(docId);
+        postingsIndex.delete(id, tokens == null || tokens.isEmpty() ? List.of() : Arrays.asList(tokens.split(" ")));
+        corpusStats.remove(id);
+        indexGeneration.bump();
     }
 }
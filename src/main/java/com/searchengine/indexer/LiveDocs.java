@@ -0,0 +1,111 @@
+package com.searchengine.indexer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tombstones for deleted and superseded documents: one bit per doc id, so a
+ * cursor checks a posting in O(1). Postings of a deleted document stay in
+ * their segment, hidden, until compaction rewrites the segment without them.
+ *
+ * Nothing here is persisted: on startup, documents that a segment holds but
+ * the database no longer does are deleted again.
+ */
+final class LiveDocs {
+
+    private volatile AtomicLongArray words = new AtomicLongArray(1024);
+    private int deletedCount;
+
+    /**
+     * Mark a document deleted; returns false if it already was
+     */
+    synchronized boolean delete(int docId) {
+        AtomicLongArray w = words;
+        int word = docId >>> 6;
+        if (word >= w.length()) {
+            AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, w.length() * 2));
+            for (int i = 0; i < w.length(); i++) {
+                grown.set(i, w.get(i));
+            }
+            words = w = grown;
+        }
+        long bit = 1L << docId;
+        long old = w.get(word);
+        if ((old & bit) != 0) {
+            return false;
+        }
+        w.set(word, old | bit);
+        deletedCount++;
+        return true;
+    }
+
+    boolean isLive(int docId) {
+        AtomicLongArray w = words;
+        int word = docId >>> 6;
+        return word >= w.length() || (w.get(word) & (1L << docId)) == 0;
+    }
+
+    synchronized int deletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * Wrap a cursor so that it never stops on a deleted document. Frequency
+     * bounds are left as they are; they stay valid upper bounds.
+     */
+    PostingsCursor filter(PostingsCursor in) {
+        return new PostingsCursor() {
+            @Override
+            public int docId() {
+                return in.docId();
+            }
+
+            @Override
+            public int nextDoc() {
+                int doc = in.nextDoc();
+                while (doc != NO_MORE_DOCS && !isLive(doc)) {
+                    doc = in.nextDoc();
+                }
+                return doc;
+            }
+
+            @Override
+            public int advance(int target) {
+                int doc = in.advance(target);
+                while (doc != NO_MORE_DOCS && !isLive(doc)) {
+                    doc = in.nextDoc();
+                }
+                return doc;
+            }
+
+            @Override
+            public int freq() {
+                return in.freq();
+            }
+
+            @Override
+            public int cost() {
+                return in.cost();
+            }
+
+            @Override
+            public int nextPosition() {
+                return in.nextPosition();
+            }
+
+            @Override
+            public int maxFreq() {
+                return in.maxFreq();
+            }
+
+            @Override
+            public int advanceShallow(int target) {
+                return in.advanceShallow(target);
+            }
+
+            @Override
+            public int blockMaxFreq() {
+                return in.blockMaxFreq();
+            }
+        };
+    }
+}
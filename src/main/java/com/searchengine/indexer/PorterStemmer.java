@@ -0,0 +1,327 @@
+package com.searchengine.indexer;
+
+/**
+ * The Porter stemming algorithm for English, working in place on a char
+ * buffer so that no String is created per word. Follows Martin Porter's
+ * reference implementation, including its departures from the published
+ * paper (-bli to -ble, -logi to -log). Not thread-safe; the buffer needs
+ * one char of room past the word, as a few rules lengthen it.
+ */
+final class PorterStemmer {
+
+    private char[] b;
+    // End of the word and of the stem before a matched suffix, both inclusive
+    private int k;
+    private int j;
+
+    /**
+     * Stem the lower-case word in word[0, length); returns its new length
+     */
+    int stem(char[] word, int length) {
+        if (length <= 2) {
+            return length;
+        }
+        b = word;
+        k = length - 1;
+        step1();
+        step2();
+        step3();
+        step4();
+        step5();
+        step6();
+        return k + 1;
+    }
+
+    private boolean cons(int i) {
+        switch (b[i]) {
+            case 'a', 'e', 'i', 'o', 'u':
+                return false;
+            case 'y':
+                return i == 0 || !cons(i - 1);
+            default:
+                return true;
+        }
+    }
+
+    /** Number of consonant-vowel sequences in b[0, j] */
+    private int m() {
+        int n = 0;
+        int i = 0;
+        while (true) {
+            if (i > j) {
+                return n;
+            }
+            if (!cons(i)) {
+                break;
+            }
+            i++;
+        }
+        i++;
+        while (true) {
+            while (true) {
+                if (i > j) {
+                    return n;
+                }
+                if (cons(i)) {
+                    break;
+                }
+                i++;
+            }
+            i++;
+            n++;
+            while (true) {
+                if (i > j) {
+                    return n;
+                }
+                if (!cons(i)) {
+                    break;
+                }
+                i++;
+            }
+            i++;
+        }
+    }
+
+    private boolean vowelInStem() {
+        for (int i = 0; i <= j; i++) {
+            if (!cons(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean doubleConsonant(int i) {
+        return i >= 1 && b[i] == b[i - 1] && cons(i);
+    }
+
+    /** Consonant-vowel-consonant ending at i, the last not w, x or y */
+    private boolean cvc(int i) {
+        if (i < 2 || !cons(i) || cons(i - 1) || !cons(i - 2)) {
+            return false;
+        }
+        char c = b[i];
+        return c != 'w' && c != 'x' && c != 'y';
+    }
+
+    private boolean ends(String suffix) {
+        int length = suffix.length();
+        int offset = k - length + 1;
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (b[offset + i] != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        j = k - length;
+        return true;
+    }
+
+    private void setTo(String suffix) {
+        int length = suffix.length();
+        for (int i = 0; i < length; i++) {
+            b[j + 1 + i] = suffix.charAt(i);
+        }
+        k = j + length;
+    }
+
+    private void replace(String suffix) {
+        if (m() > 0) {
+            setTo(suffix);
+        }
+    }
+
+    /** Plurals and -ed or -ing */
+    private void step1() {
+        if (b[k] == 's') {
+            if (ends("sses")) {
+                k -= 2;
+            } else if (ends("ies")) {
+                setTo("i");
+            } else if (b[k - 1] != 's') {
+                k--;
+            }
+        }
+        if (ends("eed")) {
+            if (m() > 0) {
+                k--;
+            }
+        } else if ((ends("ed") || ends("ing")) && vowelInStem()) {
+            k = j;
+            if (ends("at")) {
+                setTo("ate");
+            } else if (ends("bl")) {
+                setTo("ble");
+            } else if (ends("iz")) {
+                setTo("ize");
+            } else if (doubleConsonant(k)) {
+                k--;
+                char c = b[k];
+                if (c == 'l' || c == 's' || c == 'z') {
+                    k++;
+                }
+            } else if (m() == 1 && cvc(k)) {
+                setTo("e");
+            }
+        }
+    }
+
+    /** Terminal y to i when there is another vowel in the stem */
+    private void step2() {
+        if (ends("y") && vowelInStem()) {
+            b[k] = 'i';
+        }
+    }
+
+    /** Double suffixes to single ones */
+    private void step3() {
+        if (k == 0) {
+            return;
+        }
+        switch (b[k - 1]) {
+            case 'a' -> {
+                if (ends("ational")) {
+                    replace("ate");
+                } else if (ends("tional")) {
+                    replace("tion");
+                }
+            }
+            case 'c' -> {
+                if (ends("enci")) {
+                    replace("ence");
+                } else if (ends("anci")) {
+                    replace("ance");
+                }
+            }
+            case 'e' -> {
+                if (ends("izer")) {
+                    replace("ize");
+                }
+            }
+            case 'l' -> {
+                if (ends("bli")) {
+                    replace("ble");
+                } else if (ends("alli")) {
+                    replace("al");
+                } else if (ends("entli")) {
+                    replace("ent");
+                } else if (ends("eli")) {
+                    replace("e");
+                } else if (ends("ousli")) {
+                    replace("ous");
+                }
+            }
+            case 'o' -> {
+                if (ends("ization")) {
+                    replace("ize");
+                } else if (ends("ation")) {
+                    replace("ate");
+                } else if (ends("ator")) {
+                    replace("ate");
+                }
+            }
+            case 's' -> {
+                if (ends("alism")) {
+                    replace("al");
+                } else if (ends("iveness")) {
+                    replace("ive");
+                } else if (ends("fulness")) {
+                    replace("ful");
+                } else if (ends("ousness")) {
+                    replace("ous");
+                }
+            }
+            case 't' -> {
+                if (ends("aliti")) {
+                    replace("al");
+                } else if (ends("iviti")) {
+                    replace("ive");
+                } else if (ends("biliti")) {
+                    replace("ble");
+                }
+            }
+            case 'g' -> {
+                if (ends("logi")) {
+                    replace("log");
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /** -ic-, -full, -ness and the like */
+    private void step4() {
+        switch (b[k]) {
+            case 'e' -> {
+                if (ends("icate")) {
+                    replace("ic");
+                } else if (ends("ative")) {
+                    replace("");
+                } else if (ends("alize")) {
+                    replace("al");
+                }
+            }
+            case 'i' -> {
+                if (ends("iciti")) {
+                    replace("ic");
+                }
+            }
+            case 'l' -> {
+                if (ends("ical")) {
+                    replace("ic");
+                } else if (ends("ful")) {
+                    replace("");
+                }
+            }
+            case 's' -> {
+                if (ends("ness")) {
+                    replace("");
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /** -ant, -ence and the like, when the stem has more than one sequence */
+    private void step5() {
+        if (k == 0) {
+            return;
+        }
+        boolean matched = switch (b[k - 1]) {
+            case 'a' -> ends("al");
+            case 'c' -> ends("ance") || ends("ence");
+            case 'e' -> ends("er");
+            case 'i' -> ends("ic");
+            case 'l' -> ends("able") || ends("ible");
+            case 'n' -> ends("ant") || ends("ement") || ends("ment") || ends("ent");
+            case 'o' -> (ends("ion") && j >= 0 && (b[j] == 's' || b[j] == 't')) || ends("ou");
+            case 's' -> ends("ism");
+            case 't' -> ends("ate") || ends("iti");
+            case 'u' -> ends("ous");
+            case 'v' -> ends("ive");
+            case 'z' -> ends("ize");
+            default -> false;
+        };
+        if (matched && m() > 1) {
+            k = j;
+        }
+    }
+
+    /** A final -e, and -ll to -l, when the stem has more than one sequence */
+    private void step6() {
+        j = k;
+        if (b[k] == 'e') {
+            int m = m();
+            if (m > 1 || m == 1 && !cvc(k - 1)) {
+                k--;
+            }
+        }
+        if (b[k] == 'l' && doubleConsonant(k) && m() > 1) {
+            k--;
+        }
+    }
+}
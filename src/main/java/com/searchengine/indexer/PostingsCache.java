@@ -0,0 +1,102 @@
+package com.searchengine.indexer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * Decoded blocks of the largest postings lists, so queries on popular terms
+ * read doc ids and frequencies straight from int arrays instead of unpacking
+ * every block again. Bounded by total bytes; Caffeine evicts by frequency and
+ * recency. Concurrent cursors on one term share a single load.
+ *
+ * Entries are keyed by the in-memory {@link PostingsList} itself, dropped
+ * when a write rewrites its sealed blocks, or by a segment and
+ * term ordinal, which never change and are dropped when the segment is merged away.
+ */
+@Component
+public class PostingsCache {
+
+    // Blocks sealed after a list was decoded are unpacked by cursors; once the
+    // decoded copy covers less than this share of the list it is decoded again
+    private static final double MIN_DECODED_SHARE = 0.75;
+
+    @Value("${indexer.postings-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    // Short lists decode in a few blocks and are not worth the memory
+    @Value("${indexer.postings-cache.min-docs:1024}")
+    private int minDocs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<Object, PostingsList.DecodedBlocks> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Object key, PostingsList.DecodedBlocks blocks) ->
+                (int) Math.min(Integer.MAX_VALUE, blocks.ramBytesUsed()))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "postingsCache");
+    }
+
+    /**
+     * Cursor over an in-memory list, backed by its decoded blocks when the list is large
+     */
+    PostingsCursor cursor(PostingsList list) {
+        if (list.size() < minDocs) {
+            return list.cursor();
+        }
+        PostingsList.DecodedBlocks decoded = cache.get(list, l -> list.decodeSealed());
+        if (decoded.blockCount < list.sealedBlocks() * MIN_DECODED_SHARE) {
+            decoded = list.decodeSealed();
+            cache.put(list, decoded);
+        }
+        return list.cursor(decoded);
+    }
+
+    /**
+     * Cursor over a term of a segment, backed by its decoded blocks when the term is frequent
+     */
+    PostingsCursor cursor(Segment segment, int ord) {
+        if (segment.docFreq(ord) < minDocs) {
+            return segment.cursor(ord);
+        }
+        return segment.cursor(ord, cache.get(new SegmentTerm(segment, ord), k -> segment.decode(ord)));
+    }
+
+    /**
+     * Forget the decoded blocks of a list after its sealed blocks changed
+     */
+    void invalidate(PostingsList list) {
+        cache.invalidate(list);
+    }
+
+    /**
+     * Forget the decoded blocks of lists that are no longer served
+     */
+    void invalidateAll(Collection<PostingsList> lists) {
+        cache.invalidateAll(lists);
+    }
+
+    /**
+     * Forget every entry of a segment that has been merged away
+     */
+    void evict(Segment segment) {
+        cache.asMap().keySet().removeIf(key -> key instanceof SegmentTerm st && st.segment() == segment);
+    }
+
+    private record SegmentTerm(Segment segment, int ord) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.searchengine.indexer;
+
+/**
+ * Forward-only iterator over a doc-id-sorted postings list.
+ * A fresh cursor is positioned before the first document.
+ */
+public interface PostingsCursor {
+
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * Current document id, -1 before the first call and NO_MORE_DOCS when exhausted
+     */
+    int docId();
+
+    /**
+     * Move to the next document
+     */
+    int nextDoc();
+
+    /**
+     * Move to the first document greater than or equal to target
+     */
+    int advance(int target);
+
+    /**
+     * Term frequency in the current document
+     */
+    int freq();
+
+    /**
+     * Number of documents in the list (document frequency)
+     */
+    int cost();
+
+    /**
+     * Next word position of the term in the current document, or -1 when there
+     * are no more (or none were stored). Call at most freq() times per document.
+     */
+    int nextPosition();
+
+    /**
+     * Highest term frequency anywhere in the list, an upper bound for scoring
+     */
+    int maxFreq();
+
+    /**
+     * Move the block pointer (not the cursor) to the block that may contain target
+     * and return the last doc id of that block, or NO_MORE_DOCS if there is none.
+     */
+    int advanceShallow(int target);
+
+    /**
+     * Highest term frequency in the block selected by {@link #advanceShallow(int)}
+     */
+    int blockMaxFreq();
+}
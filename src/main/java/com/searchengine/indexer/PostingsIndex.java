@@ -0,0 +1,686 @@
+package com.searchengine.indexer;
+
+import com.searchengine.repository.InvertedIndexRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjIntConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Inverted index used for query-time scoring, so that scoring never has to
+ * go through Hibernate. The inverted_index table stays the source of truth;
+ * this is the serving copy of it.
+ *
+ * Newly indexed postings go into an in-memory buffer of compressed
+ * {@link PostingsList}s. Once it holds indexer.segments.flush-docs documents
+ * (or every flush-interval-ms) the buffer is frozen, written by a background
+ * thread as an immutable memory-mapped {@link Segment}, and swapped out for it.
+ * A second background thread merges segments by {@link TieredMergePolicy}.
+ * Cursors read a snapshot of the segments and buffers, merged by doc id.
+ *
+ * The live segments are listed in a commit file under indexer.segments.dir.
+ * On startup they are opened as they are, and only documents that no segment
+ * holds (e.g. those still buffered at the last shutdown) are loaded from the
+ * database. Large postings are read through the decoded blocks kept by
+ * {@link PostingsCache}.
+ *
+ * Deleting a document only sets its bit in {@link LiveDocs}, which cursors
+ * check as they go; its postings are dropped when the segment holding them is
+ * next merged, or compacted on its own once compact-deletes-ratio of its
+ * documents are deleted. Until then the postings of deleted documents are
+ * counted per term, and document frequencies leave them out, so IDF is exact
+ * whenever a changed page or a re-analysis replaces a document.
+ */
+@Component
+public class PostingsIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PostingsIndex.class);
+    private static final int LOAD_BATCH_DOCS = 1000;
+    private static final String COMMIT_FILE = "segments.properties";
+
+    @Value("${indexer.segments.dir:data/index}")
+    private String segmentsDir;
+
+    @Value("${indexer.segments.flush-docs:10000}")
+    private int flushDocs;
+
+    @Value("${indexer.segments.per-tier:10}")
+    private int segmentsPerTier;
+
+    @Value("${indexer.segments.max-merged-bytes:1073741824}")
+    private long maxMergedBytes;
+
+    @Value("${indexer.segments.compact-deletes-ratio:0.2}")
+    private double compactDeletesRatio;
+
+    @Autowired
+    private InvertedIndexRepository indexRepo;
+
+    @Autowired
+    private PostingsCache postingsCache;
+
+    @Autowired
+    private CorpusStats corpusStats;
+
+    // Adds hold the read lock so that a buffer is never written to once it is frozen
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile State state = new State(List.of(), List.of(new Buffer()));
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final AtomicLong nextSegment = new AtomicLong();
+    private final LiveDocs liveDocs = new LiveDocs();
+    // Per term, postings of deleted documents that segments or buffers still hold;
+    // changed under the write lock, or by adds for already deleted documents
+    private final Map<String, Integer> deletedDocFreq = new ConcurrentHashMap<>();
+    private Path dir;
+    private TieredMergePolicy mergePolicy;
+    private ExecutorService flusher;
+    private ExecutorService merger;
+
+    /**
+     * Open the committed segments and load what they are missing from the database
+     */
+    @PostConstruct
+    public void open() {
+        long start = System.currentTimeMillis();
+        dir = Path.of(segmentsDir);
+        mergePolicy = new TieredMergePolicy(segmentsPerTier, flushDocs, maxMergedBytes);
+        flusher = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("segment-flush").daemon(true).factory());
+        merger = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("segment-merge").daemon(true).factory());
+
+        try {
+            openSegments();
+            deleteMissingFromDatabase();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not open index segments, reloading postings from the database: {}", e.getMessage());
+            state = new State(List.of(), List.of(new Buffer()));
+            deletedDocFreq.clear();
+        }
+        long loaded = loadMissingFromDatabase();
+        log.info("Postings index opened: {} segments, {} postings loaded from the database in {} ms",
+            state.segments().size(), loaded, System.currentTimeMillis() - start);
+        merger.execute(this::mergeSegments);
+    }
+
+    private void openSegments() throws IOException {
+        Files.createDirectories(dir);
+        Path commitFile = dir.resolve(COMMIT_FILE);
+        Properties commit = new Properties();
+        if (Files.exists(commitFile)) {
+            try (Reader in = Files.newBufferedReader(commitFile)) {
+                commit.load(in);
+            }
+        }
+        nextSegment.set(Long.parseLong(commit.getProperty("counter", "0")));
+        String names = commit.getProperty("segments", "");
+
+        List<Segment> segments = new ArrayList<>();
+        Set<String> live = new HashSet<>();
+        for (String name : names.isEmpty() ? new String[0] : names.split(",")) {
+            segments.add(Segment.open(dir, name));
+            live.add(name);
+        }
+        state = new State(List.copyOf(segments), List.of(new Buffer()));
+
+        // Leftovers of merges or flushes that never made it into a commit
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(f -> f.getFileName().toString())
+                .filter(f -> f.endsWith(Segment.TERMS_EXT) || f.endsWith(Segment.POSTINGS_EXT) || f.endsWith(Segment.LENGTHS_EXT))
+                .map(f -> f.substring(0, f.lastIndexOf('.')))
+                .filter(name -> !live.contains(name))
+                .distinct()
+                .forEach(this::deleteQuietly);
+        }
+    }
+
+    /**
+     * Delete again the segment documents that the database no longer has, since
+     * tombstones are not persisted. Segments with nothing left are dropped
+     * straight away, which also covers a database that was recreated empty and
+     * will hand out the same doc ids again.
+     */
+    private void deleteMissingFromDatabase() throws IOException {
+        List<Segment> empty = new ArrayList<>();
+        for (Segment segment : state.segments()) {
+            int missing = 0;
+            for (int i = 0; i < segment.docCount(); i++) {
+                if (!corpusStats.contains(segment.docAt(i))) {
+                    missing++;
+                }
+            }
+            if (missing == segment.docCount()) {
+                empty.add(segment);
+            } else {
+                for (int i = 0; i < segment.docCount(); i++) {
+                    if (!corpusStats.contains(segment.docAt(i))) {
+                        liveDocs.delete(segment.docAt(i));
+                    }
+                }
+            }
+        }
+        if (!empty.isEmpty()) {
+            publish(s -> {
+                List<Segment> segments = new ArrayList<>(s.segments());
+                segments.removeAll(empty);
+                return new State(List.copyOf(segments), s.buffers());
+            }, Map.of());
+            empty.forEach(segment -> deleteQuietly(segment.name()));
+        }
+        if (liveDocs.deletedCount() > 0) {
+            for (Segment segment : state.segments()) {
+                countDeletedPostings(segment);
+            }
+        }
+        log.info("{} documents deleted from the database since the last shutdown, {} segments dropped",
+            liveDocs.deletedCount(), empty.size());
+    }
+
+    private void countDeletedPostings(Segment segment) {
+        for (int ord = 0; ord < segment.termCount(); ord++) {
+            Segment.Cursor c = segment.cursor(ord);
+            int deleted = 0;
+            for (int d = c.nextDoc(); d != PostingsCursor.NO_MORE_DOCS; d = c.nextDoc()) {
+                if (!liveDocs.isLive(d)) {
+                    deleted++;
+                }
+            }
+            if (deleted > 0) {
+                deletedDocFreq.merge(segment.term(ord), deleted, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Load the postings of documents that no segment holds, a range of
+     * document ids at a time so that each token's list is appended in doc-id order
+     */
+    private long loadMissingFromDatabase() {
+        BitSet covered = new BitSet();
+        for (Segment segment : state.segments()) {
+            for (int i = 0; i < segment.docCount(); i++) {
+                covered.set(segment.docAt(i));
+            }
+        }
+        BitSet missing = new BitSet();
+        corpusStats.forEachDocument(docId -> {
+            if (!covered.get(docId)) {
+                missing.set(docId);
+            }
+        });
+
+        long loaded = 0;
+        try {
+            for (int from = missing.nextSetBit(0); from >= 0; from = missing.nextSetBit(from + LOAD_BATCH_DOCS)) {
+                List<InvertedIndexRepository.PostingRow> rows =
+                    indexRepo.findPostingsInDocRange(from - 1L, from - 1L + LOAD_BATCH_DOCS);
+                for (InvertedIndexRepository.PostingRow row : rows) {
+                    int docId = Math.toIntExact(row.getDocId());
+                    if (missing.get(docId)) {
+                        add(row.getToken(), docId, row.getFreq(), row.getPositions());
+                        loaded++;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Could not load postings: {}", e.getMessage());
+        }
+        return loaded;
+    }
+
+    /**
+     * Add one posting: the token occurs freq times in the document, at the
+     * delta-varint encoded positions (null when unknown)
+     */
+    public void add(String token, int docId, int freq, byte[] positions) {
+        Buffer buffer;
+        lock.readLock().lock();
+        try {
+            buffer = state.active();
+            PostingsList list = buffer.postings.computeIfAbsent(token, t -> new PostingsList());
+            if (list.add(docId, freq, positions)) {
+                postingsCache.invalidate(list);
+            }
+            buffer.docs.add(docId);
+            // Postings that arrive after their document was deleted
+            if (!liveDocs.isLive(docId)) {
+                deletedDocFreq.merge(token, 1, Integer::sum);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (buffer.docs.size() >= flushDocs) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Queue a flush on the flush thread unless one is already waiting; also runs
+     * every flush-interval-ms, so the shared scheduler thread never writes segments
+     */
+    @Scheduled(fixedDelayString = "${indexer.segments.flush-interval-ms:60000}")
+    public void requestFlush() {
+        if (flushQueued.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    /**
+     * Hide a deleted or superseded document from every cursor from now on.
+     * terms are the document's distinct terms; the postings of them that the
+     * index holds stop counting towards document frequencies.
+     */
+    public void delete(int docId, Collection<String> terms) {
+        lock.writeLock().lock();
+        try {
+            if (!liveDocs.delete(docId)) {
+                return;
+            }
+            State s = state;
+            for (String term : terms) {
+                int held = postingsHeld(s, term, docId);
+                if (held > 0) {
+                    deletedDocFreq.merge(term, held, Integer::sum);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of segments and buffers holding a posting of the token for the document
+     */
+    private static int postingsHeld(State s, String token, int docId) {
+        int held = 0;
+        if (!s.segments().isEmpty()) {
+            byte[] term = token.getBytes(StandardCharsets.UTF_8);
+            for (Segment segment : s.segments()) {
+                int ord = segment.find(term);
+                if (ord >= 0 && segment.cursor(ord).advance(docId) == docId) {
+                    held++;
+                }
+            }
+        }
+        for (Buffer buffer : s.buffers()) {
+            PostingsList list = buffer.postings.get(token);
+            if (list != null && list.cursor().advance(docId) == docId) {
+                held++;
+            }
+        }
+        return held;
+    }
+
+    /**
+     * True if a segment or buffer holds postings of the document, deleted or not
+     */
+    public boolean holds(int docId) {
+        State s = state;
+        for (Segment segment : s.segments()) {
+            if (segment.containsDoc(docId)) {
+                return true;
+            }
+        }
+        for (Buffer buffer : s.buffers()) {
+            if (buffer.docs.contains(docId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * False once a document has been deleted or superseded
+     */
+    public boolean isLive(int docId) {
+        return liveDocs.isLive(docId);
+    }
+
+    /**
+     * Queue a merge pass on the merge thread, which compacts segments whose
+     * share of deleted documents has reached compact-deletes-ratio
+     */
+    @Scheduled(fixedDelayString = "${indexer.segments.compact-interval-ms:300000}")
+    public void requestCompaction() {
+        if (liveDocs.deletedCount() > 0 && !merger.isShutdown()) {
+            merger.execute(this::mergeSegments);
+        }
+    }
+
+    /**
+     * Delta-varint encode a sorted position list for storage
+     */
+    public static byte[] encodePositions(int[] positions) {
+        return VarInt.encodeDeltas(positions, positions.length);
+    }
+
+    /**
+     * Open a cursor over a token's postings, or null if the token is unknown
+     */
+    public PostingsCursor cursor(String token) {
+        State s = state;
+        PostingsCursor[] subs = new PostingsCursor[s.segments().size() + s.buffers().size()];
+        int n = 0;
+        if (!s.segments().isEmpty()) {
+            byte[] term = token.getBytes(StandardCharsets.UTF_8);
+            for (Segment segment : s.segments()) {
+                int ord = segment.find(term);
+                if (ord >= 0) {
+                    subs[n++] = postingsCache.cursor(segment, ord);
+                }
+            }
+        }
+        for (Buffer buffer : s.buffers()) {
+            PostingsList list = buffer.postings.get(token);
+            if (list != null) {
+                subs[n++] = postingsCache.cursor(list);
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        PostingsCursor cursor = n == 1 ? subs[0] : new UnionCursor(Arrays.copyOf(subs, n));
+        return liveDocs.deletedCount() > 0 ? liveDocs.filter(cursor) : cursor;
+    }
+
+    /**
+     * Number of live documents containing the token
+     */
+    public int docFreq(String token) {
+        State s = state;
+        int docFreq = 0;
+        if (!s.segments().isEmpty()) {
+            byte[] term = token.getBytes(StandardCharsets.UTF_8);
+            for (Segment segment : s.segments()) {
+                int ord = segment.find(term);
+                if (ord >= 0) {
+                    docFreq += segment.docFreq(ord);
+                }
+            }
+        }
+        for (Buffer buffer : s.buffers()) {
+            PostingsList list = buffer.postings.get(token);
+            if (list != null) {
+                docFreq += list.size();
+            }
+        }
+        return docFreq - deletedDocFreq.getOrDefault(token, 0);
+    }
+
+    /**
+     * Visit every token of a live document with its document frequency
+     */
+    public void forEachTerm(ObjIntConsumer<String> action) {
+        State s = state;
+        Map<String, Integer> docFreqs = new HashMap<>();
+        for (Segment segment : s.segments()) {
+            for (int ord = 0; ord < segment.termCount(); ord++) {
+                docFreqs.merge(segment.term(ord), segment.docFreq(ord), Integer::sum);
+            }
+        }
+        for (Buffer buffer : s.buffers()) {
+            buffer.postings.forEach((token, list) -> docFreqs.merge(token, list.size(), Integer::sum));
+        }
+        docFreqs.forEach((token, docFreq) -> {
+            int live = docFreq - deletedDocFreq.getOrDefault(token, 0);
+            if (live > 0) {
+                action.accept(token, live);
+            }
+        });
+    }
+
+    /**
+     * Write everything buffered so far as a new segment. Buffers left over from
+     * a failed flush are written first.
+     */
+    public void flush() {
+        flushQueued.set(false);
+        synchronized (flushLock) {
+            lock.writeLock().lock();
+            try {
+                State s = state;
+                if (!s.active().docs.isEmpty()) {
+                    List<Buffer> buffers = new ArrayList<>(s.buffers());
+                    buffers.add(new Buffer());
+                    state = new State(s.segments(), List.copyOf(buffers));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            for (Buffer frozen : state.frozen()) {
+                long start = System.currentTimeMillis();
+                String name = newSegmentName();
+                try {
+                    Map<String, Integer> dropped = new HashMap<>();
+                    Segment segment = write(frozen, name, dropped);
+                    publish(s -> {
+                        List<Segment> segments = new ArrayList<>(s.segments());
+                        segments.add(segment);
+                        List<Buffer> buffers = new ArrayList<>(s.buffers());
+                        buffers.remove(frozen);
+                        return new State(List.copyOf(segments), List.copyOf(buffers));
+                    }, dropped);
+                    postingsCache.invalidateAll(frozen.postings.values());
+                    log.info("Flushed segment {} in {} ms", segment, System.currentTimeMillis() - start);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Could not flush index segment {}: {}", name, e.getMessage());
+                    deleteQuietly(name);
+                    return;
+                }
+            }
+        }
+        if (!merger.isShutdown()) {
+            merger.execute(this::mergeSegments);
+        }
+    }
+
+    /**
+     * Write a frozen buffer as a segment, terms in UTF-8 byte order, leaving out
+     * deleted documents; the postings left out are counted per term into dropped
+     */
+    private Segment write(Buffer buffer, String name, Map<String, Integer> dropped) throws IOException {
+        List<Map.Entry<byte[], PostingsList>> terms = new ArrayList<>(buffer.postings.size());
+        buffer.postings.forEach((token, list) -> terms.add(Map.entry(token.getBytes(StandardCharsets.UTF_8), list)));
+        terms.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+
+        try (SegmentWriter writer = new SegmentWriter(dir, name)) {
+            for (Map.Entry<byte[], PostingsList> term : terms) {
+                writer.startTerm(term.getKey());
+                PostingsList.Cursor c = (PostingsList.Cursor) term.getValue().cursor();
+                for (int d = c.nextDoc(); d != PostingsCursor.NO_MORE_DOCS; d = c.nextDoc()) {
+                    if (liveDocs.isLive(d)) {
+                        writer.addPosting(d, c.freq(), c.positionBytes());
+                    } else {
+                        dropped.merge(new String(term.getKey(), StandardCharsets.UTF_8), 1, Integer::sum);
+                    }
+                }
+                writer.finishTerm();
+            }
+            int[] docs = buffer.docs.stream().mapToInt(Integer::intValue).sorted().toArray();
+            for (int docId : docs) {
+                if (liveDocs.isLive(docId)) {
+                    writer.addDoc(docId, corpusStats.docLength(docId));
+                }
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Run the merges the policy asks for, one at a time, on the merge thread,
+     * then compact segments that are mostly deleted documents
+     */
+    private void mergeSegments() {
+        while (true) {
+            List<Segment> inputs = mergePolicy.findMerge(state.segments());
+            if (inputs.isEmpty()) {
+                inputs = findCompaction(state.segments());
+            }
+            if (inputs.isEmpty()) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            String name = newSegmentName();
+            try {
+                Map<String, Integer> dropped = new HashMap<>();
+                Segment merged = SegmentMerger.merge(inputs, liveDocs, dir, name, dropped);
+                if (merged.docCount() == 0) {
+                    deleteQuietly(name);
+                    merged = null;
+                }
+                replace(inputs, merged, dropped);
+                log.info("Merged {} segments into {} in {} ms",
+                    inputs.size(), merged != null ? merged : "nothing", System.currentTimeMillis() - start);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not merge index segments into {}: {}", name, e.getMessage());
+                deleteQuietly(name);
+                return;
+            }
+        }
+    }
+
+    /**
+     * The first segment whose deleted share has reached compact-deletes-ratio, or an empty list
+     */
+    private List<Segment> findCompaction(List<Segment> segments) {
+        if (liveDocs.deletedCount() == 0) {
+            return List.of();
+        }
+        for (Segment segment : segments) {
+            int deleted = 0;
+            for (int i = 0; i < segment.docCount(); i++) {
+                if (!liveDocs.isLive(segment.docAt(i))) {
+                    deleted++;
+                }
+            }
+            if (deleted > 0 && deleted >= compactDeletesRatio * segment.docCount()) {
+                return List.of(segment);
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Swap an adjacent run of segments for the one merged from them, or for
+     * nothing; dropped counts the postings of deleted documents left out
+     */
+    private void replace(List<Segment> inputs, Segment merged, Map<String, Integer> dropped) throws IOException {
+        // Flushes only append, so the inputs are still adjacent
+        publish(s -> {
+            List<Segment> segments = new ArrayList<>(s.segments());
+            int at = segments.indexOf(inputs.get(0));
+            segments.subList(at, at + inputs.size()).clear();
+            if (merged != null) {
+                segments.add(at, merged);
+            }
+            return new State(List.copyOf(segments), s.buffers());
+        }, dropped);
+        for (Segment input : inputs) {
+            postingsCache.evict(input);
+            deleteQuietly(input.name());
+        }
+    }
+
+    /**
+     * Swap in a new state and record its segments in the commit file. dropped
+     * holds, per term, postings of deleted documents that the new state no
+     * longer has, which stop counting as deleted once it is served.
+     */
+    private void publish(UnaryOperator<State> change, Map<String, Integer> dropped) throws IOException {
+        lock.writeLock().lock();
+        try {
+            State next = change.apply(state);
+            Properties commit = new Properties();
+            commit.setProperty("segments", String.join(",", next.segments().stream().map(Segment::name).toList()));
+            commit.setProperty("counter", Long.toString(nextSegment.get()));
+            Path file = dir.resolve(COMMIT_FILE);
+            Path tmp = file.resolveSibling(COMMIT_FILE + ".tmp");
+            try (Writer out = Files.newBufferedWriter(tmp)) {
+                commit.store(out, null);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            state = next;
+            dropped.forEach((term, n) -> deletedDocFreq.computeIfPresent(term, (t, held) -> held > n ? held - n : null));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private String newSegmentName() {
+        return "_" + Long.toString(nextSegment.getAndIncrement(), Character.MAX_RADIX);
+    }
+
+    private void deleteQuietly(String name) {
+        try {
+            Segment.delete(dir, name);
+        } catch (IOException e) {
+            log.debug("Could not delete segment {}: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Stop merging and write out the buffer, so the next start has nothing to reload
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        merger.shutdownNow();
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        flush();
+    }
+
+    /**
+     * Postings not yet in a segment; written to only until frozen by a flush
+     */
+    private static final class Buffer {
+        final Map<String, PostingsList> postings = new ConcurrentHashMap<>();
+        final Set<Integer> docs = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Segments and buffers served together, each oldest first; the last buffer takes new postings
+     */
+    private record State(List<Segment> segments, List<Buffer> buffers) {
+
+        Buffer active() {
+            return buffers.get(buffers.size() - 1);
+        }
+
+        List<Buffer> frozen() {
+            return buffers.subList(0, buffers.size() - 1);
+        }
+    }
+}
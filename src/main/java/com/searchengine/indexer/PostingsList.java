@@ -0,0 +1,510 @@
+package com.searchengine.indexer;
+
+import java.util.Arrays;
+
+/**
+ * Doc-id-sorted postings for a single token.
+ *
+ * Postings are grouped into blocks of {@link #BLOCK_SIZE} documents. Full blocks
+ * are sealed: doc ids are delta encoded against the previous block and bit packed
+ * together with the frequencies into a single long[]. The last partial block stays
+ * as plain int arrays so appends are cheap. The last doc id of every sealed block
+ * is kept unpacked so cursors can skip whole blocks without decoding them.
+ *
+ * Positions are stored per block as one byte[]: for each document a varint byte
+ * length followed by its delta-varint encoded word positions. The length prefix
+ * lets cursors skip a document's positions without decoding them. Postings loaded
+ * from rows written before positions were tracked have an empty entry.
+ *
+ * Writers synchronize on the list; readers work on a snapshot taken by {@link #cursor()}.
+ * Since sealed blocks never change until a rewrite, their decoded form can be
+ * cached ({@link #decodeSealed()}) and handed back to {@link #cursor(DecodedBlocks)}.
+ */
+public class PostingsList {
+
+    public static final int BLOCK_SIZE = 128;
+
+    // Sealed blocks — the arrays may be replaced when they grow, but a block is never modified
+    private long[][] blocks = new long[4][];
+    private int[] blockLastDoc = new int[4];
+    private int[] blockMaxFreq = new int[4];
+    private byte[][] blockPositions = new byte[4][];
+    private int blockCount;
+
+    // Unsealed tail, sorted by doc id
+    private final int[] tailDocs = new int[BLOCK_SIZE];
+    private final int[] tailFreqs = new int[BLOCK_SIZE];
+    private final byte[][] tailPositions = new byte[BLOCK_SIZE][];
+    private int tailSize;
+
+    private int size;
+    private int maxFreq;
+    // Bumped whenever sealed blocks are re-encoded, which invalidates decoded copies
+    private int epoch;
+
+    /**
+     * Add or replace the posting for a document.
+     * {@code positions} is the delta-varint encoded position list, or null if unknown.
+     * Returns true if sealed blocks were rewritten, which makes decoded copies stale;
+     * sealing a new block leaves them valid for the blocks they cover.
+     */
+    public synchronized boolean add(int docId, int freq, byte[] positions) {
+        if (positions == null) {
+            positions = new byte[0];
+        }
+        if (blockCount > 0 && docId <= blockLastDoc[blockCount - 1]) {
+            rewrite(docId, freq, positions);
+            return true;
+        }
+
+        maxFreq = Math.max(maxFreq, freq);
+        int i = Arrays.binarySearch(tailDocs, 0, tailSize, docId);
+        if (i >= 0) {
+            tailFreqs[i] = freq;
+            tailPositions[i] = positions;
+            return false;
+        }
+
+        int ins = -i - 1;
+        System.arraycopy(tailDocs, ins, tailDocs, ins + 1, tailSize - ins);
+        System.arraycopy(tailFreqs, ins, tailFreqs, ins + 1, tailSize - ins);
+        System.arraycopy(tailPositions, ins, tailPositions, ins + 1, tailSize - ins);
+        tailDocs[ins] = docId;
+        tailFreqs[ins] = freq;
+        tailPositions[ins] = positions;
+        tailSize++;
+        size++;
+
+        if (tailSize == BLOCK_SIZE) {
+            seal();
+        }
+        return false;
+    }
+
+    /**
+     * Number of documents in this list
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Number of sealed blocks
+     */
+    public synchronized int sealedBlocks() {
+        return blockCount;
+    }
+
+    /**
+     * Highest term frequency seen in this list
+     */
+    public synchronized int maxFreq() {
+        return maxFreq;
+    }
+
+    /**
+     * Approximate heap footprint of the encoded postings in bytes
+     */
+    public synchronized long ramBytesUsed() {
+        long bytes = 2L * BLOCK_SIZE * Integer.BYTES + 2L * blockLastDoc.length * Integer.BYTES;
+        for (int b = 0; b < blockCount; b++) {
+            bytes += (long) blocks[b].length * Long.BYTES + blockPositions[b].length;
+        }
+        for (int i = 0; i < tailSize; i++) {
+            bytes += tailPositions[i].length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Open a cursor over a point-in-time snapshot of this list
+     */
+    public PostingsCursor cursor() {
+        return cursor(null);
+    }
+
+    /**
+     * Open a cursor that reads sealed blocks from a decoded copy where it has
+     * them instead of unpacking them; a copy from before a rewrite is ignored
+     */
+    public synchronized PostingsCursor cursor(DecodedBlocks decoded) {
+        if (decoded != null && decoded.epoch != epoch) {
+            decoded = null;
+        }
+        return new Cursor(blocks, blockLastDoc, blockMaxFreq, blockPositions, blockCount, decoded,
+            Arrays.copyOf(tailDocs, tailSize), Arrays.copyOf(tailFreqs, tailSize),
+            joinPositions(tailPositions, tailSize), size, maxFreq);
+    }
+
+    /**
+     * Doc ids and frequencies of every sealed block, unpacked
+     */
+    public synchronized DecodedBlocks decodeSealed() {
+        int n = blockCount * BLOCK_SIZE;
+        int[] docs = new int[n];
+        int[] freqs = new int[n];
+        int[] docBuf = new int[BLOCK_SIZE];
+        int[] freqBuf = new int[BLOCK_SIZE];
+        for (int b = 0; b < blockCount; b++) {
+            decode(blocks[b], b == 0 ? 0 : blockLastDoc[b - 1], docBuf, freqBuf);
+            System.arraycopy(docBuf, 0, docs, b * BLOCK_SIZE, BLOCK_SIZE);
+            System.arraycopy(freqBuf, 0, freqs, b * BLOCK_SIZE, BLOCK_SIZE);
+        }
+        return new DecodedBlocks(docs, freqs, blockCount, epoch);
+    }
+
+    private void seal() {
+        int base = blockCount == 0 ? 0 : blockLastDoc[blockCount - 1];
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+            blockLastDoc = Arrays.copyOf(blockLastDoc, blockCount * 2);
+            blockMaxFreq = Arrays.copyOf(blockMaxFreq, blockCount * 2);
+            blockPositions = Arrays.copyOf(blockPositions, blockCount * 2);
+        }
+        blocks[blockCount] = encode(tailDocs, tailFreqs, base, BLOCK_SIZE);
+        blockLastDoc[blockCount] = tailDocs[BLOCK_SIZE - 1];
+        blockMaxFreq[blockCount] = max(tailFreqs, BLOCK_SIZE);
+        blockPositions[blockCount] = joinPositions(tailPositions, BLOCK_SIZE);
+        blockCount++;
+        Arrays.fill(tailPositions, null);
+        tailSize = 0;
+    }
+
+    /**
+     * Slow path for a doc id that falls inside an already sealed block:
+     * decode everything, merge the posting in and re-encode.
+     */
+    private void rewrite(int docId, int freq, byte[] positions) {
+        epoch++;
+        int[] docs = new int[size + 1];
+        int[] freqs = new int[size + 1];
+        byte[][] pos = new byte[size + 1][];
+        Cursor c = (Cursor) cursor();
+        int n = 0;
+        boolean placed = false;
+        for (int d = c.nextDoc(); d != PostingsCursor.NO_MORE_DOCS; d = c.nextDoc()) {
+            if (!placed && d >= docId) {
+                docs[n] = docId;
+                freqs[n] = freq;
+                pos[n++] = positions;
+                placed = true;
+                if (d == docId) {
+                    continue;
+                }
+            }
+            docs[n] = d;
+            freqs[n] = c.freq();
+            pos[n++] = c.positionBytes();
+        }
+        if (!placed) {
+            docs[n] = docId;
+            freqs[n] = freq;
+            pos[n++] = positions;
+        }
+
+        int capacity = Math.max(4, n / BLOCK_SIZE + 1);
+        blocks = new long[capacity][];
+        blockLastDoc = new int[capacity];
+        blockMaxFreq = new int[capacity];
+        blockPositions = new byte[capacity][];
+        blockCount = 0;
+        Arrays.fill(tailPositions, null);
+        tailSize = 0;
+        size = 0;
+        for (int i = 0; i < n; i++) {
+            add(docs[i], freqs[i], pos[i]);
+        }
+    }
+
+    /**
+     * Concatenate per-document position lists, each prefixed with its byte length
+     */
+    private static byte[] joinPositions(byte[][] positions, int count) {
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += VarInt.size(positions[i].length) + positions[i].length;
+        }
+        byte[] out = new byte[total];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            n = VarInt.write(positions[i].length, out, n);
+            System.arraycopy(positions[i], 0, out, n, positions[i].length);
+            n += positions[i].length;
+        }
+        return out;
+    }
+
+    private static int max(int[] values, int count) {
+        int max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Block layout: [header][doc deltas - 1][freqs - 1], header = docBits | freqBits << 8.
+     * Segments use the same layout for their blocks, including a shorter last one.
+     */
+    static long[] encode(int[] docs, int[] freqs, int base, int count) {
+        int[] deltas = new int[count];
+        int[] fs = new int[count];
+        int prev = base;
+        for (int i = 0; i < count; i++) {
+            deltas[i] = docs[i] - prev - 1;
+            fs[i] = freqs[i] - 1;
+            prev = docs[i];
+        }
+        int docBits = BitPacking.bitsRequired(deltas, count);
+        int freqBits = BitPacking.bitsRequired(fs, count);
+        int docLongs = BitPacking.longsRequired(count, docBits);
+
+        long[] block = new long[1 + docLongs + BitPacking.longsRequired(count, freqBits)];
+        block[0] = docBits | ((long) freqBits << 8);
+        BitPacking.pack(deltas, count, docBits, block, 1);
+        BitPacking.pack(fs, count, freqBits, block, 1 + docLongs);
+        return block;
+    }
+
+    private static void decode(long[] block, int base, int[] docs, int[] freqs) {
+        int docBits = (int) (block[0] & 0xFF);
+        int freqBits = (int) ((block[0] >>> 8) & 0xFF);
+        BitPacking.unpack(block, 1, docBits, BLOCK_SIZE, docs);
+        BitPacking.unpack(block, 1 + BitPacking.longsRequired(BLOCK_SIZE, docBits), freqBits, BLOCK_SIZE, freqs);
+        int prev = base;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            prev += docs[i] + 1;
+            docs[i] = prev;
+            freqs[i]++;
+        }
+    }
+
+    /**
+     * Unpacked doc ids and frequencies of the first blockCount sealed blocks
+     */
+    public static final class DecodedBlocks {
+
+        final int[] docs;
+        final int[] freqs;
+        final int blockCount;
+        final int epoch;
+
+        DecodedBlocks(int[] docs, int[] freqs, int blockCount, int epoch) {
+            this.docs = docs;
+            this.freqs = freqs;
+            this.blockCount = blockCount;
+            this.epoch = epoch;
+        }
+
+        /**
+         * Approximate heap footprint in bytes
+         */
+        public long ramBytesUsed() {
+            return 64L + (long) (docs.length + freqs.length) * Integer.BYTES;
+        }
+    }
+
+    /**
+     * Cursor that decodes one block at a time and skips blocks by their last doc id.
+     * Blocks present in a decoded copy are read from it in place.
+     */
+    static final class Cursor implements PostingsCursor {
+
+        private final long[][] blocks;
+        private final int[] blockLastDoc;
+        private final int[] blockMaxFreq;
+        private final byte[][] blockPositions;
+        private final int blockCount;
+        private final DecodedBlocks decoded;
+        private final int[] tailDocs;
+        private final int[] tailFreqs;
+        private final byte[] tailPositions;
+        private final int tailMaxFreq;
+        private final int cost;
+        private final int maxFreq;
+
+        private final int[] docBuf = new int[BLOCK_SIZE];
+        private final int[] freqBuf = new int[BLOCK_SIZE];
+        // Current block's docs and freqs: docSrc[srcBase + i] for i < bufSize
+        private int[] docSrc = docBuf;
+        private int[] freqSrc = freqBuf;
+        private int srcBase;
+        private int block = -1;
+        private int bufSize;
+        private int bufPos;
+        private int doc = -1;
+        private int shallowBlock = -1;
+
+        // Positions of the current block: entry posDoc starts at posOffset
+        private byte[] posData;
+        private int posDoc;
+        private int posOffset;
+        private final int[] posCursor = new int[1];
+        private int posEnd = -1;
+        private int lastPosition;
+
+        Cursor(long[][] blocks, int[] blockLastDoc, int[] blockMaxFreq, byte[][] blockPositions,
+               int blockCount, DecodedBlocks decoded, int[] tailDocs, int[] tailFreqs, byte[] tailPositions,
+               int cost, int maxFreq) {
+            this.blocks = blocks;
+            this.blockLastDoc = blockLastDoc;
+            this.blockMaxFreq = blockMaxFreq;
+            this.blockPositions = blockPositions;
+            this.blockCount = blockCount;
+            this.decoded = decoded;
+            this.tailDocs = tailDocs;
+            this.tailFreqs = tailFreqs;
+            this.tailPositions = tailPositions;
+            this.tailMaxFreq = max(tailFreqs, tailFreqs.length);
+            this.cost = cost;
+            this.maxFreq = maxFreq;
+        }
+
+        @Override
+        public int docId() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (doc == NO_MORE_DOCS) {
+                return doc;
+            }
+            posEnd = -1;
+            if (++bufPos < bufSize) {
+                return doc = docSrc[srcBase + bufPos];
+            }
+            return loadBlock(block + 1) ? (doc = docSrc[srcBase + bufPos]) : (doc = NO_MORE_DOCS);
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc == NO_MORE_DOCS) {
+                return doc;
+            }
+            posEnd = -1;
+            if (block < 0 || bufSize == 0 || docSrc[srcBase + bufSize - 1] < target) {
+                int b = block + 1;
+                while (b < blockCount && blockLastDoc[b] < target) {
+                    b++;
+                }
+                if (!loadBlock(b)) {
+                    return doc = NO_MORE_DOCS;
+                }
+            }
+            while (bufPos < bufSize && docSrc[srcBase + bufPos] < target) {
+                bufPos++;
+            }
+            if (bufPos < bufSize) {
+                return doc = docSrc[srcBase + bufPos];
+            }
+            // Only reachable when the tail is the last block and target is past it
+            return doc = NO_MORE_DOCS;
+        }
+
+        @Override
+        public int freq() {
+            return freqSrc[srcBase + bufPos];
+        }
+
+        @Override
+        public int cost() {
+            return cost;
+        }
+
+        @Override
+        public int maxFreq() {
+            return maxFreq;
+        }
+
+        @Override
+        public int nextPosition() {
+            if (posEnd < 0) {
+                seekPositions();
+            }
+            if (posCursor[0] >= posEnd) {
+                return -1;
+            }
+            lastPosition += VarInt.read(posData, posCursor);
+            return lastPosition;
+        }
+
+        /** Skip over the entries of earlier documents in the block to the current one */
+        private void seekPositions() {
+            int[] p = posCursor;
+            p[0] = posOffset;
+            while (posDoc < bufPos) {
+                int len = VarInt.read(posData, p);
+                p[0] += len;
+                posDoc++;
+            }
+            posOffset = p[0];
+            int len = VarInt.read(posData, p);
+            posEnd = p[0] + len;
+            lastPosition = 0;
+        }
+
+        /** Raw encoded positions of the current document */
+        byte[] positionBytes() {
+            seekPositions();
+            return Arrays.copyOfRange(posData, posCursor[0], posEnd);
+        }
+
+        @Override
+        public int advanceShallow(int target) {
+            int b = Math.max(Math.max(block, shallowBlock), 0);
+            while (b < blockCount && blockLastDoc[b] < target) {
+                b++;
+            }
+            shallowBlock = b;
+            if (b < blockCount) {
+                return blockLastDoc[b];
+            }
+            if (b == blockCount && tailDocs.length > 0 && tailDocs[tailDocs.length - 1] >= target) {
+                return tailDocs[tailDocs.length - 1];
+            }
+            return NO_MORE_DOCS;
+        }
+
+        @Override
+        public int blockMaxFreq() {
+            if (shallowBlock < blockCount) {
+                return blockMaxFreq[shallowBlock];
+            }
+            return shallowBlock == blockCount ? tailMaxFreq : 0;
+        }
+
+        private boolean loadBlock(int b) {
+            if (decoded != null && b < decoded.blockCount && b < blockCount) {
+                docSrc = decoded.docs;
+                freqSrc = decoded.freqs;
+                srcBase = b * BLOCK_SIZE;
+                posData = blockPositions[b];
+                bufSize = BLOCK_SIZE;
+            } else if (b < blockCount) {
+                decode(blocks[b], b == 0 ? 0 : blockLastDoc[b - 1], docBuf, freqBuf);
+                docSrc = docBuf;
+                freqSrc = freqBuf;
+                srcBase = 0;
+                posData = blockPositions[b];
+                bufSize = BLOCK_SIZE;
+            } else if (b == blockCount && tailDocs.length > 0) {
+                docSrc = tailDocs;
+                freqSrc = tailFreqs;
+                srcBase = 0;
+                posData = tailPositions;
+                bufSize = tailDocs.length;
+            } else {
+                block = blockCount + 1;
+                bufSize = 0;
+                return false;
+            }
+            block = b;
+            bufPos = 0;
+            posDoc = 0;
+            posOffset = 0;
+            posEnd = -1;
+            return true;
+        }
+    }
+}
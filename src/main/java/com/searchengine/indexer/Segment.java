@@ -0,0 +1,449 @@
+package com.searchengine.indexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read side of an immutable on-disk index segment, written by {@link SegmentWriter}.
+ *
+ * A segment is three files sharing a name:
+ * <ul>
+ *   <li>{@code .tim} — term dictionary: fixed-width entries (term offset,
+ *       postings offset, doc freq, max freq) sorted by the term's UTF-8 bytes,
+ *       followed by the concatenated term bytes. Lookups binary search it in place.</li>
+ *   <li>{@code .pst} — per term a skip table of (last doc, max freq, block offset,
+ *       positions offset) entries plus the end of its positions, the bit-packed
+ *       blocks in {@link PostingsList} layout, and the blocks' length-prefixed
+ *       position lists.</li>
+ *   <li>{@code .len} — sorted (doc id, length) pairs of every document in the segment.</li>
+ * </ul>
+ * The files are mapped read-only with {@link FileChannel#map}; cursors decode
+ * straight from the mapping, so the OS page cache is the only copy of the
+ * postings and a cold segment costs no heap. A mapping holds at most 2 GB,
+ * which bounds the size of a single segment.
+ */
+final class Segment {
+
+    static final String TERMS_EXT = ".tim";
+    static final String POSTINGS_EXT = ".pst";
+    static final String LENGTHS_EXT = ".len";
+    static final int TERMS_MAGIC = 0x53544D31;    // "STM1"
+    static final int POSTINGS_MAGIC = 0x53505331; // "SPS1"
+    static final int LENGTHS_MAGIC = 0x534C4E31;  // "SLN1"
+    static final int SKIP_ENTRY_BYTES = 4 * Integer.BYTES;
+
+    private static final int BLOCK_SIZE = PostingsList.BLOCK_SIZE;
+    private static final int TERM_ENTRY_BYTES = 4 * Integer.BYTES;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final String name;
+    private final ByteBuffer terms;
+    private final ByteBuffer postings;
+    private final ByteBuffer lengths;
+    private final int termCount;
+    private final int blobStart;
+    private final int docCount;
+    private final long sizeInBytes;
+
+    private Segment(String name, ByteBuffer terms, ByteBuffer postings, ByteBuffer lengths, long sizeInBytes) {
+        this.name = name;
+        this.terms = terms;
+        this.postings = postings;
+        this.lengths = lengths;
+        this.termCount = terms.getInt(Integer.BYTES);
+        this.blobStart = HEADER_BYTES + termCount * TERM_ENTRY_BYTES;
+        this.docCount = lengths.getInt(Integer.BYTES);
+        this.sizeInBytes = sizeInBytes;
+    }
+
+    /**
+     * Map the files of a segment written earlier
+     */
+    static Segment open(Path dir, String name) throws IOException {
+        ByteBuffer terms = map(dir.resolve(name + TERMS_EXT), TERMS_MAGIC);
+        ByteBuffer postings = map(dir.resolve(name + POSTINGS_EXT), POSTINGS_MAGIC);
+        ByteBuffer lengths = map(dir.resolve(name + LENGTHS_EXT), LENGTHS_MAGIC);
+        return new Segment(name, terms, postings, lengths,
+            (long) terms.capacity() + postings.capacity() + lengths.capacity());
+    }
+
+    private static ByteBuffer map(Path file, int magic) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < Integer.BYTES || buffer.getInt(0) != magic) {
+                throw new IOException("Not a segment file: " + file);
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Delete the files of a segment; open mappings stay readable until collected
+     */
+    static void delete(Path dir, String name) throws IOException {
+        Files.deleteIfExists(dir.resolve(name + TERMS_EXT));
+        Files.deleteIfExists(dir.resolve(name + POSTINGS_EXT));
+        Files.deleteIfExists(dir.resolve(name + LENGTHS_EXT));
+    }
+
+    String name() {
+        return name;
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    int docCount() {
+        return docCount;
+    }
+
+    long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Ordinal of a term in the dictionary, or -1 if the segment does not contain it
+     */
+    int find(byte[] term) {
+        int lo = 0;
+        int hi = termCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareTerm(mid, term);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareTerm(int ord, byte[] term) {
+        int start = termStart(ord);
+        int len = termEnd(ord) - start;
+        int n = Math.min(len, term.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(terms.get(start + i) & 0xFF, term[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(len, term.length);
+    }
+
+    private int termStart(int ord) {
+        return blobStart + terms.getInt(HEADER_BYTES + ord * TERM_ENTRY_BYTES);
+    }
+
+    private int termEnd(int ord) {
+        return ord + 1 < termCount ? termStart(ord + 1) : terms.capacity();
+    }
+
+    /**
+     * UTF-8 bytes of the term at an ordinal
+     */
+    byte[] termBytes(int ord) {
+        int start = termStart(ord);
+        byte[] bytes = new byte[termEnd(ord) - start];
+        terms.get(start, bytes);
+        return bytes;
+    }
+
+    String term(int ord) {
+        return new String(termBytes(ord), StandardCharsets.UTF_8);
+    }
+
+    int docFreq(int ord) {
+        return terms.getInt(HEADER_BYTES + ord * TERM_ENTRY_BYTES + 2 * Integer.BYTES);
+    }
+
+    private int maxFreq(int ord) {
+        return terms.getInt(HEADER_BYTES + ord * TERM_ENTRY_BYTES + 3 * Integer.BYTES);
+    }
+
+    private int postingsOffset(int ord) {
+        return terms.getInt(HEADER_BYTES + ord * TERM_ENTRY_BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Document id at an index of the doc-length file (0 ≤ i &lt; docCount)
+     */
+    int docAt(int i) {
+        return lengths.getInt(HEADER_BYTES + i * 2 * Integer.BYTES);
+    }
+
+    /**
+     * Length in tokens of the document at an index of the doc-length file
+     */
+    int lengthAt(int i) {
+        return lengths.getInt(HEADER_BYTES + i * 2 * Integer.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * True if the doc-length file lists the document, i.e. the segment holds its postings
+     */
+    boolean containsDoc(int docId) {
+        int lo = 0;
+        int hi = docCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int doc = docAt(mid);
+            if (doc < docId) {
+                lo = mid + 1;
+            } else if (doc > docId) {
+                hi = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Cursor cursor(int ord) {
+        return cursor(ord, null);
+    }
+
+    /**
+     * Cursor over the postings of a term, reading blocks from the decoded copy when given
+     */
+    Cursor cursor(int ord, PostingsList.DecodedBlocks decoded) {
+        return new Cursor(postings, postingsOffset(ord), docFreq(ord), maxFreq(ord), decoded);
+    }
+
+    /**
+     * Doc ids and frequencies of all of a term's blocks, unpacked
+     */
+    PostingsList.DecodedBlocks decode(int ord) {
+        int docFreq = docFreq(ord);
+        int[] docs = new int[docFreq];
+        int[] freqs = new int[docFreq];
+        Cursor c = cursor(ord);
+        for (int i = 0; c.nextDoc() != PostingsCursor.NO_MORE_DOCS; i++) {
+            docs[i] = c.docId();
+            freqs[i] = c.freq();
+        }
+        return new PostingsList.DecodedBlocks(docs, freqs, blockCount(docFreq), 0);
+    }
+
+    private static int blockCount(int docFreq) {
+        return (docFreq + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + docCount + " docs, " + termCount + " terms)";
+    }
+
+    /**
+     * Cursor over one term's postings in a mapped segment. Skips blocks by the
+     * last doc ids in the skip table and unpacks one block at a time from the
+     * mapping; positions are read in place and only when asked for.
+     */
+    static final class Cursor implements PostingsCursor {
+
+        private final ByteBuffer data;
+        private final int skip;
+        private final int blockCount;
+        private final int cost;
+        private final int maxFreq;
+        private final PostingsList.DecodedBlocks decoded;
+
+        private final int[] docBuf = new int[BLOCK_SIZE];
+        private final int[] freqBuf = new int[BLOCK_SIZE];
+        private int[] docSrc = docBuf;
+        private int[] freqSrc = freqBuf;
+        private int srcBase;
+        private int block = -1;
+        private int bufSize;
+        private int bufPos;
+        private int doc = -1;
+        private int shallowBlock = -1;
+
+        // Positions of the current block, as absolute offsets into the mapping
+        private int posDoc;
+        private int posOffset;
+        private final int[] posCursor = new int[1];
+        private int posEnd = -1;
+        private int lastPosition;
+
+        Cursor(ByteBuffer data, int skip, int cost, int maxFreq, PostingsList.DecodedBlocks decoded) {
+            this.data = data;
+            this.skip = skip;
+            this.blockCount = blockCount(cost);
+            this.cost = cost;
+            this.maxFreq = maxFreq;
+            this.decoded = decoded;
+        }
+
+        private int lastDocOf(int b) {
+            return data.getInt(skip + b * SKIP_ENTRY_BYTES);
+        }
+
+        private int maxFreqOf(int b) {
+            return data.getInt(skip + b * SKIP_ENTRY_BYTES + Integer.BYTES);
+        }
+
+        private int dataOffsetOf(int b) {
+            return data.getInt(skip + b * SKIP_ENTRY_BYTES + 2 * Integer.BYTES);
+        }
+
+        private int posOffsetOf(int b) {
+            return data.getInt(skip + b * SKIP_ENTRY_BYTES + 3 * Integer.BYTES);
+        }
+
+        @Override
+        public int docId() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (doc == NO_MORE_DOCS) {
+                return doc;
+            }
+            posEnd = -1;
+            if (++bufPos < bufSize) {
+                return doc = docSrc[srcBase + bufPos];
+            }
+            return loadBlock(block + 1) ? (doc = docSrc[srcBase + bufPos]) : (doc = NO_MORE_DOCS);
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc == NO_MORE_DOCS) {
+                return doc;
+            }
+            posEnd = -1;
+            if (block < 0 || docSrc[srcBase + bufSize - 1] < target) {
+                int b = block + 1;
+                while (b < blockCount && lastDocOf(b) < target) {
+                    b++;
+                }
+                if (!loadBlock(b)) {
+                    return doc = NO_MORE_DOCS;
+                }
+            }
+            while (docSrc[srcBase + bufPos] < target) {
+                bufPos++;
+            }
+            return doc = docSrc[srcBase + bufPos];
+        }
+
+        @Override
+        public int freq() {
+            return freqSrc[srcBase + bufPos];
+        }
+
+        @Override
+        public int cost() {
+            return cost;
+        }
+
+        @Override
+        public int maxFreq() {
+            return maxFreq;
+        }
+
+        @Override
+        public int nextPosition() {
+            if (posEnd < 0) {
+                seekPositions();
+            }
+            if (posCursor[0] >= posEnd) {
+                return -1;
+            }
+            lastPosition += VarInt.read(data, posCursor);
+            return lastPosition;
+        }
+
+        private void seekPositions() {
+            int[] p = posCursor;
+            p[0] = posOffset;
+            while (posDoc < bufPos) {
+                int len = VarInt.read(data, p);
+                p[0] += len;
+                posDoc++;
+            }
+            posOffset = p[0];
+            int len = VarInt.read(data, p);
+            posEnd = p[0] + len;
+            lastPosition = 0;
+        }
+
+        /** Raw encoded positions of the current document */
+        byte[] positionBytes() {
+            seekPositions();
+            byte[] bytes = new byte[posEnd - posCursor[0]];
+            data.get(posCursor[0], bytes);
+            return bytes;
+        }
+
+        @Override
+        public int advanceShallow(int target) {
+            int b = Math.max(Math.max(block, shallowBlock), 0);
+            while (b < blockCount && lastDocOf(b) < target) {
+                b++;
+            }
+            shallowBlock = b;
+            return b < blockCount ? lastDocOf(b) : NO_MORE_DOCS;
+        }
+
+        @Override
+        public int blockMaxFreq() {
+            return shallowBlock < blockCount ? maxFreqOf(shallowBlock) : 0;
+        }
+
+        private boolean loadBlock(int b) {
+            if (b >= blockCount) {
+                block = blockCount;
+                bufSize = 0;
+                return false;
+            }
+            int count = Math.min(BLOCK_SIZE, cost - b * BLOCK_SIZE);
+            if (decoded != null) {
+                docSrc = decoded.docs;
+                freqSrc = decoded.freqs;
+                srcBase = b * BLOCK_SIZE;
+            } else {
+                decode(b, count);
+                docSrc = docBuf;
+                freqSrc = freqBuf;
+                srcBase = 0;
+            }
+            block = b;
+            bufSize = count;
+            bufPos = 0;
+            posDoc = 0;
+            posOffset = posOffsetOf(b);
+            posEnd = -1;
+            return true;
+        }
+
+        private void decode(int b, int count) {
+            int offset = dataOffsetOf(b);
+            long header = data.getLong(offset);
+            int docBits = (int) (header & 0xFF);
+            int freqBits = (int) ((header >>> 8) & 0xFF);
+            int docStart = offset + Long.BYTES;
+            BitPacking.unpack(data, docStart, docBits, count, docBuf);
+            BitPacking.unpack(data, docStart + BitPacking.longsRequired(count, docBits) * Long.BYTES,
+                freqBits, count, freqBuf);
+            int prev = b == 0 ? 0 : lastDocOf(b - 1);
+            for (int i = 0; i < count; i++) {
+                prev += docBuf[i] + 1;
+                docBuf[i] = prev;
+                freqBuf[i]++;
+            }
+        }
+    }
+}
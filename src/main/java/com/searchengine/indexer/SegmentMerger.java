@@ -0,0 +1,130 @@
+package com.searchengine.indexer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges adjacent segments into one new segment. Term dictionaries are walked
+ * together in sorted order and each term's postings are merged by doc id, so
+ * the merge streams through the inputs and only one term's blocks are held
+ * in memory at a time. Where inputs share a document the newest one wins.
+ * Deleted documents are left out, which is how their postings are reclaimed;
+ * merging a single segment compacts it.
+ */
+final class SegmentMerger {
+
+    private SegmentMerger() {
+    }
+
+    /**
+     * Write the live documents of inputs (oldest first) as the segment called
+     * name; the postings of deleted documents left out are counted per term into dropped
+     */
+    static Segment merge(List<Segment> inputs, LiveDocs liveDocs, Path dir, String name,
+                         Map<String, Integer> dropped) throws IOException {
+        int k = inputs.size();
+        try (SegmentWriter writer = new SegmentWriter(dir, name)) {
+            int[] ords = new int[k];
+            byte[][] heads = new byte[k][];
+            for (int i = 0; i < k; i++) {
+                heads[i] = inputs.get(i).termCount() > 0 ? inputs.get(i).termBytes(0) : null;
+            }
+            Segment.Cursor[] cursors = new Segment.Cursor[k];
+            while (true) {
+                byte[] term = null;
+                for (byte[] head : heads) {
+                    if (head != null && (term == null || Arrays.compareUnsigned(head, term) < 0)) {
+                        term = head;
+                    }
+                }
+                if (term == null) {
+                    break;
+                }
+                int n = 0;
+                for (int i = 0; i < k; i++) {
+                    if (heads[i] != null && Arrays.equals(heads[i], term)) {
+                        Segment segment = inputs.get(i);
+                        cursors[n++] = segment.cursor(ords[i]);
+                        ords[i]++;
+                        heads[i] = ords[i] < segment.termCount() ? segment.termBytes(ords[i]) : null;
+                    }
+                }
+                writer.startTerm(term);
+                int deleted = writePostings(writer, cursors, n, liveDocs);
+                if (deleted > 0) {
+                    dropped.merge(new String(term, StandardCharsets.UTF_8), deleted, Integer::sum);
+                }
+                writer.finishTerm();
+            }
+            writeDocs(writer, inputs, liveDocs);
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Merge one term's postings, returning how many of deleted documents were left out
+     */
+    private static int writePostings(SegmentWriter writer, Segment.Cursor[] cursors, int n, LiveDocs liveDocs) {
+        int deleted = 0;
+        for (int i = 0; i < n; i++) {
+            cursors[i].nextDoc();
+        }
+        while (true) {
+            int doc = PostingsCursor.NO_MORE_DOCS;
+            Segment.Cursor newest = null;
+            for (int i = 0; i < n; i++) {
+                if (cursors[i].docId() <= doc) {
+                    doc = cursors[i].docId();
+                    newest = cursors[i];
+                }
+            }
+            if (doc == PostingsCursor.NO_MORE_DOCS) {
+                return deleted;
+            }
+            boolean live = liveDocs.isLive(doc);
+            if (live) {
+                writer.addPosting(doc, newest.freq(), newest.positionBytes());
+            }
+            for (int i = 0; i < n; i++) {
+                if (cursors[i].docId() == doc) {
+                    if (!live) {
+                        deleted++;
+                    }
+                    cursors[i].nextDoc();
+                }
+            }
+        }
+    }
+
+    private static void writeDocs(SegmentWriter writer, List<Segment> inputs, LiveDocs liveDocs) {
+        int k = inputs.size();
+        int[] next = new int[k];
+        while (true) {
+            int doc = Integer.MAX_VALUE;
+            int from = -1;
+            for (int i = 0; i < k; i++) {
+                Segment segment = inputs.get(i);
+                if (next[i] < segment.docCount() && segment.docAt(next[i]) <= doc) {
+                    doc = segment.docAt(next[i]);
+                    from = i;
+                }
+            }
+            if (from < 0) {
+                return;
+            }
+            if (liveDocs.isLive(doc)) {
+                writer.addDoc(doc, inputs.get(from).lengthAt(next[from]));
+            }
+            for (int i = 0; i < k; i++) {
+                Segment segment = inputs.get(i);
+                if (next[i] < segment.docCount() && segment.docAt(next[i]) == doc) {
+                    next[i]++;
+                }
+            }
+        }
+    }
+}
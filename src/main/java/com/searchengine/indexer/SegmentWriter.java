@@ -0,0 +1,253 @@
+package com.searchengine.indexer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes one immutable {@link Segment}: terms must be added in unsigned UTF-8
+ * byte order, each with its postings in doc-id order, and documents with
+ * their lengths in doc-id order. Each term's blocks are held in memory until
+ * the term is finished, so only the largest single postings list has to fit
+ * on the heap. {@link #finish()} writes the term dictionary and doc lengths,
+ * syncs all three files and opens the result.
+ */
+final class SegmentWriter implements Closeable {
+
+    private static final int BLOCK_SIZE = PostingsList.BLOCK_SIZE;
+
+    private final Path dir;
+    private final String name;
+    private final FileChannel postingsChannel;
+    private final DataOutputStream postings;
+
+    // Term dictionary, written at the end
+    private final ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+    private int[] termOffsets = new int[1024];
+    private int[] postingsOffsets = new int[1024];
+    private int[] docFreqs = new int[1024];
+    private int[] maxFreqs = new int[1024];
+    private int termCount;
+
+    // Doc lengths, written at the end
+    private int[] docIds = new int[1024];
+    private int[] docLengths = new int[1024];
+    private int docCount;
+
+    // Current term
+    private byte[] term;
+    private final int[] docs = new int[BLOCK_SIZE];
+    private final int[] freqs = new int[BLOCK_SIZE];
+    private final byte[][] positions = new byte[BLOCK_SIZE][];
+    private int pending;
+    private int termDocs;
+    private int termMaxFreq;
+    private final List<long[]> blocks = new ArrayList<>();
+    private final List<byte[]> blockPositions = new ArrayList<>();
+    private int[] blockLastDoc = new int[16];
+    private int[] blockMaxFreq = new int[16];
+
+    SegmentWriter(Path dir, String name) throws IOException {
+        this.dir = dir;
+        this.name = name;
+        this.postingsChannel = FileChannel.open(dir.resolve(name + Segment.POSTINGS_EXT),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.postings = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(postingsChannel), 1 << 16));
+        postings.writeInt(Segment.POSTINGS_MAGIC);
+    }
+
+    void startTerm(byte[] term) {
+        if (this.term != null && Arrays.compareUnsigned(this.term, term) >= 0) {
+            throw new IllegalArgumentException("Terms out of order");
+        }
+        this.term = term;
+        pending = 0;
+        termDocs = 0;
+        termMaxFreq = 0;
+        blocks.clear();
+        blockPositions.clear();
+    }
+
+    /**
+     * Add the next posting of the current term; positions are delta-varint encoded
+     */
+    void addPosting(int docId, int freq, byte[] encodedPositions) {
+        if (termDocs > 0 && docId <= lastDoc()) {
+            throw new IllegalArgumentException("Doc " + docId + " out of order");
+        }
+        docs[pending] = docId;
+        freqs[pending] = freq;
+        positions[pending] = encodedPositions == null ? new byte[0] : encodedPositions;
+        pending++;
+        termDocs++;
+        termMaxFreq = Math.max(termMaxFreq, freq);
+        if (pending == BLOCK_SIZE) {
+            sealBlock();
+        }
+    }
+
+    /**
+     * Write the current term's skip table, blocks and positions
+     */
+    void finishTerm() throws IOException {
+        if (pending > 0) {
+            sealBlock();
+        }
+        if (termDocs == 0) {
+            return;
+        }
+        int blockCount = blocks.size();
+        int start = postings.size();
+        int dataStart = start + blockCount * Segment.SKIP_ENTRY_BYTES + Integer.BYTES;
+        int posStart = dataStart;
+        for (long[] block : blocks) {
+            posStart += block.length * Long.BYTES;
+        }
+
+        int data = dataStart;
+        int pos = posStart;
+        for (int b = 0; b < blockCount; b++) {
+            postings.writeInt(blockLastDoc[b]);
+            postings.writeInt(blockMaxFreq[b]);
+            postings.writeInt(data);
+            postings.writeInt(pos);
+            data += blocks.get(b).length * Long.BYTES;
+            pos += blockPositions.get(b).length;
+        }
+        postings.writeInt(pos);
+        for (long[] block : blocks) {
+            for (long word : block) {
+                postings.writeLong(word);
+            }
+        }
+        for (byte[] p : blockPositions) {
+            postings.write(p);
+        }
+        // DataOutputStream.size() saturates at Integer.MAX_VALUE
+        if (postings.size() == Integer.MAX_VALUE) {
+            throw new IOException("Segment postings exceed 2 GB");
+        }
+
+        if (termCount == termOffsets.length) {
+            termOffsets = Arrays.copyOf(termOffsets, termCount * 2);
+            postingsOffsets = Arrays.copyOf(postingsOffsets, termCount * 2);
+            docFreqs = Arrays.copyOf(docFreqs, termCount * 2);
+            maxFreqs = Arrays.copyOf(maxFreqs, termCount * 2);
+        }
+        termOffsets[termCount] = termBytes.size();
+        postingsOffsets[termCount] = start;
+        docFreqs[termCount] = termDocs;
+        maxFreqs[termCount] = termMaxFreq;
+        termCount++;
+        termBytes.write(term);
+    }
+
+    /**
+     * Record a document of this segment with its length in tokens
+     */
+    void addDoc(int docId, int length) {
+        if (docCount > 0 && docId <= docIds[docCount - 1]) {
+            throw new IllegalArgumentException("Doc " + docId + " out of order");
+        }
+        if (docCount == docIds.length) {
+            docIds = Arrays.copyOf(docIds, docCount * 2);
+            docLengths = Arrays.copyOf(docLengths, docCount * 2);
+        }
+        docIds[docCount] = docId;
+        docLengths[docCount] = length;
+        docCount++;
+    }
+
+    /**
+     * Write the dictionary and doc lengths, sync everything to disk and open the segment
+     */
+    Segment finish() throws IOException {
+        postings.flush();
+        postingsChannel.force(true);
+        postings.close();
+
+        byte[] blob = termBytes.toByteArray();
+        writeSynced(dir.resolve(name + Segment.TERMS_EXT), out -> {
+            out.writeInt(Segment.TERMS_MAGIC);
+            out.writeInt(termCount);
+            for (int i = 0; i < termCount; i++) {
+                out.writeInt(termOffsets[i]);
+                out.writeInt(postingsOffsets[i]);
+                out.writeInt(docFreqs[i]);
+                out.writeInt(maxFreqs[i]);
+            }
+            out.write(blob);
+        });
+        writeSynced(dir.resolve(name + Segment.LENGTHS_EXT), out -> {
+            out.writeInt(Segment.LENGTHS_MAGIC);
+            out.writeInt(docCount);
+            for (int i = 0; i < docCount; i++) {
+                out.writeInt(docIds[i]);
+                out.writeInt(docLengths[i]);
+            }
+        });
+        return Segment.open(dir, name);
+    }
+
+    @Override
+    public void close() throws IOException {
+        postingsChannel.close();
+    }
+
+    private int lastDoc() {
+        return pending > 0 ? docs[pending - 1] : blockLastDoc[blocks.size() - 1];
+    }
+
+    private void sealBlock() {
+        int b = blocks.size();
+        int base = b == 0 ? 0 : blockLastDoc[b - 1];
+        if (b == blockLastDoc.length) {
+            blockLastDoc = Arrays.copyOf(blockLastDoc, b * 2);
+            blockMaxFreq = Arrays.copyOf(blockMaxFreq, b * 2);
+        }
+        blocks.add(PostingsList.encode(docs, freqs, base, pending));
+        blockLastDoc[b] = docs[pending - 1];
+        int max = 0;
+        int bytes = 0;
+        for (int i = 0; i < pending; i++) {
+            max = Math.max(max, freqs[i]);
+            bytes += VarInt.size(positions[i].length) + positions[i].length;
+        }
+        blockMaxFreq[b] = max;
+
+        // Same per-document length-prefixed layout as PostingsList blocks
+        byte[] joined = new byte[bytes];
+        int n = 0;
+        for (int i = 0; i < pending; i++) {
+            n = VarInt.write(positions[i].length, joined, n);
+            System.arraycopy(positions[i], 0, joined, n, positions[i].length);
+            n += positions[i].length;
+            positions[i] = null;
+        }
+        blockPositions.add(joined);
+        pending = 0;
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static void writeSynced(Path file, Body body) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            body.write(out);
+            out.flush();
+            channel.force(true);
+        }
+    }
+}
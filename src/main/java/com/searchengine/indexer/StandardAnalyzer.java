@@ -0,0 +1,228 @@
+package com.searchengine.indexer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * Default analysis chain, each stage switched by an indexer.analyzer property:
+ *
+ * unicode: NFKC normalization, so compatibility forms such as full-width
+ * letters and ligatures match their plain spelling, and simple case folding.
+ * Letters and digits of every script are kept; with it off, only [a-z0-9] is.
+ *
+ * stemming: English words of plain a-z are reduced by {@link PorterStemmer},
+ * so "running", "runs" and "run" are one term.
+ *
+ * cjk-bigrams: Chinese and Japanese are written without spaces, so clean puts
+ * every Han, Hiragana and Katakana character into a word of its own and each
+ * run of them is indexed as overlapping two-character terms; a lone character
+ * is indexed by itself. A bigram sits at the position of its first character,
+ * so a query's bigrams line up as a phrase.
+ *
+ * Other words need at least three chars and English stop words are dropped.
+ * ASCII text is never normalized and words are handed on through one reused
+ * buffer, so ingest allocates little more than the cleaned text.
+ */
+@Component
+public class StandardAnalyzer implements Analyzer {
+
+    private static final int MIN_WORD_LENGTH = 3;
+
+    @Value("${indexer.analyzer.unicode:true}")
+    private boolean unicode;
+
+    @Value("${indexer.analyzer.stemming:true}")
+    private boolean stemming;
+
+    @Value("${indexer.analyzer.cjk-bigrams:true}")
+    private boolean cjkBigrams;
+
+    @Override
+    public String clean(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return "";
+        }
+        String text = raw;
+        if (unicode && !isAscii(raw) && !Normalizer.isNormalized(raw, Normalizer.Form.NFKC)) {
+            text = Normalizer.normalize(raw, Normalizer.Form.NFKC);
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        boolean gap = false;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); ) {
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            } else if (c >= 0x80) {
+                c = unicode ? Character.toLowerCase(Character.toUpperCase(c)) : Character.toLowerCase(c);
+            }
+
+            boolean wordChar;
+            boolean alone = false;
+            if (c < 0x80 || !unicode) {
+                wordChar = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+            } else if (Character.isLetterOrDigit(c)) {
+                wordChar = true;
+                alone = cjkBigrams && isCjk(c);
+            } else {
+                // Combining marks belong to the letter before them
+                int type = Character.getType(c);
+                wordChar = inWord && (type == Character.NON_SPACING_MARK
+                    || type == Character.COMBINING_SPACING_MARK || type == Character.ENCLOSING_MARK);
+            }
+
+            if (!wordChar) {
+                gap = true;
+                inWord = false;
+                continue;
+            }
+            if ((gap || alone) && out.length() > 0) {
+                out.append(' ');
+            }
+            out.appendCodePoint(c);
+            gap = alone;
+            inWord = true;
+        }
+        return out.toString();
+    }
+
+    @Override
+    public void forEachToken(String cleaned, TokenSink sink) {
+        if (cleaned == null) {
+            return;
+        }
+        TermBuffer term = new TermBuffer();
+        PorterStemmer stemmer = stemming ? new PorterStemmer() : null;
+        int position = 0;
+        // The previous word when it was a CJK character, and whether a bigram already covers it
+        int cjkStart = -1;
+        int cjkEnd = -1;
+        boolean cjkCovered = false;
+        int length = cleaned.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && cleaned.charAt(i) <= ' ') {
+                i++;
+            }
+            int start = i;
+            while (i < length && cleaned.charAt(i) > ' ') {
+                i++;
+            }
+            if (i == start) {
+                break;
+            }
+
+            if (cjkBigrams && isCjk(cleaned.codePointAt(start))) {
+                if (cjkStart >= 0) {
+                    term.set(cleaned, cjkStart, cjkEnd);
+                    term.append(cleaned, start, i);
+                    sink.token(term, cjkStart, i, position - 1);
+                    cjkCovered = true;
+                } else {
+                    cjkCovered = false;
+                }
+                cjkStart = start;
+                cjkEnd = i;
+                position++;
+                continue;
+            }
+            if (cjkStart >= 0 && !cjkCovered) {
+                term.set(cleaned, cjkStart, cjkEnd);
+                sink.token(term, cjkStart, cjkEnd, position - 1);
+            }
+            cjkStart = -1;
+
+            if (i - start >= MIN_WORD_LENGTH && !StopWords.contains(cleaned, start, i)) {
+                term.set(cleaned, start, i);
+                if (stemmer != null && term.isLowerAscii()) {
+                    term.length = stemmer.stem(term.chars, term.length);
+                }
+                sink.token(term, start, i, position);
+            }
+            position++;
+        }
+        if (cjkStart >= 0 && !cjkCovered) {
+            term.set(cleaned, cjkStart, cjkEnd);
+            sink.token(term, cjkStart, cjkEnd, position - 1);
+        }
+    }
+
+    @Override
+    public String id() {
+        return "standard-1" + (unicode ? "+unicode" : "") + (stemming ? "+porter" : "") + (cjkBigrams ? "+cjk" : "");
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCjk(int c) {
+        if (c < 0x2E80) {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA;
+    }
+
+    /**
+     * The term being handed to a sink; one per scan, grown as needed
+     */
+    private static final class TermBuffer implements CharSequence {
+        // One spare char: some stemming rules lengthen a word by one
+        char[] chars = new char[32];
+        int length;
+
+        void set(String text, int start, int end) {
+            length = 0;
+            append(text, start, end);
+        }
+
+        void append(String text, int start, int end) {
+            int n = end - start;
+            if (length + n + 1 > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + n + 1));
+            }
+            text.getChars(start, end, chars, length);
+            length += n;
+        }
+
+        boolean isLowerAscii() {
+            for (int i = 0; i < length; i++) {
+                if (chars[i] < 'a' || chars[i] > 'z') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
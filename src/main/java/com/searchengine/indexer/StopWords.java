@@ -0,0 +1,126 @@
+package com.searchengine.indexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Stop words in a perfect hash table, looked up straight from a range of the
+ * text being scanned. Built once by hash and displace: words are grouped into
+ * buckets, and each bucket, largest first, is given the displacement that
+ * puts all of its words into free slots. A lookup is one hash of the range,
+ * one displacement read and one slot compare, with no probing and no String.
+ */
+final class StopWords {
+
+    private static final String[] WORDS = {
+        "the", "is", "in", "at", "of", "a", "an", "and", "or", "to", "it",
+        "this", "that", "was", "for", "on", "are", "with", "as", "be",
+        "by", "from", "but", "not", "have", "he", "she", "they", "we", "you",
+        "will", "can", "been", "has", "had", "do", "does", "did", "would",
+        "could", "should", "may", "might", "must", "shall", "being", "were",
+        "about", "after", "all", "also", "any", "back", "because", "before",
+        "between", "both", "come", "day", "each", "even", "find", "first",
+        "get", "give", "go", "good", "great", "hand", "here", "him", "his",
+        "how", "into", "its", "just", "know", "last", "leave", "life", "like",
+        "little", "long", "look", "made", "make", "man", "many", "me", "men",
+        "more", "most", "much", "my", "need", "never", "new", "no", "now",
+        "off", "old", "one", "only", "other", "our", "out", "over", "own",
+        "part", "people", "place", "put", "right", "same", "say", "see",
+        "some", "still", "such", "take", "tell", "than", "their", "them",
+        "then", "there", "these", "thing", "think", "those", "through",
+        "time", "two", "under", "up", "us", "use", "very", "want", "way",
+        "well", "what", "when", "where", "which", "while", "who", "why",
+        "work", "world", "year", "your"
+    };
+
+    private static final int BUCKET_BITS = 6;
+    private static final int SLOT_BITS = 8;
+    private static final int[] DISPLACEMENTS = new int[1 << BUCKET_BITS];
+    private static final String[] SLOTS = new String[1 << SLOT_BITS];
+    private static final int MAX_LENGTH;
+
+    static {
+        List<List<String>> buckets = new ArrayList<>();
+        for (int b = 0; b < DISPLACEMENTS.length; b++) {
+            buckets.add(new ArrayList<>());
+        }
+        int maxLength = 0;
+        for (String word : WORDS) {
+            buckets.get(bucket(hash(word, 0, word.length()))).add(word);
+            maxLength = Math.max(maxLength, word.length());
+        }
+        MAX_LENGTH = maxLength;
+
+        Integer[] order = new Integer[DISPLACEMENTS.length];
+        Arrays.setAll(order, b -> b);
+        Arrays.sort(order, Comparator.comparingInt((Integer b) -> buckets.get(b).size()).reversed());
+        int[] placed = new int[WORDS.length];
+        for (int b : order) {
+            List<String> words = buckets.get(b);
+            for (int d = 0; ; d++) {
+                int n = 0;
+                for (String word : words) {
+                    int slot = slot(hash(word, 0, word.length()), d);
+                    if (SLOTS[slot] != null || Arrays.stream(placed, 0, n).anyMatch(s -> s == slot)) {
+                        break;
+                    }
+                    placed[n++] = slot;
+                }
+                if (n == words.size()) {
+                    for (int i = 0; i < n; i++) {
+                        SLOTS[placed[i]] = words.get(i);
+                    }
+                    DISPLACEMENTS[b] = d;
+                    break;
+                }
+            }
+        }
+    }
+
+    private StopWords() {
+    }
+
+    /**
+     * True if text[start, end) is a stop word
+     */
+    static boolean contains(String text, int start, int end) {
+        int length = end - start;
+        if (length > MAX_LENGTH) {
+            return false;
+        }
+        int h = hash(text, start, end);
+        String word = SLOTS[slot(h, DISPLACEMENTS[bucket(h)])];
+        return word != null && word.length() == length && text.regionMatches(start, word, 0, length);
+    }
+
+    static boolean contains(String word) {
+        return contains(word, 0, word.length());
+    }
+
+    private static int hash(String text, int start, int end) {
+        int h = 0x811C9DC5;
+        for (int i = start; i < end; i++) {
+            h = (h ^ text.charAt(i)) * 0x01000193;
+        }
+        return h;
+    }
+
+    private static int bucket(int h) {
+        return mix(h) >>> (Integer.SIZE - BUCKET_BITS);
+    }
+
+    private static int slot(int h, int displacement) {
+        return mix(h + (displacement + 1) * 0x9E3779B9) >>> (Integer.SIZE - SLOT_BITS);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
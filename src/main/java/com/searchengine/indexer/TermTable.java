@@ -0,0 +1,158 @@
+package com.searchengine.indexer;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Distinct terms of one text with the positions they occur at, keyed by the
+ * chars of each occurrence so that a repeated term is counted without
+ * creating a String for it. Kept per thread and cleared between texts, so
+ * once warm only a term's first occurrence and the final position arrays
+ * allocate.
+ */
+final class TermTable {
+
+    private static final int INITIAL_SLOTS = 256;
+    // A table grown by one huge text is dropped rather than kept for the thread
+    private static final int MAX_RETAINED_SLOTS = 1 << 16;
+
+    // Entry index + 1 per slot, 0 when empty; open addressing with linear probing
+    private int[] slots = new int[INITIAL_SLOTS];
+    private String[] terms = new String[INITIAL_SLOTS / 2];
+    private int[] hashes = new int[INITIAL_SLOTS / 2];
+    private int[] counts = new int[INITIAL_SLOTS / 2];
+    private int size;
+
+    // Every occurrence in text order, as (entry, position)
+    private int[] occurrenceTerms = new int[1024];
+    private int[] occurrencePositions = new int[1024];
+    private int occurrences;
+
+    void clear() {
+        if (slots.length > MAX_RETAINED_SLOTS) {
+            slots = new int[INITIAL_SLOTS];
+            terms = new String[INITIAL_SLOTS / 2];
+            hashes = new int[INITIAL_SLOTS / 2];
+            counts = new int[INITIAL_SLOTS / 2];
+            occurrenceTerms = new int[1024];
+            occurrencePositions = new int[1024];
+        } else {
+            Arrays.fill(slots, 0);
+            Arrays.fill(terms, 0, size, null);
+        }
+        size = 0;
+        occurrences = 0;
+    }
+
+    /**
+     * Record an occurrence of a term at a word position
+     */
+    void add(CharSequence term, int position) {
+        int length = term.length();
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + term.charAt(i);
+        }
+        int mask = slots.length - 1;
+        int slot = (h ^ h >>> 16) & mask;
+        int entry;
+        while (true) {
+            entry = slots[slot] - 1;
+            if (entry < 0) {
+                entry = insert(term.toString(), h, slot);
+                break;
+            }
+            if (hashes[entry] == h && contentEquals(terms[entry], term)) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        counts[entry]++;
+
+        if (occurrences == occurrenceTerms.length) {
+            occurrenceTerms = Arrays.copyOf(occurrenceTerms, occurrences * 2);
+            occurrencePositions = Arrays.copyOf(occurrencePositions, occurrences * 2);
+        }
+        occurrenceTerms[occurrences] = entry;
+        occurrencePositions[occurrences++] = position;
+    }
+
+    private static boolean contentEquals(String a, CharSequence b) {
+        int length = a.length();
+        if (length != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int insert(String term, int h, int slot) {
+        if (size == terms.length) {
+            terms = Arrays.copyOf(terms, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        int entry = size++;
+        terms[entry] = term;
+        hashes[entry] = h;
+        counts[entry] = 0;
+        slots[slot] = entry + 1;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return entry;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int h = hashes[entry];
+            int slot = (h ^ h >>> 16) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    /**
+     * Number of occurrences recorded, repeats included
+     */
+    int occurrences() {
+        return occurrences;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String term(int entry) {
+        return terms[entry];
+    }
+
+    /**
+     * Term → ascending positions, in order of first occurrence
+     */
+    Map<String, int[]> positions() {
+        int[][] lists = new int[size][];
+        for (int entry = 0; entry < size; entry++) {
+            lists[entry] = new int[counts[entry]];
+        }
+        int[] filled = new int[size];
+        for (int i = 0; i < occurrences; i++) {
+            int entry = occurrenceTerms[i];
+            lists[entry][filled[entry]++] = occurrencePositions[i];
+        }
+        Map<String, int[]> positions = new LinkedHashMap<>((int) (size / 0.75f) + 1);
+        for (int entry = 0; entry < size; entry++) {
+            positions.put(terms[entry], lists[entry]);
+        }
+        return positions;
+    }
+}
@@ -1,70 +1,118 @@
 package com.searchengine.indexer;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Map;
 
+/**
+ * Text analysis for indexing and queries. Cleaning and term extraction are
+ * delegated to the configured {@link Analyzer}, so documents and queries go
+ * through the same chain; counts and positions are collected in a per-thread
+ * {@link TermTable}, so a repeated term never becomes a String of its own.
+ */
 @Component
 public class TextProcessor {
-    
-    private static final Set<String> STOP_WORDS = Set.of(
-        "the", "is", "in", "at", "of", "a", "an", "and", "or", "to", "it",
-        "this", "that", "was", "for", "on", "are", "with", "as", "be",
-        "by", "from", "but", "not", "have", "he", "she", "they", "we", "you",
-        "will", "can", "been", "has", "had", "do", "does", "did", "would",
-        "could", "should", "may", "might", "must", "shall", "being", "were",
-        "about", "after", "all", "also", "any", "back", "because", "before",
-        "between", "both", "come", "day", "each", "even", "find", "first",
-        "get", "give", "go", "good", "great", "hand", "here", "him", "his",
-        "how", "into", "its", "just", "know", "last", "leave", "life", "like",
-        "little", "long", "look", "made", "make", "man", "many", "me", "men",
-        "more", "most", "much", "my", "need", "never", "new", "no", "now",
-        "off", "old", "one", "only", "other", "our", "out", "over", "own",
-        "part", "people", "place", "put", "right", "same", "say", "see",
-        "some", "still", "such", "take", "tell", "than", "their", "them",
-        "then", "there", "these", "thing", "think", "those", "through",
-        "time", "two", "under", "up", "us", "use", "very", "want", "way",
-        "well", "what", "when", "where", "which", "while", "who", "why",
-        "work", "world", "year", "your"
-    );
+
+    private static final int SUMMARY_CHARS = 600;
+
+    private static final ThreadLocal<TermTable> TERM_TABLES = ThreadLocal.withInitial(TermTable::new);
+
+    @Autowired
+    private Analyzer analyzer;
 
     /**
-     * Clean the raw text by converting to lowercase and removing special characters
+     * Clean raw text into the single-spaced words that are stored and indexed
      */
     public String clean(String raw) {
-        if (raw == null || raw.isEmpty()) {
-            return "";
-        }
-        return raw.toLowerCase()
-                  .replaceAll("[^a-z0-9\\s]", " ")
-                  .replaceAll("\\s+", " ")
-                  .trim();
+        return analyzer.clean(raw);
+    }
+
+    /**
+     * Hand every term of cleaned text to the sink, with the char range of the
+     * word it came from and its word position
+     */
+    public void forEachToken(String cleaned, Analyzer.TokenSink sink) {
+        analyzer.forEachToken(cleaned, sink);
     }
 
     /**
-     * Tokenize the cleaned text by filtering out stop words and short words
+     * Id of the analysis settings, stored with each document
+     */
+    public String analyzerId() {
+        return analyzer.id();
+    }
+
+    /**
+     * Distinct terms of the cleaned text, space-separated
      */
     public String tokenize(String cleaned) {
+        return String.join(" ", terms(cleaned));
+    }
+
+    /**
+     * The stored token string of analyzed text: its distinct terms in order of first occurrence
+     */
+    public String tokenize(AnalyzedText analyzed) {
+        return String.join(" ", analyzed.getPositions().keySet());
+    }
+
+    /**
+     * Distinct indexable terms of cleaned text, in order of first occurrence
+     */
+    public List<String> terms(String cleaned) {
+        TermTable table = TERM_TABLES.get();
+        table.clear();
+        forEachToken(cleaned, (term, start, end, position) -> table.add(term, position));
+        List<String> terms = new ArrayList<>(table.size());
+        for (int entry = 0; entry < table.size(); entry++) {
+            terms.add(table.term(entry));
+        }
+        return terms;
+    }
+
+    /**
+     * Analyze cleaned text for indexing: unlike {@link #tokenize}, repeats are kept
+     * and every term gets the word positions it occurs at.
+     */
+    public AnalyzedText analyze(String cleaned) {
         if (cleaned == null || cleaned.isEmpty()) {
-            return "";
+            return new AnalyzedText(Map.of(), 0);
+        }
+        TermTable table = TERM_TABLES.get();
+        table.clear();
+        forEachToken(cleaned, (term, start, end, position) -> table.add(term, position));
+        return new AnalyzedText(table.positions(), table.occurrences());
+    }
+
+    /**
+     * Start of the cleaned text, cut at a word boundary, to be stored
+     * as the document's summary for result snippets
+     */
+    public String summarize(String cleaned) {
+        if (cleaned == null || cleaned.length() <= SUMMARY_CHARS) {
+            return cleaned == null ? "" : cleaned;
         }
-        return Arrays.stream(cleaned.split("\\s+"))
-            .filter(w -> w.length() > 2)
-            .filter(w -> !STOP_WORDS.contains(w))
-            .distinct()
-            .collect(Collectors.joining(" "));
+        int cut = cleaned.lastIndexOf(' ', SUMMARY_CHARS);
+        return cleaned.substring(0, cut > 0 ? cut : SUMMARY_CHARS);
     }
 
     /**
-     * Convert tokenized string to a list of tokens
+     * SHA-256 of the cleaned text as hex, stored to detect unchanged pages on re-crawl
      */
-    public List<String> toList(String tokens) {
-        if (tokens == null || tokens.isEmpty()) {
-            return List.of();
+    public String contentHash(String cleaned) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((cleaned == null ? "" : cleaned).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
-        return Arrays.asList(tokens.split("\\s+"));
     }
 }
@@ -0,0 +1,59 @@
+package com.searchengine.indexer;
+
+import java.util.List;
+
+/**
+ * Picks segments to merge so that the number of segments a query has to visit
+ * stays logarithmic in the size of the index.
+ *
+ * Segments are grouped into tiers by document count: tier 0 holds segments
+ * below floorDocs × segmentsPerTier, and each tier above is segmentsPerTier
+ * times larger. Once segmentsPerTier adjacent segments share a tier they are
+ * merged into one of the next tier. Only adjacent runs are merged, so the
+ * segment list stays ordered oldest to newest, which is what lets a newer
+ * segment's posting win over an older one for a re-indexed document. Merges
+ * that would produce more than maxMergedBytes are skipped, keeping every
+ * segment well inside what a single mapping can hold.
+ */
+final class TieredMergePolicy {
+
+    private final int segmentsPerTier;
+    private final long floorDocs;
+    private final long maxMergedBytes;
+
+    TieredMergePolicy(int segmentsPerTier, long floorDocs, long maxMergedBytes) {
+        this.segmentsPerTier = Math.max(2, segmentsPerTier);
+        this.floorDocs = Math.max(1, floorDocs);
+        this.maxMergedBytes = maxMergedBytes;
+    }
+
+    /**
+     * The smallest adjacent run of segments due for merging, or an empty list
+     */
+    List<Segment> findMerge(List<Segment> segments) {
+        int best = -1;
+        long bestBytes = Long.MAX_VALUE;
+        for (int i = 0; i + segmentsPerTier <= segments.size(); i++) {
+            int tier = tier(segments.get(i));
+            long bytes = 0;
+            boolean sameTier = true;
+            for (int j = i; j < i + segmentsPerTier && sameTier; j++) {
+                sameTier = tier(segments.get(j)) == tier;
+                bytes += segments.get(j).sizeInBytes();
+            }
+            if (sameTier && bytes <= maxMergedBytes && bytes < bestBytes) {
+                best = i;
+                bestBytes = bytes;
+            }
+        }
+        return best < 0 ? List.of() : List.copyOf(segments.subList(best, best + segmentsPerTier));
+    }
+
+    private int tier(Segment segment) {
+        int tier = 0;
+        for (long limit = floorDocs * segmentsPerTier; segment.docCount() >= limit; limit *= segmentsPerTier) {
+            tier++;
+        }
+        return tier;
+    }
+}
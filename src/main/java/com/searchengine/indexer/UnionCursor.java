@@ -0,0 +1,112 @@
+package com.searchengine.indexer;
+
+/**
+ * One term's postings across several segments and in-memory buffers, merged
+ * by doc id. Sub-cursors are ordered oldest first; if more than one holds the
+ * same document (it was re-indexed), the newest one's posting is used.
+ *
+ * The block-max bound is the tightest one that holds for all sub-cursors:
+ * the region ends at the earliest sub-block end, and its max frequency is the
+ * largest of the sub-blocks' maxima.
+ */
+final class UnionCursor implements PostingsCursor {
+
+    private final PostingsCursor[] subs;
+    private final int cost;
+    private final int maxFreq;
+    private PostingsCursor current;
+    private int doc = -1;
+
+    UnionCursor(PostingsCursor[] subs) {
+        this.subs = subs;
+        int c = 0;
+        int m = 0;
+        for (PostingsCursor sub : subs) {
+            c += sub.cost();
+            m = Math.max(m, sub.maxFreq());
+        }
+        this.cost = c;
+        this.maxFreq = m;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        if (doc == NO_MORE_DOCS) {
+            return doc;
+        }
+        for (PostingsCursor sub : subs) {
+            if (sub.docId() == doc) {
+                sub.nextDoc();
+            }
+        }
+        return pick();
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc == NO_MORE_DOCS) {
+            return doc;
+        }
+        for (PostingsCursor sub : subs) {
+            if (sub.docId() < target) {
+                sub.advance(target);
+            }
+        }
+        return pick();
+    }
+
+    private int pick() {
+        int min = NO_MORE_DOCS;
+        for (PostingsCursor sub : subs) {
+            int d = sub.docId();
+            if (d <= min) {
+                min = d;
+                current = sub;
+            }
+        }
+        return doc = min;
+    }
+
+    @Override
+    public int freq() {
+        return current.freq();
+    }
+
+    @Override
+    public int cost() {
+        return cost;
+    }
+
+    @Override
+    public int nextPosition() {
+        return current.nextPosition();
+    }
+
+    @Override
+    public int maxFreq() {
+        return maxFreq;
+    }
+
+    @Override
+    public int advanceShallow(int target) {
+        int upTo = NO_MORE_DOCS;
+        for (PostingsCursor sub : subs) {
+            upTo = Math.min(upTo, sub.advanceShallow(target));
+        }
+        return upTo;
+    }
+
+    @Override
+    public int blockMaxFreq() {
+        int max = 0;
+        for (PostingsCursor sub : subs) {
+            max = Math.max(max, sub.blockMaxFreq());
+        }
+        return max;
+    }
+}
@@ -0,0 +1,91 @@
+package com.searchengine.indexer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * LEB128-style variable-length ints, used for delta-encoded position lists.
+ */
+final class VarInt {
+
+    private VarInt() {
+    }
+
+    /**
+     * Delta-encode sorted positions as varints
+     */
+    static byte[] encodeDeltas(int[] values, int count) {
+        byte[] out = new byte[count * 5];
+        int n = 0;
+        int prev = 0;
+        for (int i = 0; i < count; i++) {
+            n = write(values[i] - prev, out, n);
+            prev = values[i];
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Decode a delta-encoded varint list written by {@link #encodeDeltas}
+     */
+    static int[] decodeDeltas(byte[] data) {
+        int[] out = new int[data.length];
+        int n = 0;
+        int prev = 0;
+        int[] pos = {0};
+        while (pos[0] < data.length) {
+            prev += read(data, pos);
+            out[n++] = prev;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Write one varint at offset, returning the offset after it
+     */
+    static int write(int value, byte[] dst, int offset) {
+        while ((value & ~0x7F) != 0) {
+            dst[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dst[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Read one varint at pos[0], advancing pos[0] past it
+     */
+    static int read(byte[] src, int[] pos) {
+        int p = pos[0];
+        int b = src[p++];
+        int value = b & 0x7F;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            b = src[p++];
+            value |= (b & 0x7F) << shift;
+        }
+        pos[0] = p;
+        return value;
+    }
+
+    /**
+     * Read one varint at absolute index pos[0] of a buffer, advancing pos[0] past it
+     */
+    static int read(ByteBuffer src, int[] pos) {
+        int p = pos[0];
+        int b = src.get(p++);
+        int value = b & 0x7F;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            b = src.get(p++);
+            value |= (b & 0x7F) << shift;
+        }
+        pos[0] = p;
+        return value;
+    }
+
+    /**
+     * Bytes needed to write value as a varint
+     */
+    static int size(int value) {
+        return value == 0 ? 1 : (38 - Integer.numberOfLeadingZeros(value)) / 7;
+    }
+}
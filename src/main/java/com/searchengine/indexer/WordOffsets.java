@@ -0,0 +1,97 @@
+package com.searchengine.indexer;
+
+import java.util.Arrays;
+
+/**
+ * Sparse map from word positions to character offsets in a document's
+ * cleaned text: the offset of every STRIDE-th word, delta-varint encoded.
+ * Together with the term positions in the postings this locates a passage
+ * of the stored text without re-tokenizing it; at most STRIDE - 1 words
+ * have to be skipped from the nearest checkpoint.
+ *
+ * Offsets count code points, as SQL's SUBSTRING does on PostgreSQL, so a
+ * slice can be read by them even when the text holds supplementary
+ * characters. Offsets stored before that counted UTF-16 chars; they lack
+ * the leading format byte and are reported by {@link #countsChars}.
+ */
+public final class WordOffsets {
+
+    public static final int STRIDE = 16;
+
+    // Leads offsets that count code points; char offsets start with word 0 at offset 0
+    private static final byte CODE_POINTS = 1;
+
+    private WordOffsets() {
+    }
+
+    /**
+     * Encode the checkpoints of single-spaced cleaned text
+     */
+    public static byte[] build(String cleaned) {
+        if (cleaned == null || cleaned.isEmpty()) {
+            return new byte[0];
+        }
+        int[] offsets = new int[16];
+        int n = 0;
+        int word = 0;
+        int codePoint = 0;
+        for (int i = 0; i < cleaned.length(); i++) {
+            char c = cleaned.charAt(i);
+            if (Character.isLowSurrogate(c) && i > 0 && Character.isHighSurrogate(cleaned.charAt(i - 1))) {
+                continue;
+            }
+            if (c != ' ' && (i == 0 || cleaned.charAt(i - 1) == ' ')) {
+                if (word % STRIDE == 0) {
+                    if (n == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, n * 2);
+                    }
+                    offsets[n++] = codePoint;
+                }
+                word++;
+            }
+            codePoint++;
+        }
+        byte[] deltas = VarInt.encodeDeltas(offsets, n);
+        byte[] index = new byte[deltas.length + 1];
+        index[0] = CODE_POINTS;
+        System.arraycopy(deltas, 0, index, 1, deltas.length);
+        return index;
+    }
+
+    /**
+     * True for offsets stored before they counted code points, which are off
+     * by one per supplementary character before them
+     */
+    public static boolean countsChars(byte[] index) {
+        return index.length > 0 && index[0] != CODE_POINTS;
+    }
+
+    /**
+     * Offset of word checkpoint * STRIDE, or -1 if the text has
+     * fewer words than that
+     */
+    public static int checkpoint(byte[] index, int checkpoint) {
+        int[] pos = {countsChars(index) ? 0 : 1};
+        int offset = 0;
+        for (int k = 0; k <= checkpoint; k++) {
+            if (pos[0] >= index.length) {
+                return -1;
+            }
+            offset += VarInt.read(index, pos);
+        }
+        return offset;
+    }
+
+    /**
+     * Number of checkpoints; the text has between (n - 1) * STRIDE + 1 and n * STRIDE words
+     */
+    public static int checkpoints(byte[] index) {
+        int n = 0;
+        for (int i = countsChars(index) ? 0 : 1; i < index.length; i++) {
+            if ((index[i] & 0x80) == 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
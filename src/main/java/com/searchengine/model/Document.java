@@ -28,6 +28,41 @@ public class Document implements Serializable {
     
     @Column(columnDefinition = "TEXT")
     private String tokens;
+
+    /** Number of tokens, used as BM25 document length */
+    private Integer docLength;
+
+    /** Start of the cleaned text, used for search result snippets */
+    @Column(length = 1000)
+    private String summary;
+
+    /** Character offsets of every 16th word of rawContent, delta-varint encoded */
+    @Column(length = 100_000)
+    private byte[] wordOffsets;
+
+    /** SHA-256 of the cleaned text, so a re-crawl can tell whether the page changed */
+    @Column(length = 64)
+    private String contentHash;
+
+    /** 64-bit SimHash of the indexed terms, for near-duplicate detection */
+    private Long simhash;
+
+    /**
+     * Id of the document this page is a near duplicate of. Duplicates keep only
+     * their URL and fingerprints; they have no content or postings of their own.
+     */
+    private Long duplicateOf;
+
+    /**
+     * False until the document's inverted index rows are committed, which sets
+     * it in the same transaction; null for near duplicates and for documents
+     * stored before the flag existed
+     */
+    private Boolean indexed;
+
+    /** Id of the analysis settings the terms were produced with; see Analyzer#id */
+    @Column(length = 100)
+    private String analyzer;
     
     private LocalDateTime crawledAt;
 }
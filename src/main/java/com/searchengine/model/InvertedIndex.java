@@ -13,7 +13,8 @@ import lombok.NoArgsConstructor;
 public class InvertedIndex {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inverted_index_seq")
+    @SequenceGenerator(name = "inverted_index_seq", sequenceName = "inverted_index_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, length = 255)
@@ -25,4 +26,8 @@ public class InvertedIndex {
     
     @Column(columnDefinition = "INT DEFAULT 1")
     private int freq = 1;
+
+    /** Word positions of the token in the document, delta-varint encoded */
+    @Column(length = 1_000_000)
+    private byte[] positions;
 }
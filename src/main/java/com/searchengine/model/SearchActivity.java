@@ -0,0 +1,30 @@
+package com.searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Searches and clicks that happened on one day. Filled by the analytics
+ * flush, so the dashboard timeline reads one row per day instead of
+ * scanning every query.
+ */
+@Entity
+@Table(name = "search_activity")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchActivity {
+
+    @Id
+    private LocalDate bucketDate;
+
+    @Column(columnDefinition = "BIGINT DEFAULT 0")
+    private Long searches = 0L;
+
+    @Column(columnDefinition = "BIGINT DEFAULT 0")
+    private Long clicks = 0L;
+}
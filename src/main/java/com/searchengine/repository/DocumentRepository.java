@@ -1,15 +1,178 @@
 package com.searchengine.repository;
 
 import com.searchengine.model.Document;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
     
     boolean existsByUrl(String url);
-    
-    List<Document> findAllByIdIn(List<Long> ids);
+
+    /** What a re-crawl of the URL needs to know about the stored copy */
+    @Query("SELECT d.id AS id, d.crawledAt AS crawledAt, d.contentHash AS contentHash, d.duplicateOf AS duplicateOf "
+         + "FROM Document d WHERE d.url = :url")
+    Optional<CrawlStateRow> findCrawlStateByUrl(@Param("url") String url);
+
+    /** Distinct indexed terms of a document, space-separated */
+    @Query("SELECT d.tokens FROM Document d WHERE d.id = :id")
+    String findTokensById(@Param("id") Long id);
+
+    /** URLs last crawled before the given time, least recently crawled first */
+    @Query("SELECT d.id AS id, d.url AS url FROM Document d WHERE d.crawledAt < :before ORDER BY d.crawledAt")
+    List<UrlRow> findStaleUrls(@Param("before") LocalDateTime before, Pageable pageable);
+
+    /**
+     * Canonical documents analyzed under other analysis settings than the given
+     * ones, with their stored text, in id order
+     */
+    @Query("SELECT d.id AS id, d.crawledAt AS crawledAt, d.contentHash AS contentHash, d.duplicateOf AS duplicateOf, "
+         + "d.url AS url, d.title AS title, d.rawContent AS rawContent FROM Document d "
+         + "WHERE (d.analyzer IS NULL OR d.analyzer <> :analyzer) AND d.duplicateOf IS NULL "
+         + "AND d.id > :afterId ORDER BY d.id")
+    List<StoredContentRow> findDocsToReanalyzeAfter(@Param("afterId") long afterId, @Param("analyzer") String analyzer,
+                                                    Pageable pageable);
+
+    /** Document lengths in id order, for keyset-paged loading; near duplicates are not part of the corpus */
+    @Query("SELECT d.id AS id, d.docLength AS docLength FROM Document d "
+         + "WHERE d.duplicateOf IS NULL AND d.id > :afterId ORDER BY d.id")
+    List<DocLengthRow> findDocLengthsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    /** Stored URLs in id order, for keyset-paged loading */
+    @Query("SELECT d.id AS id, d.url AS url FROM Document d WHERE d.id > :afterId ORDER BY d.id")
+    List<UrlRow> findUrlsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    /** Document titles in id order, for keyset-paged loading */
+    @Query("SELECT d.id AS id, d.title AS title FROM Document d "
+         + "WHERE d.duplicateOf IS NULL AND d.id > :afterId ORDER BY d.id")
+    List<TitleRow> findTitlesAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    /** Fingerprints of canonical documents in id order, for keyset-paged loading */
+    @Query("SELECT d.id AS id, d.simhash AS simhash FROM Document d "
+         + "WHERE d.simhash IS NOT NULL AND d.duplicateOf IS NULL AND d.id > :afterId ORDER BY d.id")
+    List<FingerprintRow> findFingerprintsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    /** What a search hit shows, without loading the TEXT columns */
+    @Query("SELECT d.id AS id, d.url AS url, d.title AS title, d.crawledAt AS crawledAt, "
+         + "d.docLength AS docLength, d.summary AS summary, d.wordOffsets AS wordOffsets "
+         + "FROM Document d WHERE d.id IN :ids")
+    List<ResultRow> findResultRowsByIdIn(@Param("ids") List<Long> ids);
+
+    /** Documents stored before summaries and word offsets were tracked, in id order */
+    @Query("SELECT d.id AS id, d.rawContent AS rawContent FROM Document d "
+         + "WHERE (d.summary IS NULL OR d.wordOffsets IS NULL) AND d.duplicateOf IS NULL "
+         + "AND d.id > :afterId ORDER BY d.id")
+    List<DocContentRow> findDocsWithoutSnippetDataAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    /** Stored word offsets in id order, for keyset-paged scanning */
+    @Query("SELECT d.id AS id, d.wordOffsets AS wordOffsets FROM Document d "
+         + "WHERE d.wordOffsets IS NOT NULL AND d.id > :afterId ORDER BY d.id")
+    List<WordOffsetsRow> findWordOffsetsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    /** Stored (cleaned) text of a document */
+    @Query("SELECT d.rawContent FROM Document d WHERE d.id = :id")
+    String findRawContentById(@Param("id") Long id);
+
+    /** Documents stored before doc_length was tracked */
+    @Query("SELECT d.id AS id, d.tokens AS tokens FROM Document d WHERE d.docLength IS NULL AND d.duplicateOf IS NULL")
+    List<DocTokensRow> findDocsWithoutLength();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.docLength = :length WHERE d.id = :id")
+    void updateDocLength(@Param("id") Long id, @Param("length") int length);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.summary = :summary, d.wordOffsets = :wordOffsets WHERE d.id = :id")
+    void updateSnippetData(@Param("id") Long id, @Param("summary") String summary,
+                           @Param("wordOffsets") byte[] wordOffsets);
+
+    /** Documents whose inverted index rows were never committed, in id order */
+    @Query("SELECT d FROM Document d WHERE d.indexed = false AND d.id > :afterId ORDER BY d.id")
+    List<Document> findUnindexedAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    /** Record that the documents' inverted index rows are written; joins the writing transaction */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.indexed = true WHERE d.id IN :ids")
+    void markIndexed(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.crawledAt = :crawledAt WHERE d.id = :id")
+    void updateCrawledAt(@Param("id") Long id, @Param("crawledAt") LocalDateTime crawledAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.url = :url WHERE d.id = :id")
+    void updateUrl(@Param("id") Long id, @Param("url") String url);
+
+    interface DocLengthRow {
+        Long getId();
+        Integer getDocLength();
+    }
+
+    interface UrlRow {
+        Long getId();
+        String getUrl();
+    }
+
+    interface TitleRow {
+        Long getId();
+        String getTitle();
+    }
+
+    interface DocTokensRow {
+        Long getId();
+        String getTokens();
+    }
+
+    interface ResultRow {
+        Long getId();
+        String getUrl();
+        String getTitle();
+        LocalDateTime getCrawledAt();
+        Integer getDocLength();
+        String getSummary();
+        byte[] getWordOffsets();
+    }
+
+    interface CrawlStateRow {
+        Long getId();
+        LocalDateTime getCrawledAt();
+        String getContentHash();
+        Long getDuplicateOf();
+    }
+
+    interface StoredContentRow extends CrawlStateRow {
+        String getUrl();
+        String getTitle();
+        String getRawContent();
+    }
+
+    interface FingerprintRow {
+        Long getId();
+        Long getSimhash();
+    }
+
+    interface WordOffsetsRow {
+        Long getId();
+        byte[] getWordOffsets();
+    }
+
+    interface DocContentRow {
+        Long getId();
+        String getRawContent();
+    }
 }
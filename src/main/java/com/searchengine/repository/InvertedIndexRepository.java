@@ -2,9 +2,11 @@ package com.searchengine.repository;
 
 import com.searchengine.model.InvertedIndex;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -16,4 +18,27 @@ public interface InvertedIndexRepository extends JpaRepository<InvertedIndex, Lo
     
     @Query("SELECT i FROM InvertedIndex i JOIN FETCH i.document WHERE i.token IN :tokens")
     List<InvertedIndex> findByTokenIn(@Param("tokens") List<String> tokens);
+
+    /** Highest document id that has postings (0 when the index is empty) */
+    @Query("SELECT COALESCE(MAX(i.document.id), 0) FROM InvertedIndex i")
+    Long findMaxDocId();
+
+    /** Postings for documents in (fromId, toId], ordered by document id — no entity loading */
+    @Query("SELECT i.token AS token, i.document.id AS docId, i.freq AS freq, i.positions AS positions "
+         + "FROM InvertedIndex i WHERE i.document.id > :fromId AND i.document.id <= :toId ORDER BY i.document.id")
+    List<PostingRow> findPostingsInDocRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /** Remove every posting of a document, ahead of deleting the document itself */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM InvertedIndex i WHERE i.document.id = :docId")
+    int deleteByDocId(@Param("docId") long docId);
+
+    /** Lightweight projection of one inverted_index row */
+    interface PostingRow {
+        String getToken();
+        Long getDocId();
+        int getFreq();
+        byte[] getPositions();
+    }
 }
@@ -0,0 +1,15 @@
+package com.searchengine.repository;
+
+import com.searchengine.model.SearchActivity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SearchActivityRepository extends JpaRepository<SearchActivity, LocalDate> {
+
+    /** Daily buckets from a date on, oldest first (for timeline chart) */
+    List<SearchActivity> findByBucketDateGreaterThanEqualOrderByBucketDate(LocalDate from);
+}
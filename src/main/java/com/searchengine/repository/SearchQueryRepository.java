@@ -1,8 +1,10 @@
 package com.searchengine.repository;
 
 import com.searchengine.model.SearchQuery;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,8 +19,9 @@ public interface SearchQueryRepository extends JpaRepository<SearchQuery, Long>
     
     List<SearchQuery> findTop10ByOrderByClicksDesc();
 
-    /** All queries ordered by most recent first (for timeline chart) */
-    List<SearchQuery> findAllByOrderByLastSearchedAtDesc();
+    /** Query strings and counts in id order, for keyset-paged loading */
+    @Query("SELECT q.id AS id, q.query AS query, q.count AS count FROM SearchQuery q WHERE q.id > :afterId ORDER BY q.id")
+    List<QueryCountRow> findQueryCountsAfter(@Param("afterId") long afterId, Pageable pageable);
 
     /** Total sum of all search counts */
     @Query("SELECT COALESCE(SUM(q.count), 0) FROM SearchQuery q")
@@ -27,4 +30,10 @@ public interface SearchQueryRepository extends JpaRepository<SearchQuery, Long>
     /** Total sum of all clicks */
     @Query("SELECT COALESCE(SUM(q.clicks), 0) FROM SearchQuery q")
     Long sumAllClicks();
+
+    interface QueryCountRow {
+        Long getId();
+        String getQuery();
+        Long getCount();
+    }
 }
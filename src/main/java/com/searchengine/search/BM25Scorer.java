@@ -1,91 +1,411 @@
 package com.searchengine.search;
 
-import com.searchengine.model.InvertedIndex;
-import com.searchengine.repository.DocumentRepository;
-import com.searchengine.repository.InvertedIndexRepository;
+import com.searchengine.indexer.CorpusStats;
+import com.searchengine.indexer.PostingsCursor;
+import com.searchengine.indexer.PostingsIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 @Component
-@Transactional(readOnly = true)
 public class BM25Scorer {
-    
+
     // BM25 parameters
     private static final double K1 = 1.5;  // Term frequency saturation
     private static final double B = 0.75;  // Length normalization
 
+    // Above this many postings the total hit count is estimated instead of counted
+    private static final long EXACT_COUNT_LIMIT = 50_000;
+
+    // Candidates beyond k that are re-scored with the proximity boost
+    private static final int PROXIMITY_RERANK_DEPTH = 100;
+
+    // Score multiplier for query terms that occur right next to each other
+    private static final double PROXIMITY_BOOST = 0.5;
+
     @Autowired
-    private InvertedIndexRepository indexRepo;
-    
+    private PostingsIndex postingsIndex;
+
     @Autowired
-    private DocumentRepository docRepo;
+    private CorpusStats corpusStats;
 
     /**
-     * Score documents using BM25 ranking algorithm
-     * Returns a list of document IDs sorted by relevance (highest first)
+     * Return the k best documents for the query.
+     *
+     * Plain queries run block-max WAND over the term postings. Queries with
+     * quoted phrases walk the conjunction of the phrase terms and keep only
+     * documents where every phrase matches positionally. In both cases the
+     * best k + PROXIMITY_RERANK_DEPTH hits are then boosted by how close
+     * together the query terms occur, and the top k are returned.
      */
-    public List<Long> score(List<String> queryTokens) {
-        if (queryTokens == null || queryTokens.isEmpty()) {
-            return List.of();
+    public TopDocs topK(ParsedQuery query, int k) {
+        if (query == null || query.isEmpty() || k <= 0) {
+            return TopDocs.EMPTY;
         }
-        
-        long totalDocs = docRepo.count();
+
+        long totalDocs = corpusStats.docCount();
         if (totalDocs == 0) {
-            return List.of();
-        }
-        
-        // Calculate average document length
-        double avgDocLen = docRepo.findAll().stream()
-            .filter(d -> d.getTokens() != null && !d.getTokens().isEmpty())
-            .mapToInt(d -> d.getTokens().split("\\s+").length)
-            .average()
-            .orElse(1.0);
-
-        Map<Long, Double> scores = new HashMap<>();
-
-        for (String term : queryTokens) {
-            List<InvertedIndex> entries = indexRepo.findByToken(term);
-            int df = entries.size();  // Document frequency
-            
-            if (df == 0) {
+            return TopDocs.EMPTY;
+        }
+
+        double avgDocLen = corpusStats.avgDocLength();
+
+        List<String> queryTokens = new ArrayList<>(new LinkedHashSet<>(query.terms()));
+        List<Term> terms = new ArrayList<>();
+        for (String token : queryTokens) {
+            PostingsCursor postings = postingsIndex.cursor(token);
+            if (postings == null) {
                 continue;
             }
+            terms.add(new Term(postings, idf(postingsIndex.docFreq(token), totalDocs)));
+        }
+        if (terms.isEmpty()) {
+            return TopDocs.EMPTY;
+        }
+
+        boolean rerank = queryTokens.size() > 1;
+        ScoreHeap heap = new ScoreHeap(rerank ? k + PROXIMITY_RERANK_DEPTH : k);
+        Term[] live = terms.toArray(new Term[0]);
+        for (Term t : live) {
+            t.postings.nextDoc();
+        }
 
-            // Calculate IDF (Inverse Document Frequency)
-            double idf = Math.log((totalDocs - df + 0.5) / (df + 0.5) + 1);
+        int totalHits;
+        if (query.hasPhrases()) {
+            totalHits = collectPhraseMatches(query.phrases(), live, heap, avgDocLen);
+        } else {
+            totalHits = countHits(queryTokens, totalDocs);
+            collectWand(live, heap, avgDocLen);
+        }
 
-            for (InvertedIndex entry : entries) {
-                if (entry.getDocument() == null) {
-                    continue;
+        int[] docs = new int[heap.size()];
+        double[] scores = new double[heap.size()];
+        int n = heap.drain(docs, scores);
+        if (rerank) {
+            applyProximityBoost(queryTokens, docs, scores, n);
+        }
+        return new TopDocs(best(docs, scores, n, k), totalHits);
+    }
+
+    /**
+     * IDF of a token over the live documents
+     */
+    double idf(String token) {
+        return idf(postingsIndex.docFreq(token), corpusStats.docCount());
+    }
+
+    /**
+     * IDF (Inverse Document Frequency) of a term in df of totalDocs documents.
+     * df must count live documents only: a cursor's cost also counts deleted
+     * and superseded postings, once per segment that holds them.
+     */
+    private static double idf(int df, long totalDocs) {
+        df = Math.max(0, df);
+        return Math.log((totalDocs - df + 0.5) / (df + 0.5) + 1);
+    }
+
+    /**
+     * Block-max WAND.
+     *
+     * Each term carries an upper bound on its score contribution (from the list's
+     * max term frequency) and every postings block a tighter one (from the block's
+     * max frequency). Documents whose bounds cannot beat the current k-th best
+     * score are skipped without being scored, and only k hits are ever kept.
+     */
+    private void collectWand(Term[] live, ScoreHeap heap, double avgDocLen) {
+        while (true) {
+            sortByDoc(live);
+
+            // Find the pivot: first term at which the summed upper bounds can beat the threshold
+            double threshold = heap.threshold();
+            double bound = 0;
+            int pivot = -1;
+            for (int i = 0; i < live.length; i++) {
+                if (live[i].postings.docId() == PostingsCursor.NO_MORE_DOCS) {
+                    break;
                 }
-                
-                long docId = entry.getDocument().getId();
-                int tf = entry.getFreq();  // Term frequency
-                
-                String tokens = entry.getDocument().getTokens();
-                int dl = (tokens != null && !tokens.isEmpty()) 
-                    ? tokens.split("\\s+").length 
-                    : 1;
-                
-                // BM25 term frequency component
-                double tfScore = (tf * (K1 + 1)) 
-                    / (tf + K1 * (1 - B + B * (dl / avgDocLen)));
-                
-                // Accumulate score for this document
-                scores.merge(docId, idf * tfScore, Double::sum);
-            }
-        }
-
-        // Sort by score descending and return document IDs
-        return scores.entrySet().stream()
-            .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toList());
+                bound += live[i].maxScore;
+                if (bound > threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                return;
+            }
+
+            // Include every term sitting on the pivot document
+            int pivotDoc = live[pivot].postings.docId();
+            while (pivot + 1 < live.length && live[pivot + 1].postings.docId() == pivotDoc) {
+                pivot++;
+            }
+
+            // Block-max check: the blocks that could hold pivotDoc may still be too weak
+            double blockBound = 0;
+            int nextBlockStart = PostingsCursor.NO_MORE_DOCS;
+            for (int i = 0; i <= pivot; i++) {
+                PostingsCursor p = live[i].postings;
+                int blockEnd = p.advanceShallow(pivotDoc);
+                blockBound += live[i].scoreBound(p.blockMaxFreq());
+                if (blockEnd != PostingsCursor.NO_MORE_DOCS) {
+                    nextBlockStart = Math.min(nextBlockStart, blockEnd + 1);
+                }
+            }
+            if (blockBound <= threshold) {
+                int target = nextBlockStart;
+                if (pivot + 1 < live.length) {
+                    target = Math.min(target, live[pivot + 1].postings.docId());
+                }
+                live[0].postings.advance(Math.max(target, pivotDoc + 1));
+                continue;
+            }
+
+            if (live[0].postings.docId() == pivotDoc) {
+                // All terms up to the pivot are on pivotDoc — score it fully
+                heap.offer(pivotDoc, score(live, pivotDoc, avgDocLen));
+                for (int i = 0; i <= pivot; i++) {
+                    live[i].postings.nextDoc();
+                }
+            } else {
+                // Documents before the pivot cannot make it into the top k
+                for (int i = 0; i < pivot && live[i].postings.docId() < pivotDoc; i++) {
+                    live[i].postings.advance(pivotDoc);
+                }
+            }
+        }
+    }
+
+    /**
+     * Leapfrog over the conjunction of all phrase terms (led by the rarest one),
+     * check each phrase positionally and score the documents that match them all.
+     * Returns the number of matching documents.
+     */
+    private int collectPhraseMatches(List<ParsedQuery.Phrase> phrases, Term[] scoring,
+                                     ScoreHeap heap, double avgDocLen) {
+        List<PostingsCursor> required = new ArrayList<>();
+        for (ParsedQuery.Phrase phrase : phrases) {
+            for (String term : phrase.terms()) {
+                PostingsCursor c = postingsIndex.cursor(term);
+                if (c == null) {
+                    return 0;
+                }
+                required.add(c);
+            }
+        }
+
+        PostingsCursor[] req = required.toArray(new PostingsCursor[0]);
+        int lead = 0;
+        for (int i = 1; i < req.length; i++) {
+            if (req[i].cost() < req[lead].cost()) {
+                lead = i;
+            }
+        }
+
+        PositionalMatcher matcher = new PositionalMatcher(req.length);
+        int hits = 0;
+        int doc = req[lead].nextDoc();
+        while (doc != PostingsCursor.NO_MORE_DOCS) {
+            int next = doc;
+            for (int i = 0; i < req.length && next == doc; i++) {
+                if (i != lead && req[i].docId() < doc) {
+                    next = req[i].advance(doc);
+                }
+            }
+            if (next != doc) {
+                doc = req[lead].advance(next);
+                continue;
+            }
+
+            for (int i = 0; i < req.length; i++) {
+                matcher.load(i, req[i], doc);
+            }
+            boolean matches = true;
+            int from = 0;
+            for (ParsedQuery.Phrase phrase : phrases) {
+                matches = matches && matcher.matchesPhrase(from, phrase.offsets());
+                from += phrase.offsets().length;
+            }
+            if (matches) {
+                hits++;
+                heap.offer(doc, score(scoring, doc, avgDocLen));
+            }
+            doc = req[lead].nextDoc();
+        }
+        return hits;
+    }
+
+    /**
+     * BM25 score of a document over the terms whose cursors sit on it (or can advance to it)
+     */
+    private double score(Term[] terms, int doc, double avgDocLen) {
+        int dl = Math.max(1, corpusStats.docLength(doc));
+        double score = 0;
+        for (Term t : terms) {
+            if (t.postings.docId() < doc) {
+                t.postings.advance(doc);
+            }
+            if (t.postings.docId() != doc) {
+                continue;
+            }
+            int tf = t.postings.freq();  // Term frequency
+
+            // BM25 term frequency component
+            double tfScore = (tf * (K1 + 1))
+                / (tf + K1 * (1 - B + B * (dl / avgDocLen)));
+            score += t.idf * tfScore;
+        }
+        return score;
+    }
+
+    /**
+     * Multiply each candidate's score by 1 + PROXIMITY_BOOST * (m - 1) / span,
+     * where span is the smallest window holding all m query terms present in the
+     * document. Adjacent terms (span = m - 1) get the full boost.
+     */
+    private void applyProximityBoost(List<String> queryTokens, int[] docs, double[] scores, int n) {
+        PostingsCursor[] cursors = new PostingsCursor[queryTokens.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = postingsIndex.cursor(queryTokens.get(i));
+        }
+
+        // Visit candidates in doc-id order so the cursors only move forward
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(docs[a], docs[b]));
+
+        PositionalMatcher matcher = new PositionalMatcher(cursors.length);
+        for (int idx : order) {
+            int doc = docs[idx];
+            for (int i = 0; i < cursors.length; i++) {
+                if (cursors[i] != null && cursors[i].docId() < doc) {
+                    cursors[i].advance(doc);
+                }
+                matcher.load(i, cursors[i], doc);
+            }
+            int span = matcher.minSpan(cursors.length);
+            if (span > 0) {
+                int m = matcher.present(cursors.length);
+                scores[idx] *= 1 + PROXIMITY_BOOST * (m - 1) / span;
+            }
+        }
+    }
+
+    /**
+     * Ids of the k highest scoring candidates, best first (ties to the lower doc id)
+     */
+    private static List<Long> best(int[] docs, double[] scores, int n, int k) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> scores[a] != scores[b]
+            ? Double.compare(scores[b], scores[a])
+            : Integer.compare(docs[a], docs[b]));
+
+        List<Long> ids = new ArrayList<>(Math.min(n, k));
+        for (int i = 0; i < n && i < k; i++) {
+            ids.add((long) docs[order[i]]);
+        }
+        return ids;
+    }
+
+    /**
+     * Number of documents matching any query term. Counted exactly by merging
+     * doc ids when the lists are small, otherwise estimated from the live
+     * document frequencies assuming the terms occur independently.
+     */
+    private int countHits(List<String> queryTokens, long totalDocs) {
+        List<PostingsCursor> cursors = new ArrayList<>();
+        List<Integer> docFreqs = new ArrayList<>();
+        long sum = 0;
+        int max = 0;
+        for (String token : new LinkedHashSet<>(queryTokens)) {
+            PostingsCursor c = postingsIndex.cursor(token);
+            if (c != null) {
+                int df = Math.max(0, postingsIndex.docFreq(token));
+                cursors.add(c);
+                docFreqs.add(df);
+                sum += df;
+                max = Math.max(max, df);
+            }
+        }
+        if (cursors.size() == 1) {
+            return max;
+        }
+
+        if (sum > EXACT_COUNT_LIMIT) {
+            double missAll = 1.0;
+            for (int df : docFreqs) {
+                missAll *= 1.0 - Math.min(1.0, (double) df / totalDocs);
+            }
+            long estimate = Math.round(totalDocs * (1.0 - missAll));
+            return (int) Math.min(sum, Math.max(max, estimate));
+        }
+
+        int count = 0;
+        int doc = -1;
+        for (PostingsCursor c : cursors) {
+            c.nextDoc();
+        }
+        while (true) {
+            int min = PostingsCursor.NO_MORE_DOCS;
+            for (PostingsCursor c : cursors) {
+                if (c.docId() <= doc) {
+                    c.advance(doc + 1);
+                }
+                min = Math.min(min, c.docId());
+            }
+            if (min == PostingsCursor.NO_MORE_DOCS) {
+                return count;
+            }
+            count++;
+            doc = min;
+        }
+    }
+
+    /** Insertion sort by current doc id — query term counts are tiny */
+    private static void sortByDoc(Term[] terms) {
+        for (int i = 1; i < terms.length; i++) {
+            Term t = terms[i];
+            int doc = t.postings.docId();
+            int j = i - 1;
+            while (j >= 0 && terms[j].postings.docId() > doc) {
+                terms[j + 1] = terms[j];
+                j--;
+            }
+            terms[j + 1] = t;
+        }
+    }
+
+    /**
+     * A query term's postings cursor with its IDF and score upper bound
+     */
+    private static final class Term {
+        final PostingsCursor postings;
+        final double idf;
+        final double maxScore;
+
+        Term(PostingsCursor postings, double idf) {
+            this.postings = postings;
+            this.idf = idf;
+            this.maxScore = scoreBound(postings.maxFreq());
+        }
+
+        /**
+         * Highest score this term can contribute at the given frequency,
+         * approached as the document length goes to zero
+         */
+        double scoreBound(int freq) {
+            if (freq <= 0) {
+                return 0;
+            }
+            return idf * (freq * (K1 + 1)) / (freq + K1 * (1 - B));
+        }
     }
 }
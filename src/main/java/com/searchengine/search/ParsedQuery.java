@@ -0,0 +1,25 @@
+package com.searchengine.search;
+
+import java.util.List;
+
+/**
+ * A search query split into scoring terms and required phrases.
+ * Phrase terms are also part of {@code terms} so they contribute to BM25.
+ */
+public record ParsedQuery(List<String> terms, List<Phrase> phrases) {
+
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    public boolean hasPhrases() {
+        return !phrases.isEmpty();
+    }
+
+    /**
+     * Terms that must occur at fixed word offsets from each other.
+     * Offsets keep the gaps left by stop words, e.g. "bank of america" → bank@0, america@2.
+     */
+    public record Phrase(List<String> terms, int[] offsets) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.searchengine.search;
+
+import com.searchengine.indexer.PostingsCursor;
+
+import java.util.Arrays;
+
+/**
+ * Multi-way positional intersection over the current document of several
+ * postings cursors. Positions are decoded into reusable scratch arrays, so
+ * one matcher serves a whole query without per-document allocation.
+ * Not thread-safe — create one per query.
+ */
+final class PositionalMatcher {
+
+    private final int[][] positions;
+    private final int[] counts;
+    private final int[] heads;
+
+    PositionalMatcher(int lists) {
+        this.positions = new int[lists][16];
+        this.counts = new int[lists];
+        this.heads = new int[lists];
+    }
+
+    /**
+     * Decode the positions of cursor i if it sits on doc, otherwise mark it empty
+     */
+    void load(int i, PostingsCursor cursor, int doc) {
+        counts[i] = 0;
+        if (cursor == null || cursor.docId() != doc) {
+            return;
+        }
+        int freq = cursor.freq();
+        if (positions[i].length < freq) {
+            positions[i] = new int[Math.max(freq, positions[i].length * 2)];
+        }
+        int n = 0;
+        for (int p = cursor.nextPosition(); p >= 0 && n < freq; p = cursor.nextPosition()) {
+            positions[i][n++] = p;
+        }
+        counts[i] = n;
+    }
+
+    /**
+     * True if lists [from, from + offsets.length) contain a start s such that
+     * list from + j has position s + offsets[j] for every j
+     */
+    boolean matchesPhrase(int from, int[] offsets) {
+        int n = offsets.length;
+        for (int j = 0; j < n; j++) {
+            if (counts[from + j] == 0) {
+                return false;
+            }
+            heads[from + j] = 0;
+        }
+
+        int[] lead = positions[from];
+        outer:
+        for (int a = 0; a < counts[from]; a++) {
+            int start = lead[a] - offsets[0];
+            for (int j = 1; j < n; j++) {
+                int list = from + j;
+                int want = start + offsets[j];
+                int[] pos = positions[list];
+                int h = heads[list];
+                while (h < counts[list] && pos[h] < want) {
+                    h++;
+                }
+                heads[list] = h;
+                if (h == counts[list]) {
+                    return false;
+                }
+                if (pos[h] != want) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Number of lists [0, n) with at least one position in the current document
+     */
+    int present(int n) {
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (counts[i] > 0) {
+                m++;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Smallest distance between first and last position of a window holding one
+     * position from every non-empty list among [0, n), or -1 if fewer than two lists are present
+     */
+    int minSpan(int n) {
+        if (present(n) < 2) {
+            return -1;
+        }
+        Arrays.fill(heads, 0, n, 0);
+        int best = Integer.MAX_VALUE;
+        while (true) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int minList = -1;
+            for (int i = 0; i < n; i++) {
+                if (counts[i] == 0) {
+                    continue;
+                }
+                int p = positions[i][heads[i]];
+                if (p < min) {
+                    min = p;
+                    minList = i;
+                }
+                max = Math.max(max, p);
+            }
+            best = Math.min(best, max - min);
+            if (++heads[minList] == counts[minList]) {
+                return best;
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.searchengine.search;
+
+import com.searchengine.indexer.AnalyzedText;
+import com.searchengine.indexer.TextProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class QueryParser {
+
+    @Autowired
+    private TextProcessor textProcessor;
+
+    /**
+     * Parse a raw query: text inside double quotes becomes a phrase, everything
+     * is run through the same cleaning and stop word rules as indexed text.
+     * An unclosed quote runs to the end of the query.
+     */
+    public ParsedQuery parse(String query) {
+        if (query == null || query.isBlank()) {
+            return new ParsedQuery(List.of(), List.of());
+        }
+
+        List<ParsedQuery.Phrase> phrases = new ArrayList<>();
+        int open = query.indexOf('"');
+        while (open >= 0) {
+            int close = query.indexOf('"', open + 1);
+            String text = close < 0 ? query.substring(open + 1) : query.substring(open + 1, close);
+            ParsedQuery.Phrase phrase = toPhrase(text);
+            if (phrase != null) {
+                phrases.add(phrase);
+            }
+            open = close < 0 ? -1 : query.indexOf('"', close + 1);
+        }
+
+        String cleaned = textProcessor.clean(query);
+        List<String> terms = textProcessor.terms(cleaned);
+        return new ParsedQuery(terms, phrases);
+    }
+
+    private ParsedQuery.Phrase toPhrase(String text) {
+        AnalyzedText analyzed = textProcessor.analyze(textProcessor.clean(text));
+        if (analyzed.getLength() == 0) {
+            return null;
+        }
+
+        // Flatten term → positions into (term, offset) pairs in phrase order
+        List<Map.Entry<String, Integer>> pairs = new ArrayList<>();
+        analyzed.getPositions().forEach((term, positions) -> {
+            for (int p : positions) {
+                pairs.add(Map.entry(term, p));
+            }
+        });
+        pairs.sort(Comparator.comparingInt(Map.Entry::getValue));
+
+        int first = pairs.get(0).getValue();
+        List<String> terms = pairs.stream().map(Map.Entry::getKey).toList();
+        int[] offsets = pairs.stream().mapToInt(e -> e.getValue() - first).toArray();
+        return new ParsedQuery.Phrase(terms, offsets);
+    }
+}
@@ -0,0 +1,102 @@
+package com.searchengine.search;
+
+/**
+ * Bounded min-heap of (score, docId) pairs in primitive arrays.
+ * Keeps the k best hits; ties go to the lower doc id.
+ */
+final class ScoreHeap {
+
+    private final double[] scores;
+    private final int[] docs;
+    private int size;
+
+    ScoreHeap(int k) {
+        this.scores = new double[k];
+        this.docs = new int[k];
+    }
+
+    boolean isFull() {
+        return size == scores.length;
+    }
+
+    /**
+     * Score a new hit must beat to enter the heap
+     */
+    double threshold() {
+        return isFull() ? scores[0] : 0.0;
+    }
+
+    void offer(int doc, double score) {
+        if (!isFull()) {
+            scores[size] = score;
+            docs[size] = doc;
+            siftUp(size++);
+        } else if (lessThan(docs[0], scores[0], doc, score)) {
+            scores[0] = score;
+            docs[0] = doc;
+            siftDown(0);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Drain the heap into the given arrays ordered best first, returning the hit count
+     */
+    int drain(int[] docsOut, double[] scoresOut) {
+        int n = size;
+        while (size > 0) {
+            docsOut[size - 1] = docs[0];
+            scoresOut[size - 1] = scores[0];
+            size--;
+            scores[0] = scores[size];
+            docs[0] = docs[size];
+            siftDown(0);
+        }
+        return n;
+    }
+
+    /** True when hit a ranks below hit b */
+    private static boolean lessThan(int docA, double scoreA, int docB, double scoreB) {
+        return scoreA < scoreB || (scoreA == scoreB && docA > docB);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!lessThan(docs[i], scores[i], docs[parent], scores[parent])) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int right = left + 1;
+            int smallest = (right < size && lessThan(docs[right], scores[right], docs[left], scores[left]))
+                ? right : left;
+            if (!lessThan(docs[smallest], scores[smallest], docs[i], scores[i])) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        double s = scores[a];
+        scores[a] = scores[b];
+        scores[b] = s;
+        int d = docs[a];
+        docs[a] = docs[b];
+        docs[b] = d;
+    }
+}
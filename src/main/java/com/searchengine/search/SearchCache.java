@@ -0,0 +1,191 @@
+package com.searchengine.search;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.searchengine.indexer.IndexGeneration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier cache of search responses.
+ *
+ * L1 is a bounded in-process Caffeine cache (W-TinyLFU eviction, TTL);
+ * L2 is the "searchCache" of the configured CacheManager, i.e. Redis when
+ * spring.cache.type=redis and a no-op otherwise. Keys are built from the
+ * parsed query, so queries that differ only in case, spacing or punctuation
+ * share an entry, and carry the {@link IndexGeneration}, so entries built
+ * before the last index commit are never served again.
+ *
+ * L2 failures never fail a search. They are counted in search.cache.l2.errors
+ * and logged as a warning the first time after a success.
+ */
+@Component
+public class SearchCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchCache.class);
+
+    // Holds a future per key, so a miss is loaded outside the cache's locks
+    private final AsyncCache<String, Map<String, Object>> local;
+    private final org.springframework.cache.Cache remote;
+    private final IndexGeneration indexGeneration;
+    private final Counter l1Hits;
+    private final Counter l2Hits;
+    private final Counter misses;
+    private final Counter remoteErrors;
+    // False after an L2 failure, so an outage is logged once rather than per request
+    private final AtomicBoolean remoteHealthy = new AtomicBoolean(true);
+
+    @Autowired
+    public SearchCache(CacheManager cacheManager, IndexGeneration indexGeneration, MeterRegistry meterRegistry,
+                       @Value("${search.cache.l1-max-entries:10000}") long maxEntries,
+                       @Value("${search.cache.l1-ttl-ms:600000}") long ttlMs) {
+        this.local = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(Duration.ofMillis(ttlMs))
+            .recordStats()
+            .buildAsync();
+        this.remote = cacheManager.getCache("searchCache");
+        this.indexGeneration = indexGeneration;
+        this.l1Hits = meterRegistry.counter("search.cache.requests", "result", "l1_hit");
+        this.l2Hits = meterRegistry.counter("search.cache.requests", "result", "l2_hit");
+        this.misses = meterRegistry.counter("search.cache.requests", "result", "miss");
+        this.remoteErrors = meterRegistry.counter("search.cache.l2.errors");
+        meterRegistry.gauge("search.cache.hit.ratio", this, SearchCache::hitRatio);
+        CaffeineCacheMetrics.monitor(meterRegistry, local.synchronous(), "searchCache.l1");
+    }
+
+    /**
+     * Key for one page of a parsed query at the current index generation
+     */
+    public String key(ParsedQuery parsed, int page, int size) {
+        StringBuilder key = new StringBuilder(64);
+        key.append(indexGeneration.current()).append(':').append(String.join(" ", parsed.terms()));
+        for (ParsedQuery.Phrase phrase : parsed.phrases()) {
+            key.append("|\"").append(String.join(" ", phrase.terms())).append('"')
+               .append(Arrays.toString(phrase.offsets()));
+        }
+        return key.append(':').append(page).append(':').append(size).toString();
+    }
+
+    /**
+     * Cached response for key, computing it with loader on a miss in both
+     * tiers. Concurrent misses on one key in this process compute it once:
+     * the first caller publishes a pending future and loads on its own
+     * thread, the others wait for that future. Nothing runs inside a
+     * Caffeine compute, so a slow L2 or search never holds a cache lock.
+     */
+    public Map<String, Object> get(String key, Supplier<Map<String, Object>> loader) {
+        CompletableFuture<Map<String, Object>> cached = local.getIfPresent(key);
+        if (cached != null && cached.isDone() && !cached.isCompletedExceptionally()) {
+            l1Hits.increment();
+            return cached.join();
+        }
+        CompletableFuture<Map<String, Object>> pending = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> loading;
+        while ((loading = local.asMap().putIfAbsent(key, pending)) != null) {
+            if (!loading.isCompletedExceptionally()) {
+                return await(loading);
+            }
+            // A failed load the cache has not dropped yet
+            local.asMap().remove(key, loading);
+        }
+        try {
+            pending.complete(load(key, loader));
+        } catch (RuntimeException | Error e) {
+            // Failed futures are dropped by the cache, so the next caller loads again
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        return pending.join();
+    }
+
+    private Map<String, Object> load(String key, Supplier<Map<String, Object>> loader) {
+        Map<String, Object> shared = remoteGet(key);
+        if (shared != null) {
+            l2Hits.increment();
+            return shared;
+        }
+        misses.increment();
+        Map<String, Object> response = loader.get();
+        remotePut(key, response);
+        return response;
+    }
+
+    /**
+     * Result of another caller's load, rethrowing its failure as it was thrown
+     */
+    private static Map<String, Object> await(CompletableFuture<Map<String, Object>> loading) {
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Share of lookups answered by either tier
+     */
+    public double hitRatio() {
+        double hits = l1Hits.count() + l2Hits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0.0 : hits / total;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> remoteGet(String key) {
+        if (remote == null) {
+            return null;
+        }
+        try {
+            Map<String, Object> response = remote.get(key, Map.class);
+            remoteHealthy.set(true);
+            return response;
+        } catch (Exception e) {
+            // A missing or slow L2 must not fail searches
+            remoteFailed("read", e);
+            return null;
+        }
+    }
+
+    private void remotePut(String key, Map<String, Object> response) {
+        if (remote == null) {
+            return;
+        }
+        try {
+            remote.put(key, response);
+            remoteHealthy.set(true);
+        } catch (Exception e) {
+            remoteFailed("write", e);
+        }
+    }
+
+    private void remoteFailed(String operation, Exception e) {
+        remoteErrors.increment();
+        if (remoteHealthy.getAndSet(false)) {
+            log.warn("Search cache L2 {} failed, serving from L1 and the index: {}", operation, e.getMessage());
+        } else {
+            log.debug("Search cache L2 {} failed: {}", operation, e.getMessage());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.searchengine.search;
 import com.searchengine.analytics.AnalyticsService;
 import com.searchengine.autocomplete.AutocompleteService;
 import com.searchengine.crawler.WebCrawler;
+import com.searchengine.indexer.IndexerService;
 import com.searchengine.wikipedia.WikipediaService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -31,22 +32,34 @@ public class SearchController {
     @Autowired
     private WikipediaService wikipediaService;
 
+    @Autowired
+    private IndexerService indexerService;
+
     /**
      * GET /api/search?q=java&page=0&size=10
      * Unified search with BM25 ranking and pagination.
      * Searches the local inverted index (all crawled pages — websites + Wikipedia).
+     * Text in double quotes must match as an exact phrase, e.g. q="machine learning" python;
+     * results where the query terms occur close together are boosted.
+     * When nothing matches, the response carries a "didYouMean" spelling correction.
      */
     @GetMapping("/search")
     public ResponseEntity<Map<String, Object>> search(
             @RequestParam String q,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
-        return ResponseEntity.ok(searchService.search(q, page, size));
+        Map<String, Object> response = searchService.search(q, page, size);
+
+        // Logged here rather than in the cached search so repeat searches count too
+        analyticsService.logQuery(q);
+        return ResponseEntity.ok(response);
     }
 
     /**
      * GET /api/autocomplete?prefix=jav
      * Returns autocomplete suggestions from the local Trie
+     * (prefixes of four or more characters also match within one or two typos)
+     * (only recently crawled words until the Trie has warmed up, see /api/health)
      */
     @GetMapping("/autocomplete")
     public ResponseEntity<List<String>> autocomplete(@RequestParam String prefix) {
@@ -103,6 +116,15 @@ public class SearchController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * DELETE /api/documents/42
+     * Remove a document from the index; it stops matching queries immediately
+     */
+    @DeleteMapping("/documents/{id}")
+    public ResponseEntity<Void> deleteDocument(@PathVariable Long id) {
+        return indexerService.delete(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
     /**
      * GET /api/health
      * Health check endpoint
@@ -111,7 +133,8 @@ public class SearchController {
     public ResponseEntity<Map<String, String>> health() {
         return ResponseEntity.ok(Map.of(
             "status", "UP",
-            "message", "Search Engine is running!"
+            "message", "Search Engine is running!",
+            "autocomplete", autocompleteService.isReady() ? "READY" : "WARMING_UP"
         ));
     }
 }
@@ -0,0 +1,19 @@
+package com.searchengine.search;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One search hit as returned by the API: the document's identity plus a
+ * query-dependent snippet. Never carries the document body, so result pages
+ * and cached responses stay small.
+ *
+ * Highlights are [start, end) character offsets into the snippet.
+ */
+public record SearchResult(Long id, String url, String title, LocalDateTime crawledAt,
+                           int wordCount, String snippet, List<Highlight> highlights) implements Serializable {
+
+    public record Highlight(int start, int end) implements Serializable {
+    }
+}
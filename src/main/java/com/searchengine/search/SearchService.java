@@ -1,77 +1,131 @@
 package com.searchengine.search;
 
-import com.searchengine.analytics.AnalyticsService;
+import com.searchengine.autocomplete.AutocompleteService;
 import com.searchengine.indexer.TextProcessor;
-import com.searchengine.model.Document;
 import com.searchengine.repository.DocumentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @Service
 public class SearchService {
-    
+
+    @Value("${search.max-page-size:100}")
+    private int maxPageSize;
+
+    // Deepest result a page may reach; ranking cost grows with it
+    @Value("${search.max-depth:1000}")
+    private int maxDepth;
+
     @Autowired
     private BM25Scorer bm25Scorer;
     
     @Autowired
-    private TextProcessor textProcessor;
+    private QueryParser queryParser;
     
     @Autowired
     private DocumentRepository docRepo;
     
     @Autowired
-    private AnalyticsService analyticsService;
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private SnippetGenerator snippetGenerator;
+
+    @Autowired
+    private SearchCache searchCache;
+
+    @Autowired
+    private TextProcessor textProcessor;
 
     /**
-     * Search for documents matching the query with pagination
+     * Search for documents matching the query with pagination.
+     * Results are {@link SearchResult}s read through a projection, so neither
+     * the response nor the cache holds document bodies. Responses are cached
+     * per parsed query and index generation in {@link SearchCache}.
+     * size is clamped to 1..max-page-size and page to the pages that lie
+     * within the first max-depth results; the response carries the page served.
      */
-    @Transactional
-    @Cacheable(value = "searchCache", key = "#query + '-' + #page + '-' + #size")
-    public Map<String, Object> search(String query, int page, int size) {
+    public Map<String, Object> search(String query, int requestedPage, int requestedSize) {
+        int size = Math.clamp(requestedSize, 1, Math.min(maxPageSize, maxDepth));
+        int page = Math.clamp(requestedPage, 0, lastPage(size));
         if (query == null || query.trim().isEmpty()) {
             return createEmptyResult(page);
         }
         
-        // Process query: clean and tokenize
-        String cleaned = textProcessor.clean(query);
-        String tokenized = textProcessor.tokenize(cleaned);
-        List<String> tokens = textProcessor.toList(tokenized);
+        // Process query: quoted phrases, then clean and tokenize
+        ParsedQuery parsed = queryParser.parse(query);
         
-        if (tokens.isEmpty()) {
+        if (parsed.isEmpty()) {
             return createEmptyResult(page);
         }
-        
-        // Get ranked document IDs using BM25
-        List<Long> allIds = bm25Scorer.score(tokens);
-        int total = allIds.size();
+
+        return searchCache.get(searchCache.key(parsed, page, size), () -> search(query, parsed, page, size));
+    }
+
+    private Map<String, Object> search(String query, ParsedQuery parsed, int page, int size) {
+        // Get the top (page + 1) * size document IDs using BM25 — deeper pages ask for a larger k
+        int start = page * size;
+        TopDocs topDocs = bm25Scorer.topK(parsed, start + size);
+        List<Long> rankedIds = topDocs.docIds();
+        int total = topDocs.totalHits();
         
         // Paginate results
-        int start = page * size;
-        int end = Math.min(start + size, total);
+        int end = Math.min(start + size, rankedIds.size());
         
-        List<Long> pageIds = (start < total) ? allIds.subList(start, end) : List.of();
-        List<Document> results = pageIds.isEmpty() ? List.of() : docRepo.findAllByIdIn(pageIds);
+        List<Long> pageIds = (start < end) ? rankedIds.subList(start, end) : List.of();
+        List<DocumentRepository.ResultRow> rows = pageIds.isEmpty() ? List.of() : docRepo.findResultRowsByIdIn(pageIds);
         
         // Sort results to match the order from BM25
-        results = sortByIdOrder(results, pageIds);
-
-        // Log the search query for analytics
-        analyticsService.logQuery(query);
+        List<String> terms = parsed.terms().stream().distinct().toList();
+        // A plain ArrayList, since the L2 cache records and restores the concrete list type
+        List<SearchResult> results = snippetGenerator.toResults(sortByIdOrder(rows, pageIds), terms);
 
         Map<String, Object> response = new HashMap<>();
         response.put("results", results);
         response.put("totalHits", total);
         response.put("page", page);
-        response.put("totalPages", (int) Math.ceil((double) total / size));
+        response.put("totalPages", (int) Math.min(Math.ceil((double) total / size), lastPage(size) + 1));
+
+        // Offer a spelling correction when nothing matched
+        if (total == 0) {
+            String didYouMean = correct(query);
+            if (didYouMean != null) {
+                response.put("didYouMean", didYouMean);
+            }
+        }
         
         return response;
     }
+
+    /**
+     * Index of the last page of the given size that ends within max-depth results
+     */
+    private int lastPage(int size) {
+        return maxDepth / size - 1;
+    }
+
+    /**
+     * The query's words with each unknown word replaced by its closest known
+     * word, or null if no word could be corrected. Works on the words as typed,
+     * since the parsed terms are stems.
+     */
+    private String correct(String query) {
+        String[] words = textProcessor.clean(query).split(" ");
+        List<String> corrected = new ArrayList<>(words.length);
+        boolean changed = false;
+        for (String word : words) {
+            String fix = autocompleteService.correct(word);
+            corrected.add(fix != null ? fix : word);
+            changed |= fix != null;
+        }
+        return changed ? String.join(" ", corrected) : null;
+    }
     
     private Map<String, Object> createEmptyResult(int page) {
         Map<String, Object> response = new HashMap<>();
@@ -82,9 +136,9 @@ public class SearchService {
         return response;
     }
     
-    private List<Document> sortByIdOrder(List<Document> docs, List<Long> orderedIds) {
-        Map<Long, Document> docMap = new HashMap<>();
-        for (Document doc : docs) {
+    private List<DocumentRepository.ResultRow> sortByIdOrder(List<DocumentRepository.ResultRow> docs, List<Long> orderedIds) {
+        Map<Long, DocumentRepository.ResultRow> docMap = new HashMap<>();
+        for (DocumentRepository.ResultRow doc : docs) {
             docMap.put(doc.getId(), doc);
         }
         return orderedIds.stream()
@@ -0,0 +1,431 @@
+package com.searchengine.search;
+
+import com.searchengine.indexer.PostingsCursor;
+import com.searchengine.indexer.PostingsIndex;
+import com.searchengine.indexer.TextProcessor;
+import com.searchengine.indexer.WordOffsets;
+import com.searchengine.repository.DocumentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query-dependent snippets with highlight offsets.
+ *
+ * The passage is picked from the term positions already in the postings: the
+ * window of WINDOW_WORDS words holding the most distinct query terms, then
+ * the most occurrences, wins. The document's {@link WordOffsets} locate that
+ * window in the stored text, so only a short slice is read from the database
+ * and scanned char by char into a per-thread scratch buffer. The windows of
+ * a whole result page are located first and their slices read in one query.
+ * Documents without stored positions or offsets get a window of their
+ * summary instead.
+ */
+@Component
+public class SnippetGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(SnippetGenerator.class);
+    private static final int SNIPPET_CHARS = 240;
+    private static final int WINDOW_WORDS = 32;
+    // Bounds the slice read for a window in case of unusually long words
+    private static final int MAX_FRAGMENT_CHARS = 4000;
+    private static final int BACKFILL_PAGE_SIZE = 500;
+    private static final String ELLIPSIS = "… ";
+    // One per window, joined with UNION ALL; start is 1-based and, like WordOffsets, counts code points
+    private static final String FRAGMENT_SQL = "SELECT id, SUBSTRING(raw_content FROM ? FOR ?) FROM documents WHERE id = ?";
+
+    @Autowired
+    private DocumentRepository docRepo;
+
+    @Autowired
+    private TextProcessor textProcessor;
+
+    @Autowired
+    private PostingsIndex postingsIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Store summaries and word offsets for documents crawled before they were
+     * kept, and rebuild word offsets stored before they counted code points.
+     * Runs in the background; such documents get plainer or, if their text
+     * has supplementary characters, shifted snippets until then.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSummaries() {
+        Thread.ofVirtual().name("summary-backfill").start(() -> {
+            int filled = 0;
+            try {
+                long afterId = 0;
+                List<DocumentRepository.DocContentRow> rows;
+                do {
+                    rows = docRepo.findDocsWithoutSnippetDataAfter(afterId, PageRequest.of(0, BACKFILL_PAGE_SIZE));
+                    for (DocumentRepository.DocContentRow row : rows) {
+                        docRepo.updateSnippetData(row.getId(), textProcessor.summarize(row.getRawContent()),
+                            WordOffsets.build(row.getRawContent()));
+                        afterId = row.getId();
+                    }
+                    filled += rows.size();
+                } while (rows.size() == BACKFILL_PAGE_SIZE);
+            } catch (Exception e) {
+                log.warn("Could not backfill snippet data: {}", e.getMessage());
+            }
+            if (filled > 0) {
+                log.info("Backfilled snippet data for {} documents", filled);
+            }
+            rebuildCharOffsets();
+        });
+    }
+
+    private void rebuildCharOffsets() {
+        int rebuilt = 0;
+        try {
+            long afterId = 0;
+            List<DocumentRepository.WordOffsetsRow> rows;
+            do {
+                rows = docRepo.findWordOffsetsAfter(afterId, PageRequest.of(0, BACKFILL_PAGE_SIZE));
+                for (DocumentRepository.WordOffsetsRow row : rows) {
+                    if (WordOffsets.countsChars(row.getWordOffsets())) {
+                        String content = docRepo.findRawContentById(row.getId());
+                        docRepo.updateSnippetData(row.getId(), textProcessor.summarize(content), WordOffsets.build(content));
+                        rebuilt++;
+                    }
+                    afterId = row.getId();
+                }
+            } while (rows.size() == BACKFILL_PAGE_SIZE);
+        } catch (Exception e) {
+            log.warn("Could not rebuild word offsets: {}", e.getMessage());
+        }
+        if (rebuilt > 0) {
+            log.info("Rebuilt word offsets in code points for {} documents", rebuilt);
+        }
+    }
+
+    /**
+     * Build the API results for a page of documents, with snippets for the
+     * query terms (distinct, in query order)
+     */
+    public List<SearchResult> toResults(List<DocumentRepository.ResultRow> rows, List<String> terms) {
+        List<Window> windows = new ArrayList<>(rows.size());
+        for (DocumentRepository.ResultRow row : rows) {
+            Window window = window(row, terms);
+            if (window != null) {
+                windows.add(window);
+            }
+        }
+        Map<Long, String> fragments = loadFragments(windows);
+
+        List<SearchResult> results = new ArrayList<>(rows.size());
+        int w = 0;
+        for (DocumentRepository.ResultRow row : rows) {
+            List<SearchResult.Highlight> highlights = new ArrayList<>();
+            String snippet = null;
+            if (w < windows.size() && windows.get(w).docId() == row.getId()) {
+                Window window = windows.get(w++);
+                snippet = passage(window, fragments.get(window.docId()), highlights);
+            }
+            if (snippet == null) {
+                highlights.clear();
+                snippet = summarySnippet(row.getSummary() != null ? row.getSummary() : "", terms, highlights);
+            }
+            results.add(new SearchResult(row.getId(), row.getUrl(), row.getTitle(), row.getCrawledAt(),
+                row.getDocLength() != null ? row.getDocLength() : 0, snippet, highlights));
+        }
+        return results;
+    }
+
+    /**
+     * Where a document's passage lies: words [start, end], read as the slice
+     * [from, from + length) of the stored text that begins at word firstWord.
+     * hits are the positions of query terms inside the window, ascending.
+     */
+    private record Window(long docId, int start, int end, int firstWord, int from, int length,
+                          boolean more, int[] hits) {
+    }
+
+    /**
+     * Best passage window located through term positions and word offsets,
+     * or null if the document lacks either
+     */
+    private Window window(DocumentRepository.ResultRow row, List<String> terms) {
+        byte[] offsets = row.getWordOffsets();
+        if (offsets == null || offsets.length == 0 || terms.size() > Character.MAX_VALUE) {
+            return null;
+        }
+        Scratch scratch = SCRATCH.get();
+        int hitCount = loadHits(Math.toIntExact(row.getId()), terms, scratch);
+        if (hitCount == 0) {
+            return null;
+        }
+        long[] hits = scratch.hits;
+        int best = bestWindow(hitCount, terms.size(), scratch);
+        int first = position(hits[best]);
+        int span = position(hits[scratch.bestLast]) - first;
+        int windowStart = first - (WINDOW_WORDS - 1 - span) / 2;
+        // Near the end, pull the window back so it is not cut short
+        int lastCheckpointWord = (WordOffsets.checkpoints(offsets) - 1) * WordOffsets.STRIDE;
+        windowStart = Math.max(0, Math.min(windowStart, lastCheckpointWord + WordOffsets.STRIDE - WINDOW_WORDS));
+        int windowEnd = windowStart + WINDOW_WORDS - 1;
+
+        // Read from the checkpoint before the window to the one after it
+        int checkpoint = windowStart / WordOffsets.STRIDE;
+        int from = WordOffsets.checkpoint(offsets, checkpoint);
+        if (from < 0) {
+            return null;
+        }
+        int to = WordOffsets.checkpoint(offsets, windowEnd / WordOffsets.STRIDE + 1);
+        int length = to < 0 ? MAX_FRAGMENT_CHARS : Math.min(to - from, MAX_FRAGMENT_CHARS);
+
+        int[] inWindow = new int[Math.min(hitCount, WINDOW_WORDS)];
+        int n = 0;
+        for (int h = 0; h < hitCount && n < inWindow.length; h++) {
+            int p = position(hits[h]);
+            if (p >= windowStart && p <= windowEnd && (n == 0 || inWindow[n - 1] != p)) {
+                inWindow[n++] = p;
+            }
+        }
+        return new Window(row.getId(), windowStart, windowEnd, checkpoint * WordOffsets.STRIDE, from, length,
+            to >= 0, Arrays.copyOf(inWindow, n));
+    }
+
+    /**
+     * The stored text slices of the windows, by document id, in one round trip
+     */
+    private Map<Long, String> loadFragments(List<Window> windows) {
+        if (windows.isEmpty()) {
+            return Map.of();
+        }
+        StringBuilder sql = new StringBuilder(windows.size() * (FRAGMENT_SQL.length() + 11));
+        Object[] args = new Object[windows.size() * 3];
+        for (int i = 0; i < windows.size(); i++) {
+            Window window = windows.get(i);
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append(FRAGMENT_SQL);
+            args[i * 3] = window.from() + 1;
+            args[i * 3 + 1] = window.length();
+            args[i * 3 + 2] = window.docId();
+        }
+        Map<Long, String> fragments = new HashMap<>();
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> fragments.put(rs.getLong(1), rs.getString(2)), args);
+        return fragments;
+    }
+
+    /**
+     * Cut a window's words out of its slice of the stored text, adding the
+     * offsets of query terms to highlights; null if the slice has none of them
+     */
+    private String passage(Window window, String fragment, List<SearchResult.Highlight> highlights) {
+        if (fragment == null || fragment.isEmpty()) {
+            return null;
+        }
+        int[] hits = window.hits();
+        StringBuilder out = SCRATCH.get().text;
+        out.setLength(0);
+        if (window.start() > 0) {
+            out.append(ELLIPSIS);
+        }
+        int body = out.length();
+        int word = window.firstWord();
+        int h = 0;
+        boolean more = window.more();
+        int i = 0;
+        int n = fragment.length();
+        while (i < n) {
+            while (i < n && fragment.charAt(i) == ' ') {
+                i++;
+            }
+            int start = i;
+            while (i < n && fragment.charAt(i) != ' ') {
+                i++;
+            }
+            if (start == i) {
+                break;
+            }
+            if (word > window.end()) {
+                more = true;
+                break;
+            }
+            if (word >= window.start()) {
+                if (out.length() > body) {
+                    out.append(' ');
+                }
+                int at = out.length();
+                out.append(fragment, start, i);
+                while (h < hits.length && hits[h] < word) {
+                    h++;
+                }
+                if (h < hits.length && hits[h] == word) {
+                    highlights.add(new SearchResult.Highlight(at, out.length()));
+                }
+            }
+            word++;
+        }
+        if (out.length() == body) {
+            return null;
+        }
+        if (more) {
+            out.append(" …");
+        }
+        return out.toString();
+    }
+
+    /**
+     * Decode the positions of every query term in the document into
+     * scratch.hits as position << 16 | term, sorted; returns how many
+     */
+    private int loadHits(int docId, List<String> terms, Scratch scratch) {
+        int n = 0;
+        for (int t = 0; t < terms.size(); t++) {
+            PostingsCursor cursor = postingsIndex.cursor(terms.get(t));
+            if (cursor == null || cursor.advance(docId) != docId) {
+                continue;
+            }
+            int freq = cursor.freq();
+            for (int k = 0; k < freq; k++) {
+                int p = cursor.nextPosition();
+                if (p < 0) {
+                    break;
+                }
+                if (n == scratch.hits.length) {
+                    scratch.hits = Arrays.copyOf(scratch.hits, n * 2);
+                }
+                scratch.hits[n++] = ((long) p << 16) | t;
+            }
+        }
+        Arrays.sort(scratch.hits, 0, n);
+        return n;
+    }
+
+    /**
+     * Slide a WINDOW_WORDS window over the sorted hits and return the index
+     * of the first hit of the best one; the last is left in scratch.bestLast
+     */
+    private static int bestWindow(int hitCount, int termCount, Scratch scratch) {
+        long[] hits = scratch.hits;
+        if (scratch.termHits.length < termCount) {
+            scratch.termHits = new int[termCount];
+        }
+        int[] termHits = scratch.termHits;
+        Arrays.fill(termHits, 0, termCount, 0);
+        int distinct = 0;
+        long bestScore = -1;
+        int best = 0;
+        scratch.bestLast = 0;
+        int first = 0;
+        for (int last = 0; last < hitCount; last++) {
+            if (termHits[term(hits[last])]++ == 0) {
+                distinct++;
+            }
+            while (position(hits[last]) - position(hits[first]) >= WINDOW_WORDS) {
+                if (--termHits[term(hits[first++])] == 0) {
+                    distinct--;
+                }
+            }
+            long score = (long) distinct * WINDOW_WORDS + (last - first + 1);
+            if (score > bestScore) {
+                bestScore = score;
+                best = first;
+                scratch.bestLast = last;
+            }
+        }
+        return best;
+    }
+
+    private static int position(long hit) {
+        return (int) (hit >>> 16);
+    }
+
+    private static int term(long hit) {
+        return (int) (hit & 0xFFFF);
+    }
+
+    /**
+     * Cut the window of a summary with the most distinct terms, adding their
+     * offsets in the returned snippet to highlights. Text is cleaned,
+     * single-spaced words.
+     */
+    String summarySnippet(String text, Collection<String> terms, List<SearchResult.Highlight> highlights) {
+        // [start, end) of every word whose term is a query term
+        List<int[]> matches = new ArrayList<>();
+        textProcessor.forEachToken(text, (term, start, end, position) -> {
+            if (terms.contains(term.toString())) {
+                matches.add(new int[] {start, end});
+            }
+        });
+
+        int from = 0;
+        if (!matches.isEmpty()) {
+            int[] best = bestRun(text, matches);
+            int span = matches.get(best[1] - 1)[1] - matches.get(best[0])[0];
+            // Centre the run in the window
+            from = Math.max(0, matches.get(best[0])[0] - Math.max(0, SNIPPET_CHARS - span) / 2);
+        }
+        from = Math.min(from, Math.max(0, text.length() - SNIPPET_CHARS));
+        if (from > 0 && text.charAt(from - 1) != ' ') {
+            int space = text.indexOf(' ', from);
+            from = space < 0 ? text.length() : space + 1;
+        }
+        int to = Math.min(text.length(), from + SNIPPET_CHARS);
+        if (to < text.length() && text.charAt(to) != ' ') {
+            int space = text.lastIndexOf(' ', to);
+            to = space > from ? space : to;
+        }
+
+        String prefix = from > 0 ? ELLIPSIS : "";
+        for (int[] m : matches) {
+            if (m[0] >= from && m[1] <= to) {
+                highlights.add(new SearchResult.Highlight(m[0] - from + prefix.length(), m[1] - from + prefix.length()));
+            }
+        }
+        return prefix + text.substring(from, to) + (to < text.length() ? " …" : "");
+    }
+
+    /**
+     * Matches [first, last) fitting in one window with the most distinct terms
+     */
+    private static int[] bestRun(String text, List<int[]> matches) {
+        Map<String, Integer> inWindow = new HashMap<>();
+        int[] best = {0, 1};
+        int bestDistinct = 0;
+        int first = 0;
+        for (int last = 0; last < matches.size(); last++) {
+            int[] m = matches.get(last);
+            inWindow.merge(text.substring(m[0], m[1]), 1, Integer::sum);
+            while (m[1] - matches.get(first)[0] > SNIPPET_CHARS) {
+                int[] drop = matches.get(first++);
+                inWindow.computeIfPresent(text.substring(drop[0], drop[1]), (t, n) -> n > 1 ? n - 1 : null);
+            }
+            if (inWindow.size() > bestDistinct) {
+                bestDistinct = inWindow.size();
+                best = new int[] {first, last + 1};
+            }
+        }
+        return best;
+    }
+
+    /** Per-thread buffers reused across results */
+    private static final class Scratch {
+        long[] hits = new long[64];
+        int[] termHits = new int[8];
+        int bestLast;
+        final StringBuilder text = new StringBuilder(SNIPPET_CHARS * 2);
+    }
+}
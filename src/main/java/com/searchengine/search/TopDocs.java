@@ -0,0 +1,11 @@
+package com.searchengine.search;
+
+import java.util.List;
+
+/**
+ * Ranked document ids (highest score first) plus the total number of matches
+ */
+public record TopDocs(List<Long> docIds, int totalHits) {
+
+    public static final TopDocs EMPTY = new TopDocs(List.of(), 0);
+}
@@ -0,0 +1,85 @@
+package com.searchengine.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void countsExactlyWhileKeysFit() {
+        SpaceSaving sketch = new SpaceSaving(10);
+        Map<String, Long> expected = new HashMap<>();
+        Random random = new Random(16);
+        for (int i = 0; i < 1_000; i++) {
+            String key = "q" + random.nextInt(10);
+            sketch.offer(key);
+            expected.merge(key, 1L, Long::sum);
+        }
+
+        Map<String, Long> counted = new HashMap<>();
+        sketch.forEach((key, count, error) -> {
+            assertEquals(0, error, key);
+            counted.put(key, count);
+        });
+        assertEquals(expected, counted);
+    }
+
+    @Test
+    void estimatesStayWithinTheSpaceSavingBounds() {
+        int capacity = 50;
+        int n = 200_000;
+        SpaceSaving sketch = new SpaceSaving(capacity);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) {
+            // Zipf-like over 10,000 keys: a few heavy hitters and a long tail
+            String key = "q" + (int) Math.floor(Math.pow(10_000, random.nextDouble()));
+            sketch.offer(key);
+            exact.merge(key, 1L, Long::sum);
+        }
+
+        assertEquals(capacity, sketch.size());
+        long[] total = new long[1];
+        Map<String, Long> tracked = new HashMap<>();
+        sketch.forEach((key, count, error) -> {
+            long actual = exact.get(key);
+            // Never under-counts, and over-counts by at most the recorded error, itself at most n / capacity
+            assertTrue(count >= actual, key + ": " + count + " < " + actual);
+            assertTrue(count - error <= actual, key + ": " + (count - error) + " > " + actual);
+            assertTrue(error <= n / capacity, key + " error " + error);
+            total[0] += count;
+            tracked.put(key, count);
+        });
+        // Every offer lands in exactly one counter
+        assertEquals(n, total[0]);
+        exact.forEach((key, count) -> {
+            if (count > n / capacity) {
+                assertTrue(tracked.containsKey(key), key + " seen " + count + " times is not tracked");
+            }
+        });
+    }
+
+    @Test
+    void clearForgetsEveryKey() {
+        SpaceSaving sketch = new SpaceSaving(3);
+        for (String key : new String[] {"a", "b", "c", "d", "a"}) {
+            sketch.offer(key);
+        }
+        sketch.clear();
+        assertEquals(0, sketch.size());
+
+        sketch.offer("a");
+        sketch.forEach((key, count, error) -> {
+            assertEquals("a", key);
+            assertEquals(1, count);
+            assertEquals(0, error);
+        });
+        assertEquals(1, sketch.size());
+    }
+}
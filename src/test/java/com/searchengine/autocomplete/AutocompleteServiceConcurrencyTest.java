@@ -0,0 +1,172 @@
+package com.searchengine.autocomplete;
+
+import com.searchengine.analytics.TrendingTracker;
+import com.searchengine.indexer.PostingsIndex;
+import com.searchengine.indexer.StandardAnalyzer;
+import com.searchengine.indexer.TextProcessor;
+import com.searchengine.repository.DocumentRepository;
+import com.searchengine.repository.SearchQueryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class AutocompleteServiceConcurrencyTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int WORDS_PER_WRITER = 5_000;
+
+    private final PostingsIndex postingsIndex = newPostingsIndex();
+    private final AutocompleteService service = newService(postingsIndex);
+
+    @Test
+    void insertedWordsStayVisibleWhileRebuildsFoldTheDelta() throws Exception {
+        String[][] words = new String[WRITERS][WORDS_PER_WRITER];
+        AtomicIntegerArray published = new AtomicIntegerArray(WRITERS);
+        AtomicInteger writersLeft = new AtomicInteger(WRITERS);
+        AtomicReference<String> missing = new AtomicReference<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            tasks.add(() -> {
+                for (int i = 0; i < WORDS_PER_WRITER; i++) {
+                    // Fixed width, so no word is a prefix of another
+                    String word = String.format("w%dx%05d", writer, i);
+                    // Indexed before it is inserted, as the crawler does, so rebuilds keep it
+                    postingsIndex.add(word, writer * WORDS_PER_WRITER + i + 1, 1, PostingsIndex.encodePositions(new int[] {0}));
+                    service.insertPage(word);
+                    words[writer][i] = word;
+                    published.set(writer, i + 1);
+                }
+                writersLeft.decrementAndGet();
+                return null;
+            });
+        }
+        for (int r = 0; r < READERS; r++) {
+            tasks.add(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (writersLeft.get() > 0) {
+                    int writer = random.nextInt(WRITERS);
+                    int known = published.get(writer);
+                    if (known == 0) {
+                        continue;
+                    }
+                    String word = words[writer][random.nextInt(known)];
+                    if (!service.contains(word) || !service.getSuggestions(word).contains(word)) {
+                        missing.compareAndSet(null, word);
+                    }
+                }
+                return null;
+            });
+        }
+        // Folds the delta into new bases while words are inserted and looked up
+        tasks.add(() -> {
+            while (writersLeft.get() > 0) {
+                service.rebuild();
+            }
+            return null;
+        });
+        runTogether(tasks);
+
+        assertNull(missing.get(), "an inserted word was missing from both base and delta");
+        service.rebuild();
+        for (String[] inserted : words) {
+            for (String word : inserted) {
+                assertTrue(service.contains(word), word);
+            }
+        }
+        assertTrue(delta().isEmpty(), "delta after a quiet rebuild");
+    }
+
+    @Test
+    void concurrentInsertsOfOneWordAreAllCounted() throws Exception {
+        int threads = 8;
+        int times = 10_000;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            tasks.add(() -> {
+                for (int i = 0; i < times; i++) {
+                    service.insert("concurrency");
+                }
+                return null;
+            });
+        }
+        runTogether(tasks);
+
+        assertEquals((long) threads * times, delta().get("concurrency").longValue());
+        assertEquals(List.of("concurrency"), service.getSuggestions("conc"));
+    }
+
+    private static void runTogether(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> running = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                running.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> task : running) {
+                task.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> delta() {
+        return (Map<String, Long>) ReflectionTestUtils.getField(service, "delta");
+    }
+
+    private static PostingsIndex newPostingsIndex() {
+        PostingsIndex postingsIndex = new PostingsIndex();
+        ReflectionTestUtils.setField(postingsIndex, "flushDocs", Integer.MAX_VALUE);
+        return postingsIndex;
+    }
+
+    private static AutocompleteService newService(PostingsIndex postingsIndex) {
+        StandardAnalyzer analyzer = new StandardAnalyzer();
+        ReflectionTestUtils.setField(analyzer, "unicode", true);
+        ReflectionTestUtils.setField(analyzer, "stemming", true);
+        ReflectionTestUtils.setField(analyzer, "cjkBigrams", true);
+        TextProcessor textProcessor = new TextProcessor();
+        ReflectionTestUtils.setField(textProcessor, "analyzer", analyzer);
+
+        TrendingTracker trendingTracker = new TrendingTracker();
+        ReflectionTestUtils.setField(trendingTracker, "windowMs", 3_600_000L);
+        ReflectionTestUtils.setField(trendingTracker, "bucketCount", 12);
+        ReflectionTestUtils.setField(trendingTracker, "capacity", 100);
+        trendingTracker.init();
+
+        AutocompleteService service = new AutocompleteService();
+        ReflectionTestUtils.setField(service, "documentRepository", mock(DocumentRepository.class));
+        ReflectionTestUtils.setField(service, "searchQueryRepository", mock(SearchQueryRepository.class));
+        ReflectionTestUtils.setField(service, "postingsIndex", postingsIndex);
+        ReflectionTestUtils.setField(service, "trendingTracker", trendingTracker);
+        ReflectionTestUtils.setField(service, "textProcessor", textProcessor);
+        return service;
+    }
+}
@@ -0,0 +1,37 @@
+package com.searchengine.config;
+
+import com.searchengine.search.SearchResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class RedisConfigTest {
+
+    @Test
+    void searchResponseSurvivesL2RoundTrip() {
+        List<SearchResult> results = new ArrayList<>();
+        results.add(new SearchResult(7L, "https://example.com/", "Example", LocalDateTime.of(2024, 5, 1, 12, 30),
+            120, "an example snippet", new ArrayList<>(List.of(new SearchResult.Highlight(3, 10)))));
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
+        response.put("totalHits", 1);
+        response.put("page", 0);
+        response.put("totalPages", 1);
+        response.put("didYouMean", "example");
+
+        GenericJackson2JsonRedisSerializer serializer = RedisConfig.valueSerializer();
+        Object restored = serializer.deserialize(serializer.serialize(response));
+
+        assertEquals(response, restored);
+        List<?> restoredResults = assertInstanceOf(List.class, ((Map<?, ?>) restored).get("results"));
+        assertInstanceOf(SearchResult.class, restoredResults.get(0));
+    }
+}
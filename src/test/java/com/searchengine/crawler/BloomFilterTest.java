@@ -0,0 +1,83 @@
+package com.searchengine.crawler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    private static final int ITEMS = 100_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void addedUrlsAreAlwaysFoundAndOthersRarely() {
+        BloomFilter filter = new BloomFilter(ITEMS, 0.01);
+        for (int i = 0; i < ITEMS; i++) {
+            filter.put(url(i));
+        }
+        for (int i = 0; i < ITEMS; i++) {
+            assertTrue(filter.mightContain(url(i)), url(i));
+        }
+
+        int falsePositives = 0;
+        for (int i = ITEMS; i < 2 * ITEMS; i++) {
+            if (filter.mightContain(url(i))) {
+                falsePositives++;
+            }
+        }
+        // Sized for 1%: allow sampling noise, but not a filter that is much too small or too large
+        double rate = (double) falsePositives / ITEMS;
+        assertTrue(rate < 0.015, "false positive rate " + rate);
+        assertTrue(rate > 0.005, "false positive rate " + rate);
+    }
+
+    @Test
+    void putReportsWhetherTheUrlWasNew() {
+        BloomFilter filter = new BloomFilter(1_000, 0.001);
+        assertFalse(filter.mightContain("https://example.com/"));
+        assertTrue(filter.put("https://example.com/"));
+        assertFalse(filter.put("https://example.com/"));
+        assertTrue(filter.mightContain("https://example.com/"));
+        // Fingerprinted over the UTF-8 bytes, so near-identical strings differ
+        assertFalse(filter.mightContain("https://example.com"));
+        assertTrue(filter.put("https://example.com/ü"));
+        assertFalse(filter.mightContain("https://example.com/u"));
+    }
+
+    @Test
+    void roundTripsThroughAFile() throws IOException {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i += 2) {
+            filter.put(url(i));
+        }
+        Path file = dir.resolve("urls.bloom");
+        filter.writeTo(file);
+
+        BloomFilter read = BloomFilter.readFrom(file);
+        assertEquals(filter.sizeInBytes(), read.sizeInBytes());
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(filter.mightContain(url(i)), read.mightContain(url(i)), url(i));
+        }
+    }
+
+    @Test
+    void rejectsAFileThatIsNoBloomFilter() throws IOException {
+        Path file = dir.resolve("other");
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> BloomFilter.readFrom(file));
+    }
+
+    private static String url(int i) {
+        return "https://site" + i % 97 + ".example.com/page/" + i;
+    }
+}
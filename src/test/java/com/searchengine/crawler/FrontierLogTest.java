@@ -0,0 +1,121 @@
+package com.searchengine.crawler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrontierLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsAppendedUrlsInOrder() throws IOException {
+        try (FrontierLog log = new FrontierLog(dir, 0)) {
+            assertNull(log.next());
+            assertTrue(log.append("https://example.com/a"));
+            assertTrue(log.append("https://例え.jp/パス"));
+            assertEquals(2L * Integer.BYTES + "https://example.com/a".length() + "https://例え.jp/パス".getBytes(StandardCharsets.UTF_8).length,
+                log.unreadBytes());
+
+            FrontierLog.Entry first = log.next();
+            assertEquals(new FrontierLog.Entry(0, "https://example.com/a"), first);
+            assertEquals("https://例え.jp/パス", log.next().url());
+            assertNull(log.next());
+            assertEquals(0, log.unreadBytes());
+
+            assertTrue(log.append("https://example.com/b"));
+            assertEquals("https://example.com/b", log.next().url());
+        }
+    }
+
+    @Test
+    void rejectsEmptyAndOverlongUrls() throws IOException {
+        try (FrontierLog log = new FrontierLog(dir, 0)) {
+            assertFalse(log.append(""));
+            assertFalse(log.append("https://example.com/" + "x".repeat(FrontierLog.MAX_URL_BYTES)));
+            String longest = "x".repeat(FrontierLog.MAX_URL_BYTES);
+            assertTrue(log.append(longest));
+            assertEquals(longest, log.next().url());
+            assertNull(log.next());
+        }
+    }
+
+    @Test
+    void reopenedLogResumesFromTheCheckpoint() throws IOException {
+        long checkpoint;
+        try (FrontierLog log = new FrontierLog(dir, 0)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(url(i));
+            }
+            for (int i = 0; i < 4; i++) {
+                assertEquals(url(i), log.next().url());
+            }
+            checkpoint = log.readPosition();
+            log.checkpoint(checkpoint);
+        }
+
+        try (FrontierLog log = new FrontierLog(dir, checkpoint)) {
+            // New URLs go after the recovered end, not over unread ones
+            log.append(url(10));
+            for (int i = 4; i <= 10; i++) {
+                assertEquals(url(i), log.next().url());
+            }
+            assertNull(log.next());
+        }
+    }
+
+    @Test
+    void recordsRollOverIntoTheNextSegmentAndOldSegmentsAreDropped() throws IOException {
+        // Records of 4 KB do not divide a segment evenly, so one has to skip to the next segment
+        String padding = "p".repeat(FrontierLog.MAX_URL_BYTES - 40);
+        int perSegment = FrontierLog.SEGMENT_BYTES / (Integer.BYTES + url(0).length() + padding.length());
+        int count = perSegment + 100;
+        List<FrontierLog.Entry> read = new ArrayList<>();
+        try (FrontierLog log = new FrontierLog(dir, 0)) {
+            for (int i = 0; i < count; i++) {
+                assertTrue(log.append(url(i) + padding));
+            }
+            for (FrontierLog.Entry entry = log.next(); entry != null; entry = log.next()) {
+                read.add(entry);
+            }
+            assertEquals(count, read.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(url(i) + padding, read.get(i).url());
+            }
+            FrontierLog.Entry firstOfSecond = read.get(perSegment);
+            assertEquals(FrontierLog.SEGMENT_BYTES, firstOfSecond.position());
+            assertTrue(Files.exists(dir.resolve("segment-00000000.log")));
+
+            log.checkpoint(firstOfSecond.position());
+            assertFalse(Files.exists(dir.resolve("segment-00000000.log")));
+            assertTrue(Files.exists(dir.resolve("segment-00000001.log")));
+        }
+
+        // Reopened at the checkpoint, recovery scans the second segment to the real end
+        try (FrontierLog log = new FrontierLog(dir, FrontierLog.SEGMENT_BYTES)) {
+            assertEquals(100L * (Integer.BYTES + url(0).length() + padding.length()), log.unreadBytes());
+            log.append("https://example.com/last");
+            for (int i = perSegment; i < count; i++) {
+                assertEquals(url(i) + padding, log.next().url());
+            }
+            assertEquals("https://example.com/last", log.next().url());
+            assertNull(log.next());
+        }
+    }
+
+    private static String url(int i) {
+        return String.format("https://example.com/page/%06d/", i);
+    }
+}
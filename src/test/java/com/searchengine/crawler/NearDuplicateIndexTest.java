@@ -0,0 +1,94 @@
+package com.searchengine.crawler;
+
+import com.searchengine.indexer.CorpusStats;
+import com.searchengine.repository.DocumentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class NearDuplicateIndexTest {
+
+    private static final long FINGERPRINT = 0x5DEECE66DL;
+
+    private final CorpusStats corpusStats = new CorpusStats();
+    private final NearDuplicateIndex index = newIndex(corpusStats);
+
+    @Test
+    void concurrentCopiesOfOnePageStoreOneCanonicalDocument() throws Exception {
+        int threads = 8;
+        AtomicInteger nextId = new AtomicInteger();
+        AtomicInteger stored = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // One bit apart: each copy is a near duplicate of every other
+                long fingerprint = FINGERPRINT ^ 1L << t;
+                Callable<Long> persist = () -> {
+                    start.await();
+                    return index.findOrAdd(fingerprint, -1, () -> {
+                        int id = nextId.incrementAndGet();
+                        stored.incrementAndGet();
+                        // A slow save widens the window between lookup and add
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+                        corpusStats.add(id, 10);
+                        return id;
+                    });
+                };
+                results.add(pool.submit(persist));
+            }
+            start.countDown();
+
+            int canonical = 0;
+            for (Future<Long> result : results) {
+                long canonicalId = result.get(60, TimeUnit.SECONDS);
+                if (canonicalId < 0) {
+                    canonical++;
+                } else {
+                    assertEquals(1, canonicalId);
+                }
+            }
+            assertEquals(1, canonical);
+            assertEquals(1, stored.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void replacedCopyIsNoOriginalOfItsSuccessor() {
+        corpusStats.add(7, 10);
+        index.add(7, FINGERPRINT);
+
+        assertEquals(7, index.findOrAdd(FINGERPRINT, -1, () -> 8));
+        long stored = index.findOrAdd(FINGERPRINT, 7, () -> {
+            corpusStats.add(8, 10);
+            return 8;
+        });
+        assertEquals(-1, stored);
+        assertEquals(8, index.find(FINGERPRINT, 7));
+    }
+
+    private static NearDuplicateIndex newIndex(CorpusStats corpusStats) {
+        NearDuplicateIndex index = new NearDuplicateIndex();
+        ReflectionTestUtils.setField(index, "maxHamming", 3);
+        ReflectionTestUtils.setField(index, "docRepo", mock(DocumentRepository.class));
+        ReflectionTestUtils.setField(index, "corpusStats", corpusStats);
+        index.loadFromDatabase();
+        return index;
+    }
+}
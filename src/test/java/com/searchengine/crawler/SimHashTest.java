@@ -0,0 +1,102 @@
+package com.searchengine.crawler;
+
+import com.searchengine.indexer.AnalyzedText;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimHashTest {
+
+    private static final int PAIRS = 1_000;
+
+    @Test
+    void sameTermsGiveTheSameFingerprint() {
+        Random random = new Random(23);
+        AnalyzedText page = page(random, 300);
+        List<Map.Entry<String, int[]>> terms = new ArrayList<>(page.getPositions().entrySet());
+        Collections.shuffle(terms, random);
+        Map<String, int[]> shuffled = new LinkedHashMap<>();
+        terms.forEach(term -> shuffled.put(term.getKey(), term.getValue()));
+
+        assertEquals(SimHash.of(page), SimHash.of(new AnalyzedText(shuffled, page.getLength())));
+        assertEquals(0L, SimHash.of(new AnalyzedText(Map.of(), 0)));
+    }
+
+    @Test
+    void termsAreWeightedByFrequency() {
+        Map<String, int[]> once = new LinkedHashMap<>();
+        once.put("search", new int[] {0});
+        once.put("engine", new int[] {1});
+        Map<String, int[]> repeated = new LinkedHashMap<>(once);
+        repeated.put("search", new int[] {0, 2, 4, 6, 8});
+
+        long a = SimHash.of(new AnalyzedText(once, 2));
+        long b = SimHash.of(new AnalyzedText(repeated, 6));
+        assertNotEquals(a, b);
+        // A term that outweighs all others sets every bit to its own hash
+        assertEquals(SimHash.of(new AnalyzedText(Map.of("search", new int[] {0}), 1)), b);
+    }
+
+    @Test
+    void nearDuplicatesAreFewBitsApartAndUnrelatedPagesAboutHalf() {
+        Random random = new Random(23);
+        long nearTotal = 0;
+        int nearMax = 0;
+        long farTotal = 0;
+        int farMin = Long.SIZE;
+        for (int n = 0; n < PAIRS; n++) {
+            AnalyzedText page = page(random, 300);
+            Map<String, int[]> edited = new LinkedHashMap<>(page.getPositions());
+            edited.put("edited" + n, new int[] {page.getLength()});
+            long fingerprint = SimHash.of(page);
+
+            int near = SimHash.distance(fingerprint, SimHash.of(new AnalyzedText(edited, page.getLength() + 1)));
+            nearTotal += near;
+            nearMax = Math.max(nearMax, near);
+            int far = SimHash.distance(fingerprint, SimHash.of(page(random, 300)));
+            farTotal += far;
+            farMin = Math.min(farMin, far);
+        }
+
+        // One added word in 300 moves a bit or two, well inside crawler.dedup.max-hamming on average
+        assertTrue((double) nearTotal / PAIRS < 2, "mean near-duplicate distance " + (double) nearTotal / PAIRS);
+        assertTrue(nearMax <= 8, "max near-duplicate distance " + nearMax);
+        // Independent pages differ in about half of the 64 bits, never close to the threshold
+        double farMean = (double) farTotal / PAIRS;
+        assertTrue(farMean > 28 && farMean < 36, "mean unrelated distance " + farMean);
+        assertTrue(farMin > 10, "min unrelated distance " + farMin);
+    }
+
+    @Test
+    void distanceCountsDifferingBits() {
+        assertEquals(0, SimHash.distance(0x1234L, 0x1234L));
+        assertEquals(1, SimHash.distance(0L, 1L << 63));
+        assertEquals(64, SimHash.distance(0L, -1L));
+        assertEquals(4, SimHash.distance(0b1010_1010L, 0b0101_1010L));
+    }
+
+    /**
+     * Words drawn from a 5,000-word vocabulary, with their positions
+     */
+    private static AnalyzedText page(Random random, int words) {
+        Map<String, int[]> positions = new LinkedHashMap<>();
+        for (int i = 0; i < words; i++) {
+            String term = "w" + random.nextInt(5_000);
+            int[] list = positions.get(term);
+            list = list == null ? new int[1] : Arrays.copyOf(list, list.length + 1);
+            list[list.length - 1] = i;
+            positions.put(term, list);
+        }
+        return new AnalyzedText(positions, words);
+    }
+}
@@ -0,0 +1,63 @@
+package com.searchengine.crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UrlCanonicalizerTest {
+
+    // Spelling -> canonical form
+    private static final Map<String, String> CASES = Map.ofEntries(
+        Map.entry("HTTP://Example.COM/Path", "http://example.com/Path"),
+        Map.entry("https://example.com", "https://example.com/"),
+        Map.entry("https://example.com/a/../b/./c", "https://example.com/b/c"),
+        Map.entry("https://example.com/page#section-2", "https://example.com/page"),
+        Map.entry("  https://example.com/x  ", "https://example.com/x"),
+        // Default ports go, others stay, and 443 is only the default for https
+        Map.entry("http://example.com:80/", "http://example.com/"),
+        Map.entry("https://example.com:443/", "https://example.com/"),
+        Map.entry("http://example.com:443/", "http://example.com:443/"),
+        Map.entry("https://example.com:8443/x", "https://example.com:8443/x"),
+        Map.entry("https://user:pw@Example.com/", "https://user:pw@example.com/"),
+        // Tracking, session and print parameters go, in any case; the rest are sorted
+        Map.entry("https://example.com/p?utm_source=news&b=2&a=1&fbclid=9&UTM_Campaign=x",
+            "https://example.com/p?a=1&b=2"),
+        Map.entry("https://example.com/p?gclid=1&print", "https://example.com/p"),
+        Map.entry("https://example.com/p?PHPSESSID=abc&id=7", "https://example.com/p?id=7"),
+        Map.entry("https://example.com/p?a=1&&b=2&", "https://example.com/p?a=1&b=2"),
+        Map.entry("https://example.com/p;jsessionid=0A1B?x=1", "https://example.com/p?x=1"),
+        Map.entry("https://example.com/p;JSESSIONID=0A1B", "https://example.com/p"),
+        // Escapes and parameter values are kept as written
+        Map.entry("https://example.com/a%20b?q=%C3%A9&Q=Caf%C3%A9", "https://example.com/a%20b?Q=Caf%C3%A9&q=%C3%A9"),
+        // Anything without a scheme and host is left alone
+        Map.entry("not a url", "not a url"),
+        Map.entry("/relative/path?utm_source=x", "/relative/path?utm_source=x"),
+        Map.entry("mailto:someone@example.com", "mailto:someone@example.com")
+    );
+
+    @Test
+    void reducesSpellingsToOneForm() {
+        CASES.forEach((url, canonical) -> assertEquals(canonical, UrlCanonicalizer.canonicalize(url), url));
+    }
+
+    @Test
+    void canonicalFormsAreFixedPoints() {
+        CASES.forEach((url, canonical) ->
+            assertEquals(canonical, UrlCanonicalizer.canonicalize(UrlCanonicalizer.canonicalize(url)), url));
+    }
+
+    @Test
+    void variantsOfOnePageMeet() {
+        String canonical = UrlCanonicalizer.canonicalize("https://example.com/news/story?id=42");
+        for (String variant : new String[] {
+            "HTTPS://EXAMPLE.COM:443/news/story?id=42",
+            "https://example.com/news/./story?id=42#comments",
+            "https://example.com/news/story;jsessionid=XYZ?utm_medium=email&id=42",
+            "https://example.com/archive/../news/story?id=42&fbclid=abc&sid=9"
+        }) {
+            assertEquals(canonical, UrlCanonicalizer.canonicalize(variant), variant);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.searchengine.indexer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The regex chain TextProcessor used before the single-pass scanner, kept as
+ * the reference its output is checked against and as the baseline of the
+ * analyze benchmark. Matches {@link StandardAnalyzer} with unicode, stemming
+ * and cjk-bigrams off.
+ */
+public final class LegacyTextChain {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "the", "is", "in", "at", "of", "a", "an", "and", "or", "to", "it",
+        "this", "that", "was", "for", "on", "are", "with", "as", "be",
+        "by", "from", "but", "not", "have", "he", "she", "they", "we", "you",
+        "will", "can", "been", "has", "had", "do", "does", "did", "would",
+        "could", "should", "may", "might", "must", "shall", "being", "were",
+        "about", "after", "all", "also", "any", "back", "because", "before",
+        "between", "both", "come", "day", "each", "even", "find", "first",
+        "get", "give", "go", "good", "great", "hand", "here", "him", "his",
+        "how", "into", "its", "just", "know", "last", "leave", "life", "like",
+        "little", "long", "look", "made", "make", "man", "many", "me", "men",
+        "more", "most", "much", "my", "need", "never", "new", "no", "now",
+        "off", "old", "one", "only", "other", "our", "out", "over", "own",
+        "part", "people", "place", "put", "right", "same", "say", "see",
+        "some", "still", "such", "take", "tell", "than", "their", "them",
+        "then", "there", "these", "thing", "think", "those", "through",
+        "time", "two", "under", "up", "us", "use", "very", "want", "way",
+        "well", "what", "when", "where", "which", "while", "who", "why",
+        "work", "world", "year", "your"
+    );
+
+    private LegacyTextChain() {
+    }
+
+    /**
+     * Clean the raw text by converting to lowercase and removing special characters
+     */
+    public static String clean(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return "";
+        }
+        return raw.toLowerCase()
+                  .replaceAll("[^a-z0-9\\s]", " ")
+                  .replaceAll("\\s+", " ")
+                  .trim();
+    }
+
+    /**
+     * Tokenize the cleaned text by filtering out stop words and short words
+     */
+    public static String tokenize(String cleaned) {
+        if (cleaned == null || cleaned.isEmpty()) {
+            return "";
+        }
+        return Arrays.stream(cleaned.split("\\s+"))
+            .filter(w -> w.length() > 2)
+            .filter(w -> !STOP_WORDS.contains(w))
+            .distinct()
+            .collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Split a token string back into its terms, as the crawler did for autocomplete
+     */
+    public static List<String> toList(String tokens) {
+        if (tokens == null || tokens.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.asList(tokens.split("\\s+"));
+    }
+
+    /**
+     * Analyze cleaned text for indexing: unlike {@link #tokenize}, repeats are kept
+     * and every term gets the word positions it occurs at.
+     */
+    public static AnalyzedText analyze(String cleaned) {
+        if (cleaned == null || cleaned.isEmpty()) {
+            return new AnalyzedText(Map.of(), 0);
+        }
+        String[] words = cleaned.split("\\s+");
+        Map<String, int[]> positions = new LinkedHashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        int length = 0;
+        for (int pos = 0; pos < words.length; pos++) {
+            String w = words[pos];
+            if (w.length() <= 2 || STOP_WORDS.contains(w)) {
+                continue;
+            }
+            int n = counts.merge(w, 1, Integer::sum);
+            int[] list = positions.get(w);
+            if (list == null || list.length < n) {
+                list = list == null ? new int[4] : Arrays.copyOf(list, list.length * 2);
+                positions.put(w, list);
+            }
+            list[n - 1] = pos;
+            length++;
+        }
+        positions.replaceAll((term, list) -> Arrays.copyOf(list, counts.get(term)));
+        return new AnalyzedText(positions, length);
+    }
+}
@@ -0,0 +1,82 @@
+package com.searchengine.indexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Words and stems from Porter's paper and the reference implementation's
+ * vocabulary, grouped by the step whose rules they exercise.
+ */
+class PorterStemmerTest {
+
+    private static final String[][] STEMS = {
+        // Step 1a: plurals
+        {"caresses", "caress"}, {"ponies", "poni"}, {"ties", "ti"}, {"caress", "caress"}, {"cats", "cat"},
+        // Step 1b: -ed and -ing, then restoring e or undoubling
+        {"feed", "feed"}, {"agreed", "agre"}, {"plastered", "plaster"}, {"bled", "bled"}, {"motoring", "motor"},
+        {"sing", "sing"}, {"conflated", "conflat"}, {"troubled", "troubl"}, {"sized", "size"}, {"hopping", "hop"},
+        {"tanned", "tan"}, {"falling", "fall"}, {"hissing", "hiss"}, {"fizzed", "fizz"}, {"failing", "fail"},
+        {"filing", "file"},
+        // Step 1c: y to i
+        {"happy", "happi"}, {"sky", "sky"},
+        // Step 2: double suffixes
+        {"relational", "relat"}, {"conditional", "condit"}, {"rational", "ration"}, {"valency", "valenc"},
+        {"hesitancy", "hesit"}, {"digitizer", "digit"}, {"conformably", "conform"}, {"radically", "radic"},
+        {"differently", "differ"}, {"vilely", "vile"}, {"analogously", "analog"}, {"vietnamization", "vietnam"},
+        {"predication", "predic"}, {"operator", "oper"}, {"feudalism", "feudal"}, {"decisiveness", "decis"},
+        {"hopefulness", "hope"}, {"callousness", "callous"}, {"formality", "formal"}, {"sensitivity", "sensit"},
+        {"sensibility", "sensibl"},
+        // Step 3: -ic-, -full, -ness etc.
+        {"triplicate", "triplic"}, {"formative", "form"}, {"formalize", "formal"}, {"electricity", "electr"},
+        {"electrical", "electr"}, {"hopeful", "hope"}, {"goodness", "good"},
+        // Step 4: single suffixes on stems with m > 1
+        {"revival", "reviv"}, {"allowance", "allow"}, {"inference", "infer"}, {"airliner", "airlin"},
+        {"gyroscopic", "gyroscop"}, {"adjustable", "adjust"}, {"defensible", "defens"}, {"irritant", "irrit"},
+        {"replacement", "replac"}, {"adjustment", "adjust"}, {"dependent", "depend"}, {"adoption", "adopt"},
+        {"homologous", "homolog"}, {"communism", "commun"}, {"activate", "activ"}, {"angularity", "angular"},
+        {"effective", "effect"}, {"bowdlerize", "bowdler"}, {"agreement", "agreement"},
+        // Step 5: final e and ll
+        {"probate", "probat"}, {"rate", "rate"}, {"cease", "ceas"}, {"controlling", "control"}, {"rolling", "roll"},
+        // Several steps in a row
+        {"generalizations", "gener"}, {"oscillators", "oscil"}, {"connections", "connect"}, {"connective", "connect"},
+        {"connected", "connect"}, {"connecting", "connect"},
+        // The reference implementation's departures from the paper: -bli to -ble, -logi to -log
+        {"possibly", "possibl"}, {"archaeology", "archaeolog"}
+    };
+
+    private final PorterStemmer stemmer = new PorterStemmer();
+
+    @Test
+    void stemsTheReferenceVocabulary() {
+        for (String[] pair : STEMS) {
+            assertEquals(pair[1], stem(pair[0]), pair[0]);
+        }
+    }
+
+    @Test
+    void leavesShortWordsAlone() {
+        for (String word : new String[] {"a", "is", "as", "ys"}) {
+            assertEquals(word, stem(word));
+        }
+    }
+
+    @Test
+    void stemsInPlaceWithinALargerBuffer() {
+        // Only word[0, length) is read; the stem is written back over it
+        char[] buffer = "relational and more".toCharArray();
+        int length = stemmer.stem(buffer, "relational".length());
+        assertEquals("relat", new String(buffer, 0, length));
+
+        // One stemmer is reused across words, as the analyzer does
+        assertEquals("hop", stem("hopping"));
+        assertEquals("happi", stem("happy"));
+    }
+
+    private String stem(String word) {
+        char[] buffer = Arrays.copyOf(word.toCharArray(), word.length() + 1);
+        return new String(buffer, 0, stemmer.stem(buffer, word.length()));
+    }
+}
@@ -0,0 +1,181 @@
+package com.searchengine.indexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostingsListTest {
+
+    private static final int[] SIZES = {1, 127, 128, 129, 255, 256, 257, 1_000};
+
+    @Test
+    void roundTripsAroundBlockBoundaries() {
+        Random random = new Random(1);
+        for (int n : SIZES) {
+            // Small, medium and large gaps give blocks of different bit widths
+            for (int maxGap : new int[] {1, 100, 100_000}) {
+                TreeMap<Integer, Posting> expected = new TreeMap<>();
+                PostingsList list = new PostingsList();
+                int doc = random.nextInt(maxGap);
+                for (int i = 0; i < n; i++) {
+                    Posting posting = randomPosting(random);
+                    assertFalse(list.add(doc, posting.freq, PostingsIndex.encodePositions(posting.positions)));
+                    expected.put(doc, posting);
+                    doc += 1 + random.nextInt(maxGap);
+                }
+
+                assertEquals(n, list.size());
+                assertEquals(n / PostingsList.BLOCK_SIZE, list.sealedBlocks(), "blocks of " + n);
+                assertPostings(expected, list.cursor(), "n=" + n + " gap=" + maxGap);
+                assertPostings(expected, list.cursor(list.decodeSealed()), "decoded n=" + n + " gap=" + maxGap);
+            }
+        }
+    }
+
+    @Test
+    void deltasAndFrequenciesAtFullBitWidth() {
+        TreeMap<Integer, Posting> expected = new TreeMap<>();
+        // First block: 127 adjacent docs, then a jump needing all 31 bits; one frequency needs 31 bits too
+        for (int doc = 1; doc < PostingsList.BLOCK_SIZE; doc++) {
+            expected.put(doc, new Posting(1, new int[] {doc}));
+        }
+        expected.put(Integer.MAX_VALUE - 300, new Posting(Integer.MAX_VALUE, new int[0]));
+        // Second block: zero-width deltas right after the jump
+        for (int i = 1; i <= PostingsList.BLOCK_SIZE; i++) {
+            expected.put(Integer.MAX_VALUE - 300 + i, new Posting(2, new int[] {0, i}));
+        }
+        // Tail: the highest doc id a cursor can return
+        expected.put(Integer.MAX_VALUE - 1, new Posting(3, new int[] {1, 2, 3}));
+
+        PostingsList list = new PostingsList();
+        for (Map.Entry<Integer, Posting> e : expected.entrySet()) {
+            list.add(e.getKey(), e.getValue().freq, PostingsIndex.encodePositions(e.getValue().positions));
+        }
+
+        assertEquals(2, list.sealedBlocks());
+        assertEquals(Integer.MAX_VALUE, list.maxFreq());
+        assertPostings(expected, list.cursor(), "full width");
+        assertPostings(expected, list.cursor(list.decodeSealed()), "decoded full width");
+
+        PostingsCursor cursor = list.cursor();
+        assertEquals(Integer.MAX_VALUE - 300, cursor.advance(PostingsList.BLOCK_SIZE));
+        assertEquals(Integer.MAX_VALUE, cursor.freq());
+        assertEquals(Integer.MAX_VALUE - 1, cursor.advance(Integer.MAX_VALUE - 2));
+        assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.nextDoc());
+    }
+
+    @Test
+    void docZeroRoundTrips() {
+        // Doc 0 at the start of the first block has a delta of -1, packed at 32 bits
+        TreeMap<Integer, Posting> expected = new TreeMap<>();
+        PostingsList list = new PostingsList();
+        for (int doc = 0; doc <= PostingsList.BLOCK_SIZE; doc++) {
+            expected.put(doc, new Posting(1, new int[] {doc}));
+            list.add(doc, 1, PostingsIndex.encodePositions(new int[] {doc}));
+        }
+
+        assertEquals(1, list.sealedBlocks());
+        assertPostings(expected, list.cursor(), "from doc 0");
+    }
+
+    @Test
+    void advanceAndShallowAdvanceLandOnEveryBlock() {
+        PostingsList list = new PostingsList();
+        int n = 3 * PostingsList.BLOCK_SIZE + 10;
+        for (int i = 0; i < n; i++) {
+            // Frequencies peak at the middle of each block
+            int freq = i % PostingsList.BLOCK_SIZE == 64 ? 100 + i / PostingsList.BLOCK_SIZE : 1;
+            list.add(3 * i + 1, freq, null);
+        }
+
+        for (int target = 0; target <= 3 * n; target++) {
+            PostingsCursor cursor = list.cursor();
+            int expected = target > 3 * (n - 1) + 1 ? PostingsCursor.NO_MORE_DOCS : target + (1 - target % 3 + 3) % 3;
+            assertEquals(expected, cursor.advance(target), "advance(" + target + ")");
+        }
+
+        PostingsCursor cursor = list.cursor();
+        for (int b = 0; b < 3; b++) {
+            int lastDoc = 3 * ((b + 1) * PostingsList.BLOCK_SIZE - 1) + 1;
+            assertEquals(lastDoc, cursor.advanceShallow(lastDoc));
+            assertEquals(100 + b, cursor.blockMaxFreq());
+        }
+        assertEquals(3 * (n - 1) + 1, cursor.advanceShallow(3 * (n - 1)));
+        assertEquals(1, cursor.blockMaxFreq());
+        assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.advanceShallow(3 * n));
+        // Positions were never stored
+        assertEquals(1, cursor.nextDoc());
+        assertEquals(-1, cursor.nextPosition());
+    }
+
+    @Test
+    void addingIntoSealedBlocksRewritesThem() {
+        Random random = new Random(2);
+        TreeMap<Integer, Posting> expected = new TreeMap<>();
+        PostingsList list = new PostingsList();
+        for (int doc = 0; doc < 600; doc += 2) {
+            Posting posting = randomPosting(random);
+            list.add(doc, posting.freq, PostingsIndex.encodePositions(posting.positions));
+            expected.put(doc, posting);
+        }
+        PostingsList.DecodedBlocks stale = list.decodeSealed();
+
+        // A new doc inside the first block and a replaced one inside the second
+        Posting inserted = new Posting(7, new int[] {3, 9});
+        assertTrue(list.add(5, inserted.freq, PostingsIndex.encodePositions(inserted.positions)));
+        expected.put(5, inserted);
+        Posting replaced = new Posting(2, new int[] {1, 4});
+        assertTrue(list.add(300, replaced.freq, PostingsIndex.encodePositions(replaced.positions)));
+        expected.put(300, replaced);
+
+        assertEquals(expected.size(), list.size());
+        assertEquals(expected.size() / PostingsList.BLOCK_SIZE, list.sealedBlocks());
+        assertPostings(expected, list.cursor(), "rewritten");
+        // A copy decoded before the rewrite is ignored
+        assertPostings(expected, list.cursor(stale), "stale copy");
+        assertPostings(expected, list.cursor(list.decodeSealed()), "fresh copy");
+    }
+
+    private static void assertPostings(TreeMap<Integer, Posting> expected, PostingsCursor cursor, String label) {
+        assertEquals(expected.size(), cursor.cost(), label);
+        for (Map.Entry<Integer, Posting> e : expected.entrySet()) {
+            assertEquals(e.getKey().longValue(), cursor.nextDoc(), label);
+            Posting posting = e.getValue();
+            assertEquals(posting.freq, cursor.freq(), label + " freq of " + e.getKey());
+            int[] positions = new int[posting.positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = cursor.nextPosition();
+            }
+            assertArrayEquals(posting.positions, positions, label + " positions of " + e.getKey());
+            assertEquals(-1, cursor.nextPosition(), label);
+        }
+        assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.nextDoc(), label);
+        assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.nextDoc(), label);
+    }
+
+    private static Posting randomPosting(Random random) {
+        int freq = 1 + random.nextInt(50);
+        int[] positions = new int[Math.min(freq, random.nextInt(6))];
+        int position = 0;
+        for (int i = 0; i < positions.length; i++) {
+            position += random.nextInt(1_000);
+            positions[i] = position++;
+        }
+        return new Posting(freq, positions);
+    }
+
+    private record Posting(int freq, int[] positions) {
+        @Override
+        public String toString() {
+            return freq + " " + Arrays.toString(positions);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.searchengine.indexer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Segments written, reopened and merged on disk, and the merge policy that
+ * picks them.
+ */
+class SegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writtenSegmentReadsBackTermsPostingsAndLengths() throws IOException {
+        Random random = new Random(21);
+        // Sorted by UTF-8 bytes, so "zebra" comes before the accented and CJK terms
+        Map<String, TreeMap<Integer, Posting>> terms = new TreeMap<>(SegmentTest::compareUtf8);
+        terms.put("apple", postings(random, 1));
+        terms.put("banana", postings(random, PostingsList.BLOCK_SIZE));
+        terms.put("cherry", postings(random, PostingsList.BLOCK_SIZE + 1));
+        terms.put("zebra", postings(random, 3 * PostingsList.BLOCK_SIZE + 45));
+        terms.put("café", postings(random, 2));
+        terms.put("東京", postings(random, 5));
+        Map<Integer, Integer> lengths = lengths(terms);
+
+        Segment segment = write("s1", terms, lengths);
+        Segment reopened = Segment.open(dir, "s1");
+
+        for (Segment s : List.of(segment, reopened)) {
+            assertEquals(terms.size(), s.termCount());
+            assertEquals(lengths.size(), s.docCount());
+            int ord = 0;
+            for (Map.Entry<String, TreeMap<Integer, Posting>> term : terms.entrySet()) {
+                assertEquals(ord, s.find(term.getKey().getBytes(StandardCharsets.UTF_8)), term.getKey());
+                assertEquals(term.getKey(), s.term(ord));
+                assertEquals(term.getValue().size(), s.docFreq(ord), term.getKey());
+                assertPostings(term.getValue(), s.cursor(ord), term.getKey());
+                assertPostings(term.getValue(), s.cursor(ord, s.decode(ord)), "decoded " + term.getKey());
+                ord++;
+            }
+            assertEquals(-1, s.find("apples".getBytes(StandardCharsets.UTF_8)));
+            assertEquals(-1, s.find(new byte[0]));
+
+            int i = 0;
+            for (Map.Entry<Integer, Integer> doc : new TreeMap<>(lengths).entrySet()) {
+                assertEquals(doc.getKey().longValue(), s.docAt(i));
+                assertEquals(doc.getValue().longValue(), s.lengthAt(i));
+                assertTrue(s.containsDoc(doc.getKey()));
+                assertEquals(lengths.containsKey(doc.getKey() + 1), s.containsDoc(doc.getKey() + 1));
+                i++;
+            }
+        }
+    }
+
+    @Test
+    void cursorSkipsBlocksByTheirLastDoc() throws IOException {
+        TreeMap<Integer, Posting> postings = new TreeMap<>();
+        int n = 3 * PostingsList.BLOCK_SIZE + 10;
+        for (int i = 0; i < n; i++) {
+            int freq = i % PostingsList.BLOCK_SIZE == 64 ? 100 + i / PostingsList.BLOCK_SIZE : 1;
+            postings.put(3 * i + 1, new Posting(freq, new int[] {i}));
+        }
+        Map<String, TreeMap<Integer, Posting>> terms = Map.of("term", postings);
+        Segment segment = write("s1", terms, lengths(terms));
+
+        for (int target = 0; target <= 3 * n; target += 7) {
+            Integer expected = postings.ceilingKey(target);
+            Segment.Cursor cursor = segment.cursor(0);
+            assertEquals(expected == null ? PostingsCursor.NO_MORE_DOCS : expected, cursor.advance(target), "advance(" + target + ")");
+            if (expected != null) {
+                assertEquals(postings.get(expected).positions[0], cursor.nextPosition());
+            }
+        }
+
+        Segment.Cursor cursor = segment.cursor(0);
+        for (int b = 0; b <= 3; b++) {
+            int lastDoc = 3 * (Math.min((b + 1) * PostingsList.BLOCK_SIZE, n) - 1) + 1;
+            assertEquals(lastDoc, cursor.advanceShallow(lastDoc));
+            assertEquals(b < 3 ? 100 + b : 1, cursor.blockMaxFreq());
+        }
+        assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.advanceShallow(3 * n));
+    }
+
+    @Test
+    void writerRejectsTermsAndDocsOutOfOrder() throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(dir, "s1")) {
+            writer.startTerm(bytes("banana"));
+            writer.addPosting(5, 1, null);
+            assertThrows(IllegalArgumentException.class, () -> writer.addPosting(5, 1, null));
+            assertThrows(IllegalArgumentException.class, () -> writer.addPosting(3, 1, null));
+            writer.finishTerm();
+            assertThrows(IllegalArgumentException.class, () -> writer.startTerm(bytes("apple")));
+            assertThrows(IllegalArgumentException.class, () -> writer.startTerm(bytes("banana")));
+            writer.addDoc(5, 1);
+            assertThrows(IllegalArgumentException.class, () -> writer.addDoc(5, 1));
+        }
+    }
+
+    @Test
+    void mergeDropsDeletedDocumentsAndKeepsTheNewestPosting() throws IOException {
+        Map<String, TreeMap<Integer, Posting>> older = new TreeMap<>(SegmentTest::compareUtf8);
+        older.put("apple", new TreeMap<>());
+        for (int doc = 1; doc <= 200; doc++) {
+            older.get("apple").put(doc, new Posting(1, new int[] {0}));
+        }
+        older.put("banana", new TreeMap<>(Map.of(5, new Posting(2, new int[] {1, 2}), 7, new Posting(1, new int[] {3}))));
+        // Only in a deleted document: the merged segment has no such term
+        older.put("durian", new TreeMap<>(Map.of(7, new Posting(1, new int[] {4}))));
+        Map<Integer, Integer> olderLengths = lengths(older);
+
+        // Doc 5 was re-indexed into the newer segment with different postings
+        Map<String, TreeMap<Integer, Posting>> newer = new TreeMap<>(SegmentTest::compareUtf8);
+        newer.put("apple", new TreeMap<>(Map.of(5, new Posting(9, new int[] {0, 1, 2, 3, 4, 5, 6, 7, 8}))));
+        newer.put("cherry", new TreeMap<>(Map.of(5, new Posting(1, new int[] {9}), 300, new Posting(1, new int[] {0}))));
+        Map<Integer, Integer> newerLengths = Map.of(5, 10, 300, 1);
+
+        Segment a = write("a", older, olderLengths);
+        Segment b = write("b", newer, newerLengths);
+        LiveDocs liveDocs = new LiveDocs();
+        liveDocs.delete(7);
+        liveDocs.delete(150);
+        Map<String, Integer> dropped = new HashMap<>();
+
+        Segment merged = SegmentMerger.merge(List.of(a, b), liveDocs, dir, "ab", dropped);
+
+        assertEquals(Map.of("apple", 2, "banana", 1, "durian", 1), dropped);
+        assertEquals(3, merged.termCount());
+        assertEquals(-1, merged.find(bytes("durian")));
+
+        TreeMap<Integer, Posting> apple = new TreeMap<>(older.get("apple"));
+        apple.remove(7);
+        apple.remove(150);
+        apple.put(5, newer.get("apple").get(5));
+        assertPostings(apple, merged.cursor(merged.find(bytes("apple"))), "apple");
+        assertPostings(new TreeMap<>(Map.of(5, older.get("banana").get(5))),
+            merged.cursor(merged.find(bytes("banana"))), "banana");
+        assertPostings(newer.get("cherry"), merged.cursor(merged.find(bytes("cherry"))), "cherry");
+
+        assertEquals(199, merged.docCount());
+        assertFalse(merged.containsDoc(7));
+        assertFalse(merged.containsDoc(150));
+        for (int i = 0; i < merged.docCount(); i++) {
+            int doc = merged.docAt(i);
+            int expected = newerLengths.containsKey(doc) ? newerLengths.get(doc) : olderLengths.get(doc);
+            assertEquals(expected, merged.lengthAt(i), "length of " + doc);
+        }
+    }
+
+    @Test
+    void mergingOneSegmentCompactsIt() throws IOException {
+        Random random = new Random(3);
+        Map<String, TreeMap<Integer, Posting>> terms = Map.of("term", postings(random, 2 * PostingsList.BLOCK_SIZE));
+        Segment segment = write("s1", terms, lengths(terms));
+        LiveDocs liveDocs = new LiveDocs();
+        TreeMap<Integer, Posting> live = new TreeMap<>(terms.get("term"));
+        // Every other document, so both blocks shrink below a full block
+        for (Integer doc : new ArrayList<>(live.keySet())) {
+            if (doc % 2 == 0) {
+                liveDocs.delete(doc);
+                live.remove(doc);
+            }
+        }
+        Map<String, Integer> dropped = new HashMap<>();
+
+        Segment compacted = SegmentMerger.merge(List.of(segment), liveDocs, dir, "s2", dropped);
+
+        assertEquals(Map.of("term", terms.get("term").size() - live.size()), dropped);
+        assertEquals(live.size(), compacted.docFreq(0));
+        assertEquals(live.size(), compacted.docCount());
+        assertPostings(live, compacted.cursor(0), "compacted");
+        assertTrue(compacted.sizeInBytes() < segment.sizeInBytes());
+    }
+
+    @Test
+    void mergePolicyPicksTheSmallestAdjacentRunOfOneTier() throws IOException {
+        // Tiers of 3: below 30 docs, below 90, below 270
+        TieredMergePolicy policy = new TieredMergePolicy(3, 10, Long.MAX_VALUE);
+        Segment s5a = docs("s5a", 5);
+        Segment s5b = docs("s5b", 5);
+        Segment s5c = docs("s5c", 5);
+        Segment s20 = docs("s20", 20);
+        Segment s100a = docs("s100a", 100);
+        Segment s100b = docs("s100b", 100);
+        Segment s100c = docs("s100c", 100);
+
+        assertEquals(List.of(), policy.findMerge(List.of()));
+        assertEquals(List.of(), policy.findMerge(List.of(s5a, s5b)));
+        assertEquals(List.of(s5a, s5b, s20), policy.findMerge(List.of(s5a, s5b, s20)));
+        // Small segments are only merged with adjacent ones
+        assertEquals(List.of(), policy.findMerge(List.of(s5a, s100a, s5b, s5c)));
+        assertEquals(List.of(s5a, s5b, s5c), policy.findMerge(List.of(s100a, s5a, s5b, s5c)));
+        // Both runs are due; the smaller one goes first
+        assertEquals(List.of(s5a, s5b, s5c),
+            policy.findMerge(List.of(s100a, s100b, s100c, s5a, s5b, s5c)));
+        assertEquals(List.of(s100a, s100b, s100c), policy.findMerge(List.of(s100a, s100b, s100c, s5a)));
+
+        // A merge larger than the cap is skipped
+        long cap = s100a.sizeInBytes() * 3 - 1;
+        TieredMergePolicy capped = new TieredMergePolicy(3, 10, cap);
+        assertEquals(List.of(), capped.findMerge(List.of(s100a, s100b, s100c)));
+        assertEquals(List.of(s5a, s5b, s5c), capped.findMerge(List.of(s100a, s100b, s100c, s5a, s5b, s5c)));
+    }
+
+    private Segment write(String name, Map<String, TreeMap<Integer, Posting>> terms,
+                          Map<Integer, Integer> lengths) throws IOException {
+        List<String> sorted = new ArrayList<>(terms.keySet());
+        sorted.sort(SegmentTest::compareUtf8);
+        try (SegmentWriter writer = new SegmentWriter(dir, name)) {
+            for (String term : sorted) {
+                writer.startTerm(bytes(term));
+                for (Map.Entry<Integer, Posting> e : terms.get(term).entrySet()) {
+                    Posting posting = e.getValue();
+                    writer.addPosting(e.getKey(), posting.freq, PostingsIndex.encodePositions(posting.positions));
+                }
+                writer.finishTerm();
+            }
+            for (Map.Entry<Integer, Integer> doc : new TreeMap<>(lengths).entrySet()) {
+                writer.addDoc(doc.getKey(), doc.getValue());
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * A segment of count documents and no terms
+     */
+    private Segment docs(String name, int count) throws IOException {
+        Map<Integer, Integer> lengths = new HashMap<>();
+        for (int doc = 1; doc <= count; doc++) {
+            lengths.put(doc, 10);
+        }
+        return write(name, Map.of(), lengths);
+    }
+
+    private static void assertPostings(TreeMap<Integer, Posting> expected, PostingsCursor cursor, String label) {
+        assertEquals(expected.size(), cursor.cost(), label);
+        for (Map.Entry<Integer, Posting> e : expected.entrySet()) {
+            assertEquals(e.getKey().longValue(), cursor.nextDoc(), label);
+            Posting posting = e.getValue();
+            assertEquals(posting.freq, cursor.freq(), label + " freq of " + e.getKey());
+            int[] positions = new int[posting.positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = cursor.nextPosition();
+            }
+            assertArrayEquals(posting.positions, positions, label + " positions of " + e.getKey());
+        }
+        assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.nextDoc(), label);
+    }
+
+    private static TreeMap<Integer, Posting> postings(Random random, int count) {
+        TreeMap<Integer, Posting> postings = new TreeMap<>();
+        int doc = random.nextInt(10);
+        for (int i = 0; i < count; i++) {
+            int freq = 1 + random.nextInt(20);
+            int[] positions = new int[freq];
+            int position = 0;
+            for (int p = 0; p < freq; p++) {
+                position += random.nextInt(50);
+                positions[p] = position++;
+            }
+            postings.put(doc, new Posting(freq, positions));
+            doc += 1 + random.nextInt(1 << random.nextInt(16));
+        }
+        return postings;
+    }
+
+    /**
+     * A document length for every document the terms occur in
+     */
+    private static Map<Integer, Integer> lengths(Map<String, TreeMap<Integer, Posting>> terms) {
+        Map<Integer, Integer> lengths = new HashMap<>();
+        for (TreeMap<Integer, Posting> postings : terms.values()) {
+            for (Map.Entry<Integer, Posting> e : postings.entrySet()) {
+                lengths.merge(e.getKey(), e.getValue().freq, Integer::sum);
+            }
+        }
+        return lengths;
+    }
+
+    private static int compareUtf8(String a, String b) {
+        return Arrays.compareUnsigned(bytes(a), bytes(b));
+    }
+
+    private static byte[] bytes(String term) {
+        return term.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Posting(int freq, int[] positions) {
+    }
+}
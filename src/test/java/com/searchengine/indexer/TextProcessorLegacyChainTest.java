@@ -0,0 +1,92 @@
+package com.searchengine.indexer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * With unicode, stemming and cjk-bigrams off, the single-pass analyzer must
+ * produce exactly what the old regex chain did: the same cleaned text, the
+ * same token string and the same terms, positions and length.
+ */
+class TextProcessorLegacyChainTest {
+
+    // Stop words, short words, mixed case, digits and words glued by punctuation
+    private static final String[] WORDS = {
+        "the", "of", "and", "is", "an", "a", "I", "to", "your", "Search", "ENGINE", "index", "indexes",
+        "BM25", "2024", "42", "x", "ok", "query", "Query", "postings", "e-mail", "don't", "U.S.A.",
+        "https://example.com/a?utm_source=news", "foo_bar", "v1.2.3", "café", "Zoë", "Ångström", "naïve",
+        "straße", "Łódź", "东京都", "検索エンジン", "Ωmega", "Kelvin", "😀", "ﬁle", "ｆｕｌｌ"
+    };
+
+    private static final String[] GAPS = {" ", " ", " ", "  ", "\t", "\n", ", ", ". ", " — ", " (", ") ", "!", " ", ""};
+
+    private final TextProcessor textProcessor = newTextProcessor();
+
+    @Test
+    void matchesTheLegacyChainOnHandWrittenTexts() {
+        List<String> texts = List.of(
+            "",
+            "   ",
+            "The quick brown fox jumps over the lazy dog",
+            "  Leading and trailing   spaces\t\tand\ntabs  ",
+            "Bank of America: what's new in 2024? Everything!!",
+            "Accents like Zoë, Ångström and São Paulo, and 東京都の天気予報 too",
+            "a an the of to is it in at on by",
+            "repeat repeat Repeat REPEAT repeat, repeat.",
+            "https://Example.com:443/a?utm_source=news&fbclid=123 and https://example.com/a",
+            "😀 emoji 😀😀 between words Kelvin"
+        );
+        for (String text : texts) {
+            assertSameAsLegacy(text);
+        }
+    }
+
+    @Test
+    void matchesTheLegacyChainOnGeneratedTexts() {
+        Random random = new Random(24);
+        for (int n = 0; n < 2_000; n++) {
+            StringBuilder text = new StringBuilder();
+            int words = random.nextInt(200);
+            for (int i = 0; i < words; i++) {
+                text.append(GAPS[random.nextInt(GAPS.length)]).append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            assertSameAsLegacy(text.toString());
+        }
+    }
+
+    private void assertSameAsLegacy(String raw) {
+        String cleaned = LegacyTextChain.clean(raw);
+        assertEquals(cleaned, textProcessor.clean(raw), raw);
+
+        String tokens = LegacyTextChain.tokenize(cleaned);
+        assertEquals(tokens, textProcessor.tokenize(cleaned), raw);
+        assertEquals(LegacyTextChain.toList(tokens), textProcessor.terms(cleaned), raw);
+
+        AnalyzedText expected = LegacyTextChain.analyze(cleaned);
+        AnalyzedText analyzed = textProcessor.analyze(cleaned);
+        assertEquals(expected.getLength(), analyzed.getLength(), raw);
+        assertEquals(new ArrayList<>(expected.getPositions().keySet()), new ArrayList<>(analyzed.getPositions().keySet()), raw);
+        for (Map.Entry<String, int[]> term : expected.getPositions().entrySet()) {
+            assertArrayEquals(term.getValue(), analyzed.getPositions().get(term.getKey()), term.getKey());
+        }
+        assertEquals(tokens, textProcessor.tokenize(analyzed), raw);
+    }
+
+    private static TextProcessor newTextProcessor() {
+        StandardAnalyzer analyzer = new StandardAnalyzer();
+        ReflectionTestUtils.setField(analyzer, "unicode", false);
+        ReflectionTestUtils.setField(analyzer, "stemming", false);
+        ReflectionTestUtils.setField(analyzer, "cjkBigrams", false);
+        TextProcessor textProcessor = new TextProcessor();
+        ReflectionTestUtils.setField(textProcessor, "analyzer", analyzer);
+        return textProcessor;
+    }
+}
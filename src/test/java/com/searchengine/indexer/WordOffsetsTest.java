@@ -0,0 +1,55 @@
+package com.searchengine.indexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WordOffsetsTest {
+
+    @Test
+    void offsetsCountCodePoints() {
+        // U+20BB7 is one code point but two chars
+        List<String> words = new ArrayList<>(List.of("𠮷", "野", "家"));
+        for (int i = 3; i < 40; i++) {
+            words.add("w" + i);
+        }
+        String cleaned = String.join(" ", words);
+        byte[] index = WordOffsets.build(cleaned);
+
+        assertFalse(WordOffsets.countsChars(index));
+        assertEquals(3, WordOffsets.checkpoints(index));
+        assertEquals(0, WordOffsets.checkpoint(index, 0));
+        int w16 = cleaned.indexOf("w16");
+        assertEquals(cleaned.codePointCount(0, w16), WordOffsets.checkpoint(index, 1));
+        assertEquals(w16 - 1, WordOffsets.checkpoint(index, 1));
+        assertEquals(cleaned.codePointCount(0, cleaned.indexOf("w32")), WordOffsets.checkpoint(index, 2));
+        assertEquals(-1, WordOffsets.checkpoint(index, 3));
+    }
+
+    @Test
+    void asciiOffsetsMatchCharIndices() {
+        StringBuilder cleaned = new StringBuilder();
+        for (int i = 0; i < 17; i++) {
+            cleaned.append(i == 0 ? "" : " ").append("word").append(i);
+        }
+        byte[] index = WordOffsets.build(cleaned.toString());
+        assertEquals(2, WordOffsets.checkpoints(index));
+        assertEquals(cleaned.indexOf("word16"), WordOffsets.checkpoint(index, 1));
+        assertEquals(0, WordOffsets.build("").length);
+    }
+
+    @Test
+    void offsetsStoredAsCharsStillDecode() {
+        byte[] legacy = VarInt.encodeDeltas(new int[] {0, 90, 200}, 3);
+
+        assertTrue(WordOffsets.countsChars(legacy));
+        assertEquals(3, WordOffsets.checkpoints(legacy));
+        assertEquals(90, WordOffsets.checkpoint(legacy, 1));
+        assertEquals(200, WordOffsets.checkpoint(legacy, 2));
+    }
+}
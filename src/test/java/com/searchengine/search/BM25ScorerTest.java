@@ -0,0 +1,183 @@
+package com.searchengine.search;
+
+import com.searchengine.indexer.CorpusStats;
+import com.searchengine.indexer.PostingsCache;
+import com.searchengine.indexer.PostingsIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BM25ScorerTest {
+
+    private static final List<List<String>> DOCS = List.of(
+        List.of("apple", "banana"),
+        List.of("apple", "cherry"),
+        List.of("apple"),
+        List.of("banana", "cherry")
+    );
+
+    @Test
+    void deletedDocumentsLeaveIdfAndTotalHits() {
+        Index index = new Index();
+        for (int docId = 1; docId <= DOCS.size(); docId++) {
+            index.add(docId, DOCS.get(docId - 1));
+        }
+        double idfBefore = index.scorer.idf("apple");
+        int hitsBefore = index.totalHits("apple");
+
+        index.delete(2, DOCS.get(1));
+
+        // Scored as if the deleted document had never been indexed
+        Index expected = new Index();
+        for (int docId = 1; docId <= DOCS.size(); docId++) {
+            if (docId != 2) {
+                expected.add(docId, DOCS.get(docId - 1));
+            }
+        }
+        assertEquals(expected.scorer.idf("apple"), index.scorer.idf("apple"), 1e-12);
+        assertEquals(expected.scorer.idf("cherry"), index.scorer.idf("cherry"), 1e-12);
+        assertNotEquals(idfBefore, index.scorer.idf("apple"));
+
+        assertEquals(3, hitsBefore);
+        assertEquals(2, index.totalHits("apple"));
+        assertEquals(3, index.totalHits("apple", "banana"));
+        assertEquals(List.of(4L), index.scorer.topK(new ParsedQuery(List.of("cherry"), List.of()), 10).docIds());
+    }
+
+    @Test
+    void reindexedDocumentCountsOnce() {
+        Index index = new Index();
+        index.add(1, List.of("apple"));
+        index.add(2, List.of("apple"));
+        // Re-crawled under a new id: the old posting stays in the buffer until it is flushed
+        index.delete(2, List.of("apple"));
+        index.add(3, List.of("apple"));
+
+        assertEquals(2, index.postingsIndex.docFreq("apple"));
+        assertEquals(2, index.totalHits("apple"));
+    }
+
+    @Test
+    void wandReturnsTheExhaustiveTopK() {
+        Random random = new Random(3);
+        int docs = 3_000;
+        String[] vocabulary = new String[40];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = "t" + i;
+        }
+        Index index = new Index();
+        Map<Integer, Map<String, Integer>> corpus = new HashMap<>();
+        for (int docId = 1; docId <= docs; docId++) {
+            Map<String, Integer> tfs = new HashMap<>();
+            int words = 1 + random.nextInt(30);
+            for (int w = 0; w < words; w++) {
+                // Zipf-like: low terms are common, high ones rare; now and then a burst of one term
+                String term = vocabulary[(int) Math.min(vocabulary.length - 1, Math.abs(random.nextGaussian()) * 8)];
+                tfs.merge(term, random.nextInt(50) == 0 ? 20 : 1, Integer::sum);
+            }
+            int length = tfs.values().stream().mapToInt(Integer::intValue).sum() + random.nextInt(200);
+            index.add(docId, tfs, length);
+            corpus.put(docId, tfs);
+        }
+        for (int docId = 1; docId <= docs; docId += 1 + random.nextInt(20)) {
+            index.delete(docId, List.copyOf(corpus.remove(docId).keySet()));
+        }
+
+        List<List<String>> queries = List.of(
+            List.of("t0"), List.of("t5"), List.of("t30"), List.of("t0", "t1"), List.of("t2", "t9"),
+            List.of("t0", "t12", "t25"), List.of("t1", "t3", "t5", "t7"), List.of("t39", "t0"), List.of("t4", "nothing"));
+        for (List<String> query : queries) {
+            for (int k : new int[] {1, 10, 50}) {
+                Map<Integer, Double> expected = exhaustive(index, corpus, query);
+                TopDocs top = index.scorer.topK(new ParsedQuery(query, List.of()), k);
+
+                List<Integer> ranked = new ArrayList<>(expected.keySet());
+                ranked.sort((a, b) -> Double.compare(expected.get(b), expected.get(a)));
+                assertEquals(expected.size(), top.totalHits(), query.toString());
+                assertEquals(Math.min(k, ranked.size()), top.docIds().size(), query + " k=" + k);
+                // Same scores rank by rank; among equal scores the order may differ
+                for (int r = 0; r < top.docIds().size(); r++) {
+                    int docId = Math.toIntExact(top.docIds().get(r));
+                    assertTrue(expected.containsKey(docId), docId + " matches " + query);
+                    assertEquals(expected.get(ranked.get(r)), expected.get(docId), 1e-9, query + " k=" + k + " rank " + r);
+                }
+            }
+        }
+    }
+
+    /**
+     * BM25 score of every live document matching any query term, by brute force
+     */
+    private static Map<Integer, Double> exhaustive(Index index, Map<Integer, Map<String, Integer>> corpus, List<String> query) {
+        double avgDocLen = index.corpusStats.avgDocLength();
+        Map<Integer, Double> scores = new HashMap<>();
+        for (String term : query) {
+            double idf = index.scorer.idf(term);
+            corpus.forEach((docId, tfs) -> {
+                Integer tf = tfs.get(term);
+                if (tf != null) {
+                    int dl = Math.max(1, index.corpusStats.docLength(docId));
+                    double tfScore = tf * (1.5 + 1) / (tf + 1.5 * (1 - 0.75 + 0.75 * (dl / avgDocLen)));
+                    scores.merge(docId, idf * tfScore, Double::sum);
+                }
+            });
+        }
+        return scores;
+    }
+
+    /**
+     * A scorer over an in-memory postings index, without a Spring context
+     */
+    private static final class Index {
+        final CorpusStats corpusStats = new CorpusStats();
+        final PostingsIndex postingsIndex = new PostingsIndex();
+        final BM25Scorer scorer = new BM25Scorer();
+
+        Index() {
+            PostingsCache cache = new PostingsCache();
+            ReflectionTestUtils.setField(cache, "maxBytes", 1L << 20);
+            ReflectionTestUtils.setField(cache, "minDocs", Integer.MAX_VALUE);
+            ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+            cache.init();
+            ReflectionTestUtils.setField(postingsIndex, "postingsCache", cache);
+            ReflectionTestUtils.setField(postingsIndex, "corpusStats", corpusStats);
+            ReflectionTestUtils.setField(postingsIndex, "flushDocs", Integer.MAX_VALUE);
+            ReflectionTestUtils.setField(scorer, "postingsIndex", postingsIndex);
+            ReflectionTestUtils.setField(scorer, "corpusStats", corpusStats);
+        }
+
+        void add(int docId, List<String> terms) {
+            for (int i = 0; i < terms.size(); i++) {
+                postingsIndex.add(terms.get(i), docId, 1, PostingsIndex.encodePositions(new int[] {i}));
+            }
+            corpusStats.add(docId, terms.size());
+        }
+
+        /**
+         * Index term frequencies without positions, so proximity never changes the ranking
+         */
+        void add(int docId, Map<String, Integer> tfs, int length) {
+            tfs.forEach((term, tf) -> postingsIndex.add(term, docId, tf, null));
+            corpusStats.add(docId, length);
+        }
+
+        void delete(int docId, List<String> terms) {
+            postingsIndex.delete(docId, terms);
+            corpusStats.remove(docId);
+        }
+
+        int totalHits(String... terms) {
+            return scorer.topK(new ParsedQuery(List.of(terms), List.of()), 10).totalHits();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.searchengine.search;
+
+import com.searchengine.indexer.IndexGeneration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class SearchCacheTest {
+
+    // No L2: the CacheManager has no searchCache
+    private final SearchCache cache = new SearchCache(mock(CacheManager.class), new IndexGeneration(),
+        new SimpleMeterRegistry(), 1_000, 600_000);
+
+    @Test
+    void concurrentMissesOnOneKeyLoadOnce() throws Exception {
+        int threads = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Map<String, Object>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cache.get("1:query:0:10", () -> {
+                        loads.incrementAndGet();
+                        sleep(50);
+                        return Map.of("totalHits", 1);
+                    });
+                }));
+            }
+            start.countDown();
+            Map<String, Object> first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Map<String, Object>> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertSame(cache.get("1:query:0:10", () -> Map.of()), cache.get("1:query:0:10", () -> Map.of()));
+        assertEquals(2.0 / 3, cache.hitRatio(), 1e-9);
+    }
+
+    @Test
+    void aSlowLoadDoesNotHoldUpOtherKeys() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Map<String, Object>> slow = CompletableFuture.supplyAsync(() ->
+            cache.get("1:slow:0:10", () -> {
+                await(release);
+                return Map.of("totalHits", 1);
+            }));
+
+        try {
+            // Loaded and served while the first load is still running
+            for (int i = 0; i < 100; i++) {
+                int n = i;
+                assertEquals(Map.of("totalHits", n), cache.get("1:fast" + n + ":0:10", () -> Map.of("totalHits", n)));
+            }
+            assertFalse(slow.isDone());
+        } finally {
+            release.countDown();
+        }
+        assertEquals(Map.of("totalHits", 1), slow.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void aFailedLoadIsNotCached() {
+        IllegalStateException failure = new IllegalStateException("index unavailable");
+        assertSame(failure, assertThrows(IllegalStateException.class,
+            () -> cache.get("1:query:0:10", () -> {
+                throw failure;
+            })));
+
+        assertEquals(Map.of("totalHits", 2), cache.get("1:query:0:10", () -> Map.of("totalHits", 2)));
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.searchengine.search;
+
+import com.searchengine.indexer.AnalyzedText;
+import com.searchengine.indexer.PostingsCache;
+import com.searchengine.indexer.PostingsIndex;
+import com.searchengine.indexer.StandardAnalyzer;
+import com.searchengine.indexer.TextProcessor;
+import com.searchengine.indexer.WordOffsets;
+import com.searchengine.repository.DocumentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnippetGeneratorTest {
+
+    private final TextProcessor textProcessor = newTextProcessor();
+    private final PostingsIndex postingsIndex = newPostingsIndex();
+    private final CodePointDatabase database = new CodePointDatabase();
+    private final SnippetGenerator generator = new SnippetGenerator();
+
+    SnippetGeneratorTest() {
+        ReflectionTestUtils.setField(generator, "textProcessor", textProcessor);
+        ReflectionTestUtils.setField(generator, "postingsIndex", postingsIndex);
+        ReflectionTestUtils.setField(generator, "jdbcTemplate", database);
+    }
+
+    @Test
+    void supplementaryCharactersBeforeTheWindowKeepTheHighlightOnTheTerm() {
+        // Each U+20BB7 is two chars but one code point
+        StringBuilder raw = new StringBuilder("𠮷野家 opened new branches in Tokyo: " + "𠮷".repeat(12) + ".");
+        for (int i = 0; i < 60; i++) {
+            raw.append(" filler").append(i);
+        }
+        raw.append(" The ranking reads postings from memory. 𠮷 again");
+        DocumentRepository.ResultRow row = store(1, raw.toString());
+
+        List<String> terms = textProcessor.terms(textProcessor.clean("postings"));
+        List<SearchResult> results = generator.toResults(List.of(row), terms);
+
+        SearchResult result = results.get(0);
+        assertTrue(result.snippet().startsWith("… "), result.snippet());
+        assertEquals(1, result.highlights().size(), result.snippet());
+        SearchResult.Highlight highlight = result.highlights().get(0);
+        assertEquals("postings", result.snippet().substring(highlight.start(), highlight.end()));
+        assertTrue(result.snippet().contains("the ranking reads postings from memory"), result.snippet());
+        // Whole words only: a shifted slice would start inside one
+        List<String> words = List.of(textProcessor.clean(raw.toString()).split(" "));
+        for (String word : result.snippet().replace("… ", "").replace(" …", "").split(" ")) {
+            assertTrue(words.contains(word), word + " in " + result.snippet());
+        }
+    }
+
+    @Test
+    void termInsideSupplementaryTextIsHighlighted() {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            raw.append("𠮷 word").append(i).append(' ');
+        }
+        raw.append("needle");
+        DocumentRepository.ResultRow row = store(2, raw.toString());
+
+        SearchResult result = generator.toResults(List.of(row), textProcessor.terms(textProcessor.clean("needle"))).get(0);
+        SearchResult.Highlight highlight = result.highlights().get(0);
+        assertEquals("needle", result.snippet().substring(highlight.start(), highlight.end()), result.snippet());
+    }
+
+    /**
+     * Clean and index a page, store its text and return its result row
+     */
+    private DocumentRepository.ResultRow store(long id, String raw) {
+        String cleaned = textProcessor.clean(raw);
+        AnalyzedText analyzed = textProcessor.analyze(cleaned);
+        analyzed.getPositions().forEach((term, positions) ->
+            postingsIndex.add(term, (int) id, positions.length, PostingsIndex.encodePositions(positions)));
+        database.texts.put(id, cleaned);
+        String summary = textProcessor.summarize(cleaned);
+        byte[] wordOffsets = WordOffsets.build(cleaned);
+        return new DocumentRepository.ResultRow() {
+            public Long getId() {
+                return id;
+            }
+
+            public String getUrl() {
+                return "https://example.com/" + id;
+            }
+
+            public String getTitle() {
+                return "Page " + id;
+            }
+
+            public LocalDateTime getCrawledAt() {
+                return LocalDateTime.of(2024, 3, 18, 9, 0);
+            }
+
+            public Integer getDocLength() {
+                return analyzed.getLength();
+            }
+
+            public String getSummary() {
+                return summary;
+            }
+
+            public byte[] getWordOffsets() {
+                return wordOffsets;
+            }
+        };
+    }
+
+    /**
+     * Answers the snippet generator's fragment query the way PostgreSQL does,
+     * counting SUBSTRING's start and length in code points
+     */
+    private static final class CodePointDatabase extends JdbcTemplate {
+        final Map<Long, String> texts = new HashMap<>();
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler, Object... args) {
+            for (int i = 0; i < args.length; i += 3) {
+                long id = ((Number) args[i + 2]).longValue();
+                String text = texts.get(id);
+                int from = Math.min(((Number) args[i]).intValue() - 1, text.codePointCount(0, text.length()));
+                int length = ((Number) args[i + 1]).intValue();
+                int start = text.offsetByCodePoints(0, from);
+                int end = text.offsetByCodePoints(start, Math.min(length, text.codePointCount(start, text.length())));
+                String fragment = text.substring(start, end);
+                ResultSet row = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[] {ResultSet.class}, (proxy, method, columns) -> switch (method.getName()) {
+                        case "getLong" -> id;
+                        case "getString" -> fragment;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+                try {
+                    handler.processRow(row);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    private static TextProcessor newTextProcessor() {
+        StandardAnalyzer analyzer = new StandardAnalyzer();
+        ReflectionTestUtils.setField(analyzer, "unicode", true);
+        ReflectionTestUtils.setField(analyzer, "stemming", true);
+        ReflectionTestUtils.setField(analyzer, "cjkBigrams", true);
+        TextProcessor textProcessor = new TextProcessor();
+        ReflectionTestUtils.setField(textProcessor, "analyzer", analyzer);
+        return textProcessor;
+    }
+
+    private static PostingsIndex newPostingsIndex() {
+        PostingsCache cache = new PostingsCache();
+        ReflectionTestUtils.setField(cache, "maxBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "minDocs", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        cache.init();
+        PostingsIndex postingsIndex = new PostingsIndex();
+        ReflectionTestUtils.setField(postingsIndex, "postingsCache", cache);
+        ReflectionTestUtils.setField(postingsIndex, "flushDocs", Integer.MAX_VALUE);
+        return postingsIndex;
+    }
+}